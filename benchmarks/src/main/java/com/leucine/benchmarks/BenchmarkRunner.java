@@ -0,0 +1,60 @@
+package com.leucine.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+
+/**
+ * Runs the JMH benchmarks with the GC profiler always on, so every result includes the
+ * allocation rate per operation ({@code gc.alloc.rate.norm}) next to the timing.
+ *
+ * <p>Accepts the standard JMH command line, for example a benchmark name pattern or
+ * {@code -f 1 -wi 3 -i 5} for a quick run. As with the plain JMH launcher, {@code -h},
+ * {@code -l}, {@code -lp}, {@code -lprof} and {@code -lrf} print help or list what is
+ * available instead of running anything.</p>
+ */
+public class BenchmarkRunner {
+
+    /**
+     * Main method to run the benchmarks.
+     *
+     * @param args JMH command line options
+     * @throws CommandLineOptionException If the options cannot be parsed
+     * @throws RunnerException If a benchmark fails
+     * @throws IOException If the help text cannot be printed
+     */
+    public static void main(String[] args) throws CommandLineOptionException, RunnerException, IOException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if (commandLine.shouldHelp()) {
+            commandLine.showHelp();
+            return;
+        }
+        if (commandLine.shouldListProfilers()) {
+            commandLine.listProfilers();
+            return;
+        }
+        if (commandLine.shouldListResultFormats()) {
+            commandLine.listResultFormats();
+            return;
+        }
+
+        Runner runner = new Runner(new OptionsBuilder()
+            .parent(commandLine)
+            .addProfiler(GCProfiler.class)
+            .build());
+        if (commandLine.shouldList()) {
+            runner.list();
+            return;
+        }
+        if (commandLine.shouldListWithParams()) {
+            runner.listWithParams(commandLine);
+            return;
+        }
+        runner.run();
+    }
+}
@@ -0,0 +1,118 @@
+package com.leucine.benchmarks;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.leucine.model.Action;
+import com.leucine.model.Agent;
+import com.leucine.model.Goal;
+import com.leucine.model.SubGoal;
+
+import java.util.UUID;
+
+/**
+ * Builds realistic Claude responses for the benchmarks: goal trees in the shape the
+ * decomposition prompts ask for, wrapped the way Claude usually returns them.
+ */
+public final class Fixtures {
+
+    public static final String OBJECTIVE =
+        "In pharma manufacturing context, investigate a deviation given a deviation description and find its root cause";
+
+    private static final int SUBGOALS_PER_GOAL = 4;
+    private static final int ACTIONS_PER_SUBGOAL = 5;
+
+    private Fixtures() {
+    }
+
+    /**
+     * Builds a goal tree JSON document of at least the given size.
+     *
+     * @param sizeKb The minimum size in kilobytes
+     * @return The goal tree as JSON
+     */
+    public static String goalTree(int sizeKb) {
+        StringBuilder json = new StringBuilder("{\"goals\": [");
+        for (int g = 1; json.length() < sizeKb * 1024; g++) {
+            json.append(g > 1 ? "," : "").append("{\"name\": \"Goal ").append(g)
+                .append("\", \"description\": \"Complete phase ").append(g).append(" of the investigation\", \"subgoals\": [");
+            for (int s = 1; s <= SUBGOALS_PER_GOAL; s++) {
+                json.append(s > 1 ? "," : "").append("{\"name\": \"Subgoal ").append(g).append('.').append(s)
+                    .append("\", \"description\": \"Carry out stage ").append(g).append('.').append(s)
+                    .append(" and document the outcome\", \"actions\": [");
+                for (int a = 1; a <= ACTIONS_PER_SUBGOAL; a++) {
+                    json.append(a > 1 ? "," : "").append("\"Action ").append(a).append(" for stage ").append(g)
+                        .append('.').append(s).append(": gather the batch records, review them against the ")
+                        .append("specification and record the findings for QA approval\"");
+                }
+                json.append("]}");
+            }
+            json.append("]}");
+        }
+        return json.append("]}").toString();
+    }
+
+    /**
+     * Builds an agent with the given number of goals, shaped like {@link #goalTree(int)}.
+     *
+     * @param goals The number of goals
+     * @return The agent
+     */
+    public static Agent agent(int goals) {
+        StringBuilder procedure = new StringBuilder();
+        Agent agent = new Agent(UUID.randomUUID().toString(), "Deviation investigation", OBJECTIVE, null);
+        for (int g = 1; g <= goals; g++) {
+            procedure.append("# Phase ").append(g).append("\n- Tasks, owners, documentation and regulatory checks.\n");
+            Goal goal = new Goal("Complete phase " + g + " of the investigation");
+            for (int s = 1; s <= SUBGOALS_PER_GOAL; s++) {
+                SubGoal subGoal = new SubGoal("Carry out stage " + g + "." + s + " and document the outcome");
+                for (int a = 1; a <= ACTIONS_PER_SUBGOAL; a++) {
+                    subGoal.addAction(new Action("Action " + a + " for stage " + g + "." + s + ": gather the batch records, "
+                        + "review them against the specification and record the findings for QA approval"));
+                }
+                goal.addSubgoal(subGoal);
+            }
+            agent.addGoal(goal);
+        }
+        agent.setStandardProcedure(procedure.toString());
+        return agent;
+    }
+
+    /**
+     * Wraps a JSON document in the prose and code fence Claude usually adds around it.
+     *
+     * @param json The JSON document
+     * @return The response text
+     */
+    public static String responseText(String json) {
+        return "Here is the decomposition of the objective into goals, subgoals and actions:\n\n```json\n"
+            + json + "\n```\n\nEach action is scoped to the standard procedure above.";
+    }
+
+    /**
+     * Builds a Messages API response body with the given text as its only content block.
+     *
+     * @param text The text of the content block
+     * @return The response body as JSON
+     */
+    public static String messageResponse(String text) {
+        JsonObject block = new JsonObject();
+        block.addProperty("type", "text");
+        block.addProperty("text", text);
+        JsonArray content = new JsonArray();
+        content.add(block);
+
+        JsonObject usage = new JsonObject();
+        usage.addProperty("input_tokens", 2048);
+        usage.addProperty("output_tokens", text.length() / 4);
+
+        JsonObject response = new JsonObject();
+        response.addProperty("id", "msg_benchmark");
+        response.addProperty("type", "message");
+        response.addProperty("role", "assistant");
+        response.addProperty("model", "claude-3-7-sonnet-latest");
+        response.add("content", content);
+        response.addProperty("stop_reason", "end_turn");
+        response.add("usage", usage);
+        return response.toString();
+    }
+}
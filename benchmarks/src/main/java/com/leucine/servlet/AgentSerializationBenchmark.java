@@ -0,0 +1,64 @@
+package com.leucine.servlet;
+
+import com.google.gson.Gson;
+import com.leucine.benchmarks.Fixtures;
+import com.leucine.model.Agent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the Gson serialization {@link CreateAgentServlet} performs for every response that
+ * carries an agent.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AgentSerializationBenchmark {
+
+    @Param({"5", "50", "200"})
+    private int goals;
+
+    private final Gson gson = new Gson();
+    private Agent agent;
+
+    @Setup
+    public void setUp() {
+        agent = Fixtures.agent(goals);
+    }
+
+    /**
+     * Serializes to a string first, as the servlet does with {@code out.print(gson.toJson(...))}.
+     */
+    @Benchmark
+    public int toJsonString() {
+        StringWriter buffer = new StringWriter();
+        new PrintWriter(buffer).print(gson.toJson(agent));
+        return buffer.getBuffer().length();
+    }
+
+    /**
+     * Serializes straight to the writer.
+     */
+    @Benchmark
+    public int toJsonWriter() {
+        StringWriter buffer = new StringWriter();
+        gson.toJson(agent, buffer);
+        return buffer.getBuffer().length();
+    }
+}
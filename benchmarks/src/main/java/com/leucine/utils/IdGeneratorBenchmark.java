@@ -0,0 +1,62 @@
+package com.leucine.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures id generation with one thread and with many threads at once, as when one
+ * decomposition creates hundreds of actions while other sessions run. {@code random-uuid}
+ * is {@link java.util.UUID#randomUUID()}, which session ids use; {@code time-ordered} is the
+ * default for model ids.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class IdGeneratorBenchmark {
+
+    @Param({"random-uuid", "time-ordered"})
+    public String generator;
+
+    private IdGenerator ids;
+
+    @Setup
+    public void setUp() {
+        switch (generator) {
+            case "random-uuid":
+                ids = IdGenerator.RANDOM_UUID;
+                break;
+            case "time-ordered":
+                ids = new TimeOrderedIdGenerator();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown generator: " + generator);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String singleThread() {
+        return ids.newId();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public String sixteenThreads() {
+        return ids.newId();
+    }
+}
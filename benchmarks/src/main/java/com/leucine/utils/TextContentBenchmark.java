@@ -0,0 +1,53 @@
+package com.leucine.utils;
+
+import com.google.gson.Gson;
+import com.leucine.benchmarks.Fixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading a Messages API response: binding the body with Gson and extracting the
+ * text with {@link ClaudeClient.ClaudeResponse#getTextContent()}, which strips code fences.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class TextContentBenchmark {
+
+    @Param({"50", "200", "500"})
+    private int sizeKb;
+
+    private final Gson gson = new Gson();
+    private String body;
+    private ClaudeClient.ClaudeResponse response;
+
+    @Setup
+    public void setUp() {
+        body = Fixtures.messageResponse(Fixtures.responseText(Fixtures.goalTree(sizeKb)));
+        response = gson.fromJson(body, ClaudeClient.ClaudeResponse.class);
+    }
+
+    @Benchmark
+    public String getTextContent() {
+        return response.getTextContent();
+    }
+
+    @Benchmark
+    public String parseAndGetTextContent() {
+        return gson.fromJson(body, ClaudeClient.ClaudeResponse.class).getTextContent();
+    }
+}
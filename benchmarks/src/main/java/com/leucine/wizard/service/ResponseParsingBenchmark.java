@@ -0,0 +1,51 @@
+package com.leucine.wizard.service;
+
+import com.leucine.benchmarks.Fixtures;
+import com.leucine.config.AIConfig;
+import com.leucine.model.Agent;
+import com.leucine.utils.ClaudeClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ObjectiveDecompositionService#parseResponse} on decomposition responses of
+ * 50 to 500 KB, including the prose and code fence Claude puts around the JSON.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ResponseParsingBenchmark {
+
+    @Param({"50", "200", "500"})
+    private int sizeKb;
+
+    private ObjectiveDecompositionService service;
+    private String response;
+
+    @Setup
+    public void setUp() {
+        // No request is sent, but the client needs a key
+        AIConfig.init("benchmark", null);
+        service = new ObjectiveDecompositionService(new ClaudeClient.Builder().build(), null, DecompositionMode.SINGLE);
+        response = Fixtures.responseText(Fixtures.goalTree(sizeKb));
+    }
+
+    @Benchmark
+    public Agent parseResponse() {
+        return service.parseResponse(response, Fixtures.OBJECTIVE, null);
+    }
+}
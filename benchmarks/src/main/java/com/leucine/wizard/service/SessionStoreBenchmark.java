@@ -0,0 +1,79 @@
+package com.leucine.wizard.service;
+
+import com.leucine.config.AIConfig;
+import com.leucine.wizard.model.WizardSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures session creation and lookup through {@link AgentCreationService} with many threads
+ * at once, the way concurrent wizard requests use it. The store is chosen by the usual
+ * {@code WIZARD_SESSION_STORE} setting.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class SessionStoreBenchmark {
+
+    private static final int SESSIONS = 10_000;
+
+    private AgentCreationService service;
+    private String[] sessionIds;
+
+    @Setup
+    public void setUp() {
+        // No request is sent, but the service's client needs a key
+        AIConfig.init("benchmark", null);
+        service = AgentCreationService.getInstance();
+        sessionIds = new String[SESSIONS];
+        for (int i = 0; i < SESSIONS; i++) {
+            sessionIds[i] = service.startNewSession();
+        }
+    }
+
+    @Benchmark
+    @Threads(8)
+    public WizardSession get() {
+        return service.getSession(sessionIds[ThreadLocalRandom.current().nextInt(SESSIONS)]);
+    }
+
+    /**
+     * Creates a session and removes it again, so the store keeps its size.
+     */
+    @Benchmark
+    @Threads(8)
+    public boolean putAndRemove() {
+        return service.removeSession(service.startNewSession());
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(6)
+    public WizardSession mixedGet() {
+        return get();
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(2)
+    public boolean mixedPutAndRemove() {
+        return putAndRemove();
+    }
+}
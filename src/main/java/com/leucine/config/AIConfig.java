@@ -1,12 +1,15 @@
 package com.leucine.config;
 
 import io.github.cdimascio.dotenv.Dotenv;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Configuration class for AI API keys
  * Manages API keys for Claude and OpenAI services loaded from .env file
  */
 public class AIConfig {
+    private static final Logger LOG = LoggerFactory.getLogger(AIConfig.class);
     private static Dotenv dotenv;
     private static String claudeApiKey;
     private static String openAiApiKey;
@@ -16,7 +19,7 @@ public class AIConfig {
             // Load environment variables from .env file
             dotenv = Dotenv.configure().ignoreIfMissing().load();
         } catch (Exception e) {
-            System.err.println("Warning: Failed to load .env file: " + e.getMessage());
+            LOG.warn("Failed to load .env file: {}", e.getMessage());
             dotenv = null;
         }
     }
@@ -79,4 +82,79 @@ public class AIConfig {
         }
         return openAiApiKey;
     }
-}
\ No newline at end of file
+
+    /**
+     * Get a configuration setting.
+     * Looks in the .env file first and falls back to system environment variables,
+     * then to JVM system properties.
+     * 
+     * @param name The name of the setting
+     * @param defaultValue The value to use when the setting is not defined
+     * @return The setting value, or the default value if not set
+     */
+    public static String getSetting(String name, String defaultValue) {
+        String value = null;
+        if (dotenv != null) {
+            value = dotenv.get(name);
+        }
+        if (value == null) {
+            value = System.getenv(name);
+        }
+        if (value == null) {
+            value = System.getProperty(name);
+        }
+        return value != null && !value.trim().isEmpty() ? value.trim() : defaultValue;
+    }
+
+    /**
+     * Get an integer configuration setting.
+     * 
+     * @param name The name of the setting
+     * @param defaultValue The value to use when the setting is not defined
+     * @return The setting value, or the default value if not set
+     * @throws IllegalStateException if the setting is not a valid integer
+     */
+    public static int getIntSetting(String name, int defaultValue) {
+        String value = getSetting(name, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Setting " + name + " must be an integer but was: " + value);
+        }
+    }
+
+    /**
+     * Get a long configuration setting.
+     * 
+     * @param name The name of the setting
+     * @param defaultValue The value to use when the setting is not defined
+     * @return The setting value, or the default value if not set
+     * @throws IllegalStateException if the setting is not a valid long
+     */
+    public static long getLongSetting(String name, long defaultValue) {
+        String value = getSetting(name, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Setting " + name + " must be a number but was: " + value);
+        }
+    }
+
+    /**
+     * Get a boolean configuration setting.
+     * 
+     * @param name The name of the setting
+     * @param defaultValue The value to use when the setting is not defined
+     * @return The setting value, or the default value if not set
+     */
+    public static boolean getBooleanSetting(String name, boolean defaultValue) {
+        String value = getSetting(name, null);
+        return value != null ? Boolean.parseBoolean(value) : defaultValue;
+    }
+}
@@ -0,0 +1,44 @@
+package com.leucine.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Threading model used for long-running wizard work and Claude API calls.
+ * Selected with the {@code WIZARD_EXECUTION_MODE} setting.
+ */
+public enum ExecutionMode {
+    /**
+     * Bounded pools of platform threads (the default).
+     */
+    PLATFORM,
+
+    /**
+     * One virtual thread per task. Requires Java 21 or newer; blocking waits on the
+     * Claude API then cost almost no platform threads.
+     */
+    VIRTUAL;
+
+    private static final Logger LOG = LoggerFactory.getLogger(ExecutionMode.class);
+
+    /**
+     * Gets the configured execution mode. Falls back to {@link #PLATFORM} when virtual
+     * threads are requested but the running JVM does not support them.
+     *
+     * @return The execution mode to use
+     */
+    public static ExecutionMode fromSettings() {
+        String value = AIConfig.getSetting("WIZARD_EXECUTION_MODE", "platform");
+        ExecutionMode mode;
+        try {
+            mode = valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Unknown WIZARD_EXECUTION_MODE: " + value);
+        }
+        if (mode == VIRTUAL && Runtime.version().feature() < 21) {
+            LOG.warn("WIZARD_EXECUTION_MODE=virtual requires Java 21, using platform threads");
+            return PLATFORM;
+        }
+        return mode;
+    }
+}
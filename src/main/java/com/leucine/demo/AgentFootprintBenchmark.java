@@ -0,0 +1,126 @@
+package com.leucine.demo;
+
+import com.leucine.model.Action;
+import com.leucine.model.Agent;
+import com.leucine.model.CompactAgentTree;
+import com.leucine.model.Goal;
+import com.leucine.model.SubGoal;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the heap retained per agent when agents are held as model objects and when they
+ * are held as {@link CompactAgentTree}s.
+ *
+ * <p>Each agent has a goal tree with fresh UUID ids and descriptions built at run time, as
+ * they would be when parsed from a Claude response. Two workloads are compared. In
+ * {@code recurring}, agents are decomposed from a small set of objectives, so the same
+ * descriptions recur across agents and interning removes the copies. In {@code unique},
+ * every description is different, so only the object and id savings remain. Heap usage is
+ * read after a full collection once the agents are built, and again once they are released.</p>
+ *
+ * <p>Usage: {@code AgentFootprintBenchmark [agents] [goals] [subgoalsPerGoal] [actionsPerSubgoal] [objectives]}
+ * (defaults: 2000, 5, 4, 5 and 10).</p>
+ */
+public class AgentFootprintBenchmark {
+
+    /**
+     * Main method to run the benchmark.
+     *
+     * @param args Command line arguments as described in the class documentation
+     * @throws InterruptedException If interrupted while waiting for a collection
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int agents = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int goals = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int subGoals = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int actions = args.length > 3 ? Integer.parseInt(args[3]) : 5;
+        int objectives = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+
+        System.out.println(agents + " agents of " + goals + " goals x " + subGoals + " subgoals x " + actions
+            + " actions, " + objectives + " recurring objectives");
+        System.out.printf("%-10s %-10s %16s %12s%n", "workload", "form", "heap (bytes)", "per agent");
+        measure("recurring", agents, objectives, goals, subGoals, actions);
+        measure("unique", agents, agents, goals, subGoals, actions);
+    }
+
+    /**
+     * Measures one workload. Each form is built in its own method, so no local variable of
+     * this frame keeps the other form reachable while it is measured.
+     */
+    private static void measure(String workload, int agents, int variants, int goals, int subGoals, int actions)
+            throws InterruptedException {
+        long baseline = usedHeap();
+        List<Agent> model = build(agents, variants, goals, subGoals, actions);
+        report(workload, "model", agents, usedHeap() - baseline);
+
+        List<CompactAgentTree> compact = compact(model);
+        model = null;
+        report(workload, "compact", agents, usedHeap() - baseline);
+        if (compact.size() != agents) {
+            throw new IllegalStateException("Lost agents while compacting");
+        }
+    }
+
+    private static List<Agent> build(int agents, int variants, int goals, int subGoals, int actions) {
+        List<Agent> model = new ArrayList<>(agents);
+        for (int i = 0; i < agents; i++) {
+            model.add(agent(i % variants, goals, subGoals, actions));
+        }
+        return model;
+    }
+
+    private static List<CompactAgentTree> compact(List<Agent> model) {
+        List<CompactAgentTree> compact = new ArrayList<>(model.size());
+        for (Agent agent : model) {
+            compact.add(CompactAgentTree.of(agent));
+        }
+        return compact;
+    }
+
+    private static void report(String workload, String form, int agents, long bytes) {
+        System.out.printf("%-10s %-10s %16d %12d%n", workload, form, bytes, bytes / agents);
+    }
+
+    /**
+     * Builds an agent whose text depends only on the variant, with new string instances.
+     */
+    private static Agent agent(int variant, int goals, int subGoals, int actions) {
+        String topic = "deviation category " + variant;
+        Agent agent = new Agent();
+        agent.setName("Investigator for " + topic);
+        agent.setObjective("In pharma manufacturing context, investigate a deviation in " + topic
+            + " given a deviation description and find its root cause");
+        agent.setStandardProcedure(("# Procedure for " + topic + "\n").repeat(goals * subGoals * 6));
+        for (int g = 1; g <= goals; g++) {
+            Goal goal = new Goal("Complete phase " + g + " of the investigation of " + topic);
+            for (int s = 1; s <= subGoals; s++) {
+                SubGoal subGoal = new SubGoal("Carry out stage " + g + "." + s + " for " + topic);
+                for (int a = 1; a <= actions; a++) {
+                    subGoal.addAction(new Action("Action " + a + " for stage " + g + "." + s + " of " + topic
+                        + ": gather the batch records, review them against the specification and record the findings"));
+                }
+                goal.addSubgoal(subGoal);
+            }
+            agent.addGoal(goal);
+        }
+        return agent;
+    }
+
+    /**
+     * Gets the used heap after the collector has settled.
+     */
+    private static long usedHeap() throws InterruptedException {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(100);
+            used = Math.min(used, memory.getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+}
@@ -0,0 +1,93 @@
+package com.leucine.demo;
+
+import com.leucine.config.AIConfig;
+import com.leucine.wizard.model.WizardSession;
+import com.leucine.wizard.service.AgentCreationService;
+import com.leucine.wizard.service.BulkJobReport;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Creates agents for many objectives with one bulk job through the Message Batches API
+ * and reports the throughput in agents per hour.
+ *
+ * <p>By default the batches go to a local {@link StubClaudeServer}, which ends each batch as
+ * soon as its slowest request would have finished. With {@code --live} the objectives are
+ * read from a file, one per line, and sent to the real API.</p>
+ *
+ * <p>Usage: {@code BulkAgentGenerationDemo [objectives]} (default 200), or
+ * {@code BulkAgentGenerationDemo --live objectivesFile}.</p>
+ */
+public class BulkAgentGenerationDemo {
+
+    /**
+     * Main method to run the demo.
+     *
+     * @param args Command line arguments as described in the class documentation
+     * @throws IOException If a batch fails or the objectives file cannot be read
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && "--live".equals(args[0])) {
+            if (args.length < 2) {
+                System.err.println("Usage: BulkAgentGenerationDemo --live objectivesFile");
+                return;
+            }
+            List<String> objectives = Files.readAllLines(Paths.get(args[1])).stream()
+                .map(String::trim)
+                .filter(line -> !line.isEmpty())
+                .collect(Collectors.toList());
+            run(objectives);
+            return;
+        }
+
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        List<String> objectives = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            objectives.add("In pharma manufacturing context, investigate deviation #" + i + " and find its root cause");
+        }
+        try (StubClaudeServer server = new StubClaudeServer(BulkAgentGenerationDemo::reply, 400, 400)) {
+            // Settings must be in place before the service and its client are created
+            System.setProperty("CLAUDE_BASE_URL", server.getUrl());
+            System.setProperty("BATCH_POLL_INITIAL_SECONDS", "1");
+            System.setProperty("BATCH_POLL_MAX_SECONDS", "2");
+            // The stub accepts any key
+            AIConfig.init("stub", null);
+            run(objectives);
+        }
+    }
+
+    private static void run(List<String> objectives) throws IOException {
+        System.out.println("Submitting " + objectives.size() + " objectives as a bulk job...");
+        AgentCreationService service = AgentCreationService.getInstance();
+        BulkJobReport report = service.createAgentsInBulk(objectives);
+
+        System.out.printf("Agents created: %d, failed: %d, elapsed: %.1f s, throughput: %.0f agents/hour%n",
+            report.getSucceededCount(), report.getFailedCount(), report.getElapsed().toMillis() / 1000.0,
+            report.getAgentsPerHour());
+        for (int i = 0; i < objectives.size(); i++) {
+            if (report.getError(i) != null) {
+                System.out.println("  Failed: " + objectives.get(i) + " - " + report.getError(i));
+            }
+        }
+        WizardSession first = report.getSessionId(0) != null ? service.getSession(report.getSessionId(0)) : null;
+        if (first != null && first.getAgent() != null) {
+            System.out.println("First session " + first.getSessionId() + " is " + first.getState()
+                + " with " + first.getAgent().getGoals().size() + " goals");
+        }
+    }
+
+    private static String reply(String prompt) {
+        if (prompt.contains("Provide a detailed hierarchical analysis")) {
+            return "# Phase 1\n## Intake\n- Record the deviation.\n# Phase 2\n## Investigation\n- Find the root cause.\n";
+        }
+        return "{\"goals\": [{\"name\": \"Intake\", \"description\": \"Record the deviation\", \"subgoals\": ["
+            + "{\"name\": \"Log\", \"description\": \"Log the deviation\", \"actions\": [\"Create the deviation record\"]}]},"
+            + "{\"name\": \"Investigation\", \"description\": \"Find the root cause\", \"subgoals\": ["
+            + "{\"name\": \"Analyse\", \"description\": \"Analyse the batch records\", \"actions\": [\"Review the batch records\"]}]}]}";
+    }
+}
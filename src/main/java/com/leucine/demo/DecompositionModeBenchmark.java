@@ -0,0 +1,197 @@
+package com.leucine.demo;
+
+import com.leucine.config.AIConfig;
+import com.leucine.metrics.Metrics;
+import com.leucine.metrics.SimpleMetricsRegistry;
+import com.leucine.model.Agent;
+import com.leucine.model.Goal;
+import com.leucine.model.SubGoal;
+import com.leucine.utils.ClaudeClient;
+import com.leucine.wizard.service.DecompositionMode;
+import com.leucine.wizard.service.ObjectiveDecompositionService;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the wall-clock latency and prompt token usage of the decomposition modes.
+ *
+ * <p>By default the calls go to a local {@link StubClaudeServer} that generates a fixed goal
+ * tree at a simulated output rate, so the modes can be compared repeatably and offline.
+ * With {@code --live} the real Claude API is used instead.</p>
+ *
+ * <p>Usage: {@code DecompositionModeBenchmark [goals] [subgoalsPerGoal] [actionsPerSubgoal] [tokensPerSecond]}
+ * (defaults: 5, 4, 5 and 400), or {@code DecompositionModeBenchmark --live [objective]}.</p>
+ */
+public class DecompositionModeBenchmark {
+
+    private static final String DEFAULT_OBJECTIVE =
+        "In pharma manufacturing context, investigate a deviation given a deviation description and find its root cause";
+
+    /**
+     * Main method to run the benchmark.
+     *
+     * @param args Command line arguments as described in the class documentation
+     * @throws IOException If a decomposition fails
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && "--live".equals(args[0])) {
+            String objective = args.length > 1 ? args[1] : DEFAULT_OBJECTIVE;
+            ClaudeClient client = new ClaudeClient.Builder().withTemperature(0.7).withDebugMode(false).build();
+            compare(client, objective);
+            printMetrics();
+            return;
+        }
+
+        int goals = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int subGoals = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int actions = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+        double tokensPerSecond = args.length > 3 ? Double.parseDouble(args[3]) : 400;
+
+        SyntheticTree tree = new SyntheticTree(goals, subGoals, actions);
+        try (StubClaudeServer server = new StubClaudeServer(tree::reply, 400, tokensPerSecond)) {
+            System.out.println("Stub API: " + goals + " goals x " + subGoals + " subgoals x " + actions
+                + " actions at " + tokensPerSecond + " tokens/s per request");
+            // The stub accepts any key
+            AIConfig.init("stub", null);
+            ClaudeClient client = new ClaudeClient.Builder()
+                .withBaseUrl(server.getUrl())
+                .withDebugMode(false)
+                .build();
+            compare(client, DEFAULT_OBJECTIVE);
+        }
+        printMetrics();
+    }
+
+    /**
+     * Prints the request metrics recorded by the default registry, by call site.
+     */
+    private static void printMetrics() {
+        if (!(Metrics.getRegistry() instanceof SimpleMetricsRegistry)) {
+            return;
+        }
+        SimpleMetricsRegistry registry = (SimpleMetricsRegistry) Metrics.getRegistry();
+        System.out.printf("%n%-80s %7s %10s %10s %10s%n", "timer", "count", "p50 (ms)", "p99 (ms)", "max (ms)");
+        registry.getTimers().forEach((id, timer) -> System.out.printf("%-80s %7d %10.1f %10.1f %10.1f%n", id, timer.count(),
+            timer.percentile(0.5, TimeUnit.MILLISECONDS), timer.percentile(0.99, TimeUnit.MILLISECONDS),
+            timer.max(TimeUnit.MILLISECONDS)));
+        System.out.printf("%n%-80s %7s%n", "counter", "count");
+        registry.getCounters().forEach((id, counter) -> System.out.printf("%-80s %7d%n", id, counter.count()));
+    }
+
+    private static void compare(ClaudeClient client, String objective) throws IOException {
+        System.out.printf("%-10s %12s %8s %10s %9s %12s %12s %12s%n", "mode", "wall (ms)", "goals", "subgoals", "actions",
+            "input tok", "cache write", "cache read");
+        for (DecompositionMode mode : DecompositionMode.values()) {
+            // No standard procedure cache, so every mode pays for the same calls
+            ObjectiveDecompositionService service = new ObjectiveDecompositionService(client, null, mode);
+            ClaudeClient.UsageTotals usage = client.getUsageTotals();
+            long input = usage.getInputTokens();
+            long cacheWrite = usage.getCacheCreationInputTokens();
+            long cacheRead = usage.getCacheReadInputTokens();
+            long start = System.nanoTime();
+            Agent agent = service.decomposeObjective(objective);
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            int subGoalCount = 0;
+            int actionCount = 0;
+            for (Goal goal : agent.getGoals()) {
+                subGoalCount += goal.getSubgoals().size();
+                for (SubGoal subGoal : goal.getSubgoals()) {
+                    actionCount += subGoal.getActions().size();
+                }
+            }
+            System.out.printf("%-10s %12d %8d %10d %9d %12d %12d %12d%n", mode, elapsed, agent.getGoals().size(),
+                subGoalCount, actionCount, usage.getInputTokens() - input,
+                usage.getCacheCreationInputTokens() - cacheWrite, usage.getCacheReadInputTokens() - cacheRead);
+        }
+    }
+
+    /**
+     * Generates stub replies for each prompt used by the decomposition service.
+     */
+    private static class SyntheticTree {
+        private static final Pattern PHASE_HEADING = Pattern.compile("(?m)^# Phase (\\d+)");
+        private static final int PROCEDURE_LINES_PER_STAGE = 6;
+
+        private final int goals;
+        private final int subGoals;
+        private final int actions;
+
+        SyntheticTree(int goals, int subGoals, int actions) {
+            this.goals = goals;
+            this.subGoals = subGoals;
+            this.actions = actions;
+        }
+
+        String reply(String prompt) {
+            if (prompt.contains("Provide a detailed hierarchical analysis")) {
+                return standardProcedure();
+            }
+            if (prompt.contains("Below is one phase of the standard procedure")) {
+                Matcher phase = PHASE_HEADING.matcher(prompt);
+                int g = phase.find() ? Integer.parseInt(phase.group(1)) : 1;
+                StringBuilder json = new StringBuilder("{\"goals\": [");
+                appendGoal(json, g, false);
+                return json.append("]}").toString();
+            }
+            if (prompt.contains("Do not list actions")) {
+                return tree(false);
+            }
+            if (prompt.contains("List the actions needed to achieve this sub goal")) {
+                StringBuilder json = new StringBuilder("{\"actions\": [");
+                appendActions(json, "this sub goal");
+                return json.append("]}").toString();
+            }
+            return tree(true);
+        }
+
+        private String standardProcedure() {
+            StringBuilder markdown = new StringBuilder();
+            for (int g = 1; g <= goals; g++) {
+                markdown.append("# Phase ").append(g).append("\n");
+                for (int s = 1; s <= subGoals; s++) {
+                    markdown.append("## Stage ").append(g).append('.').append(s).append('\n');
+                    for (int line = 0; line < PROCEDURE_LINES_PER_STAGE; line++) {
+                        markdown.append("- Tasks, owners, documentation and regulatory checks for this stage.\n");
+                    }
+                }
+            }
+            return markdown.toString();
+        }
+
+        private String tree(boolean withActions) {
+            StringBuilder json = new StringBuilder("{\"goals\": [");
+            for (int g = 1; g <= goals; g++) {
+                json.append(g > 1 ? "," : "");
+                appendGoal(json, g, withActions);
+            }
+            return json.append("]}").toString();
+        }
+
+        private void appendGoal(StringBuilder json, int g, boolean withActions) {
+            json.append("{\"name\": \"Goal ").append(g)
+                .append("\", \"description\": \"Complete phase ").append(g).append(" of the investigation\", \"subgoals\": [");
+            for (int s = 1; s <= subGoals; s++) {
+                json.append(s > 1 ? "," : "").append("{\"name\": \"Subgoal ").append(g).append('.').append(s)
+                    .append("\", \"description\": \"Carry out stage ").append(g).append('.').append(s).append('"');
+                if (withActions) {
+                    json.append(", \"actions\": [");
+                    appendActions(json, "stage " + g + "." + s);
+                    json.append(']');
+                }
+                json.append('}');
+            }
+            json.append("]}");
+        }
+
+        private void appendActions(StringBuilder json, String scope) {
+            for (int a = 1; a <= actions; a++) {
+                json.append(a > 1 ? "," : "").append("\"Action ").append(a).append(" for ").append(scope)
+                    .append(": gather the batch records, review them against the specification and record the findings for approval\"");
+            }
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.leucine.demo;
+
+import com.leucine.config.AIConfig;
+import com.leucine.config.ExecutionMode;
+import com.leucine.servlet.AsyncRequestExecutor;
+import com.leucine.wizard.service.AgentCreationService;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures one execution mode under many concurrent wizard sessions. Each session runs
+ * {@link AgentCreationService#processObjective(String, String)} on an
+ * {@link AsyncRequestExecutor}, as the servlet does, so its standard procedure and
+ * decomposition calls go through {@code ClaudeClient} and its HTTP transport to a local
+ * {@link StubClaudeServer} that answers after a fixed latency.
+ *
+ * <p>The execution mode is fixed when the service and its HTTP transport are created, so
+ * each run measures one mode; run the benchmark once per mode to compare them. Every run
+ * first runs the same sessions once unmeasured, so the JIT compiler has finished with the
+ * request path before the measured round starts. Claude
+ * concurrency and HTTP request limits are raised to the session count, so only
+ * {@code maxConcurrent} bounds the sessions in flight. The peak thread count includes the
+ * stub server's handler threads, one per request in flight, which is the same in both
+ * modes.</p>
+ *
+ * <p>Usage: {@code ExecutionModeBenchmark [platform|virtual] [sessions] [latencyMs] [maxConcurrent]}
+ * (defaults: platform, 1000 sessions, 250 ms per call, and as many concurrent sessions as
+ * there are sessions). The virtual mode requires Java 21 and falls back to platform
+ * threads on older JVMs.</p>
+ */
+public class ExecutionModeBenchmark {
+
+    /**
+     * Main method to run the benchmark.
+     *
+     * @param args Optional mode, session count, simulated call latency and concurrency limit
+     * @throws IOException If the stub server cannot be started
+     * @throws InterruptedException If the benchmark is interrupted
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String requested = args.length > 0 ? args[0] : "platform";
+        int sessions = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        long latencyMs = args.length > 2 ? Long.parseLong(args[2]) : 250;
+        int maxConcurrent = args.length > 3 ? Integer.parseInt(args[3]) : sessions;
+
+        // Replies are short, so the latency is almost all time to first token
+        try (StubClaudeServer server = new StubClaudeServer(ExecutionModeBenchmark::reply, latencyMs, 100_000)) {
+            // Settings must be in place before the service and its client are created
+            System.setProperty("CLAUDE_BASE_URL", server.getUrl());
+            System.setProperty("WIZARD_EXECUTION_MODE", requested);
+            System.setProperty("CLAUDE_MAX_CONCURRENCY", String.valueOf(sessions));
+            System.setProperty("CLAUDE_HTTP_MAX_REQUESTS", String.valueOf(sessions));
+            System.setProperty("CLAUDE_HTTP_MAX_REQUESTS_PER_HOST", String.valueOf(sessions));
+            // Every session pays for its own calls
+            System.setProperty("DECOMPOSITION_COALESCING_ENABLED", "false");
+            System.setProperty("STANDARD_PROCEDURE_CACHE_ENABLED", "false");
+            // The stub accepts any key
+            AIConfig.init("stub", null);
+            run(ExecutionMode.fromSettings(), sessions, latencyMs, maxConcurrent);
+        }
+    }
+
+    private static void run(ExecutionMode mode, int sessions, long latencyMs, int maxConcurrent)
+            throws InterruptedException {
+        AgentCreationService service = AgentCreationService.getInstance();
+        AsyncRequestExecutor executor = new AsyncRequestExecutor(
+            "bench-" + mode.name().toLowerCase(), true, maxConcurrent, sessions, TimeUnit.MINUTES.toMillis(10), mode);
+        System.out.println("Running " + sessions + " sessions of 2 calls of " + latencyMs + " ms each, at most "
+            + maxConcurrent + " at once, in " + mode + " mode (Java " + Runtime.version().feature() + ")");
+
+        // Without a warm-up round the JIT compiler competes with the sessions for the CPU
+        runRound(service, executor, sessions);
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        long start = System.nanoTime();
+        long[] latencies = new long[sessions];
+        int failures = runRound(service, executor, sessions, latencies);
+        long wall = System.nanoTime() - start;
+        int peakThreads = threads.getPeakThreadCount();
+        executor.shutdown();
+
+        Arrays.sort(latencies);
+        System.out.printf("%-10s %12s %12s %12s %14s %10s%n", "mode", "wall (ms)", "p50 (ms)", "p99 (ms)",
+            "peak threads", "failures");
+        System.out.printf("%-10s %12d %12d %12d %14d %10d%n",
+            mode,
+            TimeUnit.NANOSECONDS.toMillis(wall),
+            TimeUnit.NANOSECONDS.toMillis(latencies[sessions / 2]),
+            TimeUnit.NANOSECONDS.toMillis(latencies[Math.min(sessions - 1, (int) (sessions * 0.99))]),
+            peakThreads,
+            failures);
+    }
+
+    private static void runRound(AgentCreationService service, AsyncRequestExecutor executor, int sessions)
+            throws InterruptedException {
+        runRound(service, executor, sessions, new long[sessions]);
+    }
+
+    /**
+     * Submits all sessions at once and waits for them to finish.
+     *
+     * @return The number of sessions that failed
+     */
+    private static int runRound(AgentCreationService service, AsyncRequestExecutor executor, int sessions,
+                                long[] latencies) throws InterruptedException {
+        String[] sessionIds = new String[sessions];
+        for (int i = 0; i < sessions; i++) {
+            sessionIds[i] = service.startNewSession();
+        }
+        AtomicInteger failures = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(sessions);
+        for (int i = 0; i < sessions; i++) {
+            int session = i;
+            long submitted = System.nanoTime();
+            executor.submit(() -> {
+                try {
+                    service.processObjective(sessionIds[session], "Investigate deviation #" + session);
+                } catch (IOException | RuntimeException e) {
+                    failures.incrementAndGet();
+                } finally {
+                    latencies[session] = System.nanoTime() - submitted;
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        return failures.get();
+    }
+
+    private static String reply(String prompt) {
+        if (prompt.contains("Provide a detailed hierarchical analysis")) {
+            return "# Phase 1\n## Intake\n- Record the deviation.\n";
+        }
+        return "{\"goals\": [{\"name\": \"Intake\", \"description\": \"Record the deviation\", \"subgoals\": ["
+            + "{\"name\": \"Log\", \"description\": \"Log the deviation\", \"actions\": [\"Create the deviation record\"]}]}]}";
+    }
+}
@@ -0,0 +1,157 @@
+package com.leucine.demo;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.leucine.utils.ClaudeClient;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures how much request logging costs the threads that call Claude. Each simulated
+ * request logs what {@code ClaudeClient} logs for one call, with a large response body, so
+ * the benchmark measures the logging path rather than the Claude API.
+ *
+ * <p>Three setups are compared. {@code println} reproduces the former behaviour of
+ * {@code ClaudeClient}: timestamped lines, including the full response body, written to
+ * standard output on the calling thread. {@code async-info} is the default logging
+ * configuration, where request details are skipped. {@code async-debug} sets the
+ * {@code com.leucine} logger to DEBUG, so the request line and a body truncated to 2000
+ * characters are handed to the asynchronous appender. Once its queue is nearly full the
+ * appender discards DEBUG events instead of blocking, so that setup measures the cost to the
+ * request threads rather than how many lines reach the log. Standard output is redirected to
+ * a temporary file while the setups run, so the terminal speed does not skew the results.</p>
+ *
+ * <p>Usage: {@code LoggingThroughputBenchmark [requests] [threads] [bodyKb]}
+ * (defaults: 20000, 16 and 320).</p>
+ */
+public class LoggingThroughputBenchmark {
+
+    private static final int BODY_MAX_CHARS = 2000;
+    private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(ClaudeClient.class);
+
+    /**
+     * Main method to run the benchmark.
+     *
+     * @param args Optional request count, number of calling threads and response size in KB
+     * @throws Exception If the output file cannot be written
+     */
+    public static void main(String[] args) throws Exception {
+        int requests = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int bodyKb = args.length > 2 ? Integer.parseInt(args[2]) : 320;
+
+        String body = "{\"content\": [{\"type\": \"text\", \"text\": \"" + "x".repeat(bodyKb * 1024) + "\"}]}";
+        Logger logger = (Logger) LoggerFactory.getLogger("com.leucine");
+        Level configured = logger.getLevel();
+
+        PrintStream console = System.out;
+        console.println(requests + " requests on " + threads + " threads, " + bodyKb + " KB responses");
+        console.printf("%-12s %12s %14s%n", "setup", "wall (ms)", "requests/s");
+        Path output = Files.createTempFile("logging-benchmark", ".log");
+        try (PrintStream file = new PrintStream(new FileOutputStream(output.toFile()), true, StandardCharsets.UTF_8)) {
+            System.setOut(file);
+            // Warm up every path so the first setup is not penalised
+            logger.setLevel(Level.DEBUG);
+            run(requests / 10, threads, body, false);
+            run(requests / 10, threads, body, true);
+
+            report(console, "println", requests, run(requests, threads, body, true));
+            logger.setLevel(Level.INFO);
+            report(console, "async-info", requests, run(requests, threads, body, false));
+            logger.setLevel(Level.DEBUG);
+            report(console, "async-debug", requests, run(requests, threads, body, false));
+        } finally {
+            logger.setLevel(configured);
+            System.setOut(console);
+            Files.deleteIfExists(output);
+        }
+    }
+
+    private static void report(PrintStream console, String setup, int requests, long wall) {
+        console.printf("%-12s %12d %14.0f%n", setup, TimeUnit.NANOSECONDS.toMillis(wall),
+            requests / (wall / 1_000_000_000.0));
+    }
+
+    /**
+     * Runs the simulated requests and returns the wall time in nanoseconds.
+     */
+    private static long run(int requests, int threads, String body, boolean println) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            AtomicInteger remaining = new AtomicInteger(requests);
+            List<Future<?>> workers = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                workers.add(pool.submit(() -> {
+                    while (remaining.getAndDecrement() > 0) {
+                        if (println) {
+                            printRequest(body);
+                        } else {
+                            logRequest(body);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+            long wall = System.nanoTime() - start;
+            awaitQueuedEvents();
+            return wall;
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Logs a call the way {@code ClaudeClient} did before logging went through SLF4J.
+     */
+    private static void printRequest(String body) {
+        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+        System.out.printf("[%s] ClaudeClient: %s%n", timestamp, "Request URL: https://api.anthropic.com/v1/messages");
+        System.out.printf("[%s] ClaudeClient: %s%n", timestamp, "Response Code: 200");
+        System.out.printf("[%s] ClaudeClient: %s%n", timestamp, "Response Body: " + body);
+    }
+
+    /**
+     * Logs a call the way {@code ClaudeClient} does now.
+     */
+    private static void logRequest(String body) {
+        LOG.debug("Request {} {}", "POST", "https://api.anthropic.com/v1/messages");
+        if (LOG.isDebugEnabled()) {
+            int keep = BODY_MAX_CHARS / 2;
+            LOG.debug("Response {}: {}", "200 OK", body.substring(0, keep) + " ... ["
+                + (body.length() - 2 * keep) + " chars omitted] ... " + body.substring(body.length() - keep));
+        }
+    }
+
+    /**
+     * Waits until the asynchronous appender has written everything queued by the last
+     * setup, so it does not compete with the next one.
+     */
+    private static void awaitQueuedEvents() throws InterruptedException {
+        Logger root = (Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+        if (root.getAppender("ASYNC") instanceof AsyncAppender) {
+            AsyncAppender appender = (AsyncAppender) root.getAppender("ASYNC");
+            while (appender.getNumberOfElementsInQueue() > 0) {
+                Thread.sleep(10);
+            }
+        }
+    }
+}
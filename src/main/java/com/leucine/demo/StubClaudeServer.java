@@ -0,0 +1,360 @@
+package com.leucine.demo;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * Local stand-in for the Claude Messages API, used by the demos to compare strategies
+ * without network access or API cost. Replies are produced by a function of the last user
+ * message and are delayed to simulate generation: a fixed time to the first token and then
+ * a constant output rate. Both plain and streaming ({@code "stream": true}) requests are
+ * supported. Responses report token usage, counting prefixes that end in a
+ * {@code cache_control} block as cache writes the first time they are seen and as cache
+ * reads afterwards.
+ *
+ * <p>The Message Batches endpoints are simulated as well: a batch ends once its slowest
+ * request would have finished if all of them ran at once, and its results are served as
+ * JSONL.</p>
+ */
+public class StubClaudeServer implements AutoCloseable {
+
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final int CHUNK_CHARS = 64;
+    // Room for a burst of concurrent connections; the JDK default of 50 makes the rest retry
+    private static final int BACKLOG = 4096;
+
+    private final Gson gson = new Gson();
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Function<String, String> responder;
+    private final long firstTokenMillis;
+    private final double tokensPerSecond;
+    private final Set<String> cachedPrefixes = ConcurrentHashMap.newKeySet();
+    private final Map<String, Batch> batches = new ConcurrentHashMap<>();
+    private final AtomicInteger batchIds = new AtomicInteger();
+
+    /**
+     * Starts a stub server on a free local port.
+     *
+     * @param responder Produces the reply text for a user message
+     * @param firstTokenMillis Simulated time to the first token
+     * @param tokensPerSecond Simulated output rate of each request
+     * @throws IOException If the server cannot be started
+     */
+    public StubClaudeServer(Function<String, String> responder, long firstTokenMillis, double tokensPerSecond)
+            throws IOException {
+        this.responder = responder;
+        this.firstTokenMillis = firstTokenMillis;
+        this.tokensPerSecond = tokensPerSecond;
+        this.executor = Executors.newCachedThreadPool();
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), BACKLOG);
+        server.createContext("/v1/messages", this::handle);
+        server.createContext("/v1/messages/batches", this::handleBatches);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Gets the Messages API URL of this server, for {@code ClaudeClient.Builder#withBaseUrl}.
+     *
+     * @return The endpoint URL
+     */
+    public String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/messages";
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            JsonObject request = JsonParser.parseString(
+                new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8)).getAsJsonObject();
+            JsonArray messages = request.getAsJsonArray("messages");
+            JsonElement content = messages.get(messages.size() - 1).getAsJsonObject().get("content");
+            JsonObject usage = new JsonObject();
+            String prompt = readPrompt(content, usage);
+            String reply = responder.apply(prompt);
+            boolean stream = request.has("stream") && request.get("stream").getAsBoolean();
+
+            Thread.sleep(firstTokenMillis);
+            if (stream) {
+                writeStream(exchange, reply, usage);
+            } else {
+                sleepForChars(reply.length());
+                writeMessage(exchange, reply, usage);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * A simulated message batch with its results computed up front.
+     */
+    private static class Batch {
+        final String id;
+        final String createdAt;
+        final long endsAtMillis;
+        final List<JsonObject> results;
+
+        Batch(String id, long endsAtMillis, List<JsonObject> results) {
+            this.id = id;
+            this.createdAt = Instant.now().toString();
+            this.endsAtMillis = endsAtMillis;
+            this.results = results;
+        }
+
+        boolean isEnded() {
+            return System.currentTimeMillis() >= endsAtMillis;
+        }
+    }
+
+    private void handleBatches(HttpExchange exchange) throws IOException {
+        try {
+            // /v1/messages/batches[/{id}[/results]]
+            String[] path = exchange.getRequestURI().getPath().substring("/v1/messages/batches".length()).split("/");
+            if ("POST".equals(exchange.getRequestMethod()) && path.length <= 1) {
+                JsonObject request = JsonParser.parseString(
+                    new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8)).getAsJsonObject();
+                writeJson(exchange, 200, describe(createBatch(request.getAsJsonArray("requests"))));
+                return;
+            }
+            Batch batch = path.length >= 2 ? batches.get(path[1]) : null;
+            if (batch == null) {
+                JsonObject error = new JsonObject();
+                error.addProperty("type", "not_found_error");
+                error.addProperty("message", "No batch found");
+                JsonObject body = new JsonObject();
+                body.addProperty("type", "error");
+                body.add("error", error);
+                writeJson(exchange, 404, body);
+            } else if (path.length == 3 && "results".equals(path[2]) && batch.isEnded()) {
+                writeResults(exchange, batch);
+            } else {
+                writeJson(exchange, 200, describe(batch));
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private Batch createBatch(JsonArray requests) {
+        List<JsonObject> results = new ArrayList<>();
+        long slowestMillis = 0;
+        for (JsonElement element : requests) {
+            JsonObject request = element.getAsJsonObject();
+            JsonArray messages = request.getAsJsonObject("params").getAsJsonArray("messages");
+            JsonObject usage = new JsonObject();
+            String reply = responder.apply(readPrompt(messages.get(messages.size() - 1).getAsJsonObject().get("content"), usage));
+            slowestMillis = Math.max(slowestMillis, millisForChars(reply.length()));
+
+            JsonObject message = message(reply);
+            message.addProperty("stop_reason", "end_turn");
+            usage.addProperty("output_tokens", tokens(reply.length()));
+            message.add("usage", usage);
+            JsonObject outcome = new JsonObject();
+            outcome.addProperty("type", "succeeded");
+            outcome.add("message", message);
+            JsonObject result = new JsonObject();
+            result.addProperty("custom_id", request.get("custom_id").getAsString());
+            result.add("result", outcome);
+            results.add(result);
+        }
+        String id = "msgbatch_stub_" + batchIds.incrementAndGet();
+        Batch batch = new Batch(id, System.currentTimeMillis() + firstTokenMillis + slowestMillis, results);
+        batches.put(id, batch);
+        return batch;
+    }
+
+    private JsonObject describe(Batch batch) {
+        boolean ended = batch.isEnded();
+        JsonObject counts = new JsonObject();
+        counts.addProperty("processing", ended ? 0 : batch.results.size());
+        counts.addProperty("succeeded", ended ? batch.results.size() : 0);
+        counts.addProperty("errored", 0);
+        counts.addProperty("canceled", 0);
+        counts.addProperty("expired", 0);
+        JsonObject body = new JsonObject();
+        body.addProperty("id", batch.id);
+        body.addProperty("type", "message_batch");
+        body.addProperty("processing_status", ended ? "ended" : "in_progress");
+        body.add("request_counts", counts);
+        body.addProperty("created_at", batch.createdAt);
+        if (ended) {
+            body.addProperty("ended_at", Instant.ofEpochMilli(batch.endsAtMillis).toString());
+            body.addProperty("results_url", getUrl() + "/batches/" + batch.id + "/results");
+        }
+        return body;
+    }
+
+    private void writeResults(HttpExchange exchange, Batch batch) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/binary");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (JsonObject result : batch.results) {
+                out.write((gson.toJson(result) + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    private void writeJson(HttpExchange exchange, int status, JsonObject json) throws IOException {
+        byte[] body = gson.toJson(json).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Joins the text of a message's content and fills in its input token usage.
+     */
+    private String readPrompt(JsonElement content, JsonObject usage) {
+        if (content.isJsonPrimitive()) {
+            String prompt = content.getAsString();
+            setInputUsage(usage, tokens(prompt.length()), 0, 0);
+            return prompt;
+        }
+        StringBuilder prompt = new StringBuilder();
+        int cachedChars = 0;
+        for (JsonElement element : content.getAsJsonArray()) {
+            JsonObject block = element.getAsJsonObject();
+            if (block.has("text")) {
+                prompt.append(block.get("text").getAsString());
+            }
+            if (block.has("cache_control")) {
+                cachedChars = prompt.length();
+            }
+        }
+        long cached = tokens(cachedChars);
+        long uncached = tokens(prompt.length() - cachedChars);
+        if (cachedChars == 0) {
+            setInputUsage(usage, uncached, 0, 0);
+        } else if (cachedPrefixes.add(prompt.substring(0, cachedChars))) {
+            setInputUsage(usage, uncached, cached, 0);
+        } else {
+            setInputUsage(usage, uncached, 0, cached);
+        }
+        return prompt.toString();
+    }
+
+    private static void setInputUsage(JsonObject usage, long input, long cacheCreation, long cacheRead) {
+        usage.addProperty("input_tokens", input);
+        usage.addProperty("cache_creation_input_tokens", cacheCreation);
+        usage.addProperty("cache_read_input_tokens", cacheRead);
+        usage.addProperty("output_tokens", 0);
+    }
+
+    private static long tokens(int chars) {
+        return (chars + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    private void writeMessage(HttpExchange exchange, String reply, JsonObject usage) throws IOException {
+        JsonObject message = message(reply);
+        message.addProperty("stop_reason", "end_turn");
+        usage.addProperty("output_tokens", tokens(reply.length()));
+        message.add("usage", usage);
+        byte[] body = gson.toJson(message).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private void writeStream(HttpExchange exchange, String reply, JsonObject usage) throws IOException, InterruptedException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            JsonObject start = new JsonObject();
+            JsonObject startMessage = message("");
+            startMessage.add("usage", usage);
+            start.add("message", startMessage);
+            writeEvent(out, "message_start", start);
+
+            JsonObject block = new JsonObject();
+            JsonObject contentBlock = new JsonObject();
+            contentBlock.addProperty("type", "text");
+            contentBlock.addProperty("text", "");
+            block.add("content_block", contentBlock);
+            writeEvent(out, "content_block_start", block);
+
+            for (int offset = 0; offset < reply.length(); offset += CHUNK_CHARS) {
+                String chunk = reply.substring(offset, Math.min(reply.length(), offset + CHUNK_CHARS));
+                sleepForChars(chunk.length());
+                JsonObject delta = new JsonObject();
+                JsonObject text = new JsonObject();
+                text.addProperty("type", "text_delta");
+                text.addProperty("text", chunk);
+                delta.add("delta", text);
+                writeEvent(out, "content_block_delta", delta);
+            }
+            writeEvent(out, "content_block_stop", new JsonObject());
+
+            JsonObject messageDelta = new JsonObject();
+            JsonObject stop = new JsonObject();
+            stop.addProperty("stop_reason", "end_turn");
+            messageDelta.add("delta", stop);
+            JsonObject outputUsage = new JsonObject();
+            outputUsage.addProperty("output_tokens", tokens(reply.length()));
+            messageDelta.add("usage", outputUsage);
+            writeEvent(out, "message_delta", messageDelta);
+            writeEvent(out, "message_stop", new JsonObject());
+        }
+    }
+
+    private JsonObject message(String text) {
+        JsonObject message = new JsonObject();
+        message.addProperty("id", "msg_stub");
+        message.addProperty("type", "message");
+        message.addProperty("role", "assistant");
+        message.addProperty("model", "stub");
+        JsonArray content = new JsonArray();
+        JsonObject block = new JsonObject();
+        block.addProperty("type", "text");
+        block.addProperty("text", text);
+        content.add(block);
+        message.add("content", content);
+        return message;
+    }
+
+    private void writeEvent(OutputStream out, String type, JsonObject data) throws IOException {
+        data.addProperty("type", type);
+        out.write(("event: " + type + "\ndata: " + gson.toJson(data) + "\n\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    private void sleepForChars(int chars) throws InterruptedException {
+        Thread.sleep(millisForChars(chars));
+    }
+
+    private long millisForChars(int chars) {
+        return (long) (chars / (double) CHARS_PER_TOKEN / tokensPerSecond * 1000);
+    }
+}
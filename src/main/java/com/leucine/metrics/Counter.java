@@ -0,0 +1,28 @@
+package com.leucine.metrics;
+
+/**
+ * A monotonically increasing count, such as the number of retries or tokens.
+ */
+public interface Counter {
+
+    /**
+     * Adds one to the count.
+     */
+    default void increment() {
+        increment(1);
+    }
+
+    /**
+     * Adds to the count.
+     *
+     * @param amount The amount to add, which must not be negative
+     */
+    void increment(long amount);
+
+    /**
+     * Gets the current count.
+     *
+     * @return The count
+     */
+    long count();
+}
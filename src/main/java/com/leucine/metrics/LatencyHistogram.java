@@ -0,0 +1,100 @@
+package com.leucine.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free {@link Timer} backed by a log-linear histogram of nanosecond values, in the
+ * style of HdrHistogram. Each power of two is split into 64 linear buckets, so recorded
+ * values and percentiles are accurate to within 1.6% over the whole range of a long, in a
+ * fixed 30 KB of counters and without any allocation when recording.
+ */
+public class LatencyHistogram implements Timer {
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+    @Override
+    public void record(long duration, TimeUnit unit) {
+        long nanos = Math.max(0, unit.toNanos(duration));
+        counts.incrementAndGet(indexOf(nanos));
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    @Override
+    public long count() {
+        return count.sum();
+    }
+
+    @Override
+    public double totalTime(TimeUnit unit) {
+        return convert(totalNanos.sum(), unit);
+    }
+
+    @Override
+    public double max(TimeUnit unit) {
+        return convert(maxNanos.get(), unit);
+    }
+
+    @Override
+    public double percentile(double percentile, TimeUnit unit) {
+        // Counts recorded while scanning may be missed; the result is still a recorded value
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += counts.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(Math.min(1, Math.max(0, percentile)) * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return convert(Math.min(valueOf(i), maxNanos.get()), unit);
+            }
+        }
+        return max(unit);
+    }
+
+    /**
+     * Maps a value to its bucket. Values below 64 have a bucket each; above that, the top
+     * seven significant bits select the bucket.
+     */
+    static int indexOf(long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = (Long.SIZE - 1) - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+        return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * Maps a bucket to the middle of the values it holds.
+     */
+    static long valueOf(int index) {
+        int bucket = index / SUB_BUCKET_COUNT;
+        if (bucket == 0) {
+            return index;
+        }
+        int shift = bucket - 1;
+        long lower = (long) (SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT) << shift;
+        return lower + ((1L << shift) >>> 1);
+    }
+
+    private static double convert(long nanos, TimeUnit unit) {
+        return (double) nanos / unit.toNanos(1);
+    }
+}
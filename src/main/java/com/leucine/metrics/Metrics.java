@@ -0,0 +1,58 @@
+package com.leucine.metrics;
+
+/**
+ * Holds the process-wide {@link MetricsRegistry}.
+ *
+ * <p>The default registry is a {@link SimpleMetricsRegistry} that also publishes every meter
+ * as a JMX MBean unless {@code METRICS_JMX_ENABLED} is false. Replace it with
+ * {@link #setRegistry} before the first Claude client is built to route metrics elsewhere.</p>
+ */
+public final class Metrics {
+
+    private static volatile MetricsRegistry registry;
+
+    private Metrics() {
+    }
+
+    /**
+     * Gets the process-wide registry, creating the default one on first use.
+     *
+     * @return The registry
+     */
+    public static MetricsRegistry getRegistry() {
+        MetricsRegistry current = registry;
+        if (current == null) {
+            synchronized (Metrics.class) {
+                if (registry == null) {
+                    registry = SimpleMetricsRegistry.fromSettings();
+                }
+                current = registry;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Replaces the process-wide registry. Meters created earlier stay in the old registry.
+     *
+     * @param registry The new registry
+     */
+    public static void setRegistry(MetricsRegistry registry) {
+        if (registry == null) {
+            throw new IllegalArgumentException("registry must not be null");
+        }
+        Metrics.registry = registry;
+    }
+
+    /**
+     * Closes the process-wide registry, if one has been created, so that a redeployed
+     * application does not leave its MBeans behind. The next call to {@link #getRegistry()}
+     * creates a new default registry.
+     */
+    public static synchronized void close() {
+        if (registry != null) {
+            registry.close();
+            registry = null;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.leucine.metrics;
+
+import java.util.function.Supplier;
+
+/**
+ * Creates and holds the meters of the application. Meters are identified by a name and
+ * key-value tags, following Micrometer conventions, so an adapter to a Micrometer
+ * {@code MeterRegistry} or another metrics system only has to implement these three methods.
+ *
+ * @see Metrics#getRegistry()
+ */
+public interface MetricsRegistry {
+
+    /**
+     * Gets or creates a timer.
+     *
+     * @param name The meter name, for example {@code claude.request.latency}
+     * @param tags Alternating tag keys and values
+     * @return The timer; the same instance for the same name and tags
+     */
+    Timer timer(String name, String... tags);
+
+    /**
+     * Gets or creates a counter.
+     *
+     * @param name The meter name
+     * @param tags Alternating tag keys and values
+     * @return The counter; the same instance for the same name and tags
+     */
+    Counter counter(String name, String... tags);
+
+    /**
+     * Registers a gauge that reports the current value of a supplier. If a gauge with the
+     * same name and tags already exists it is kept and the new supplier is ignored.
+     *
+     * @param name The meter name
+     * @param value Supplies the current value
+     * @param tags Alternating tag keys and values
+     */
+    void gauge(String name, Supplier<Number> value, String... tags);
+
+    /**
+     * Releases what the registry has published outside the application, such as MBeans.
+     * Meters keep working afterwards but are no longer published.
+     */
+    default void close() {
+    }
+}
@@ -0,0 +1,288 @@
+package com.leucine.metrics;
+
+import com.leucine.config.AIConfig;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * In-process {@link MetricsRegistry} that keeps every meter in memory and can publish each
+ * one as an MBean in the {@code com.leucine.metrics} JMX domain, so the numbers can be read
+ * with JConsole, VisualVM or any JMX collector. Timers are {@link LatencyHistogram}s and
+ * report their count, mean, maximum and 50th, 90th, 99th and 99.9th percentiles in milliseconds.
+ *
+ * <p>The MBeans live in the platform MBean server, which outlives a web application, so
+ * {@link #close()} must be called when the application stops. A meter published under a
+ * name that is already registered replaces the existing MBean, which can only have been
+ * left by an earlier registry, for example one of a previous deployment.</p>
+ */
+public class SimpleMetricsRegistry implements MetricsRegistry {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SimpleMetricsRegistry.class);
+    private static final String JMX_DOMAIN = "com.leucine.metrics";
+    // The registry whose MBean holds each name, among the registries of this class loader
+    private static final Map<ObjectName, SimpleMetricsRegistry> OWNERS = new ConcurrentHashMap<>();
+
+    private final boolean jmxEnabled;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Supplier<Number>> gauges = new ConcurrentHashMap<>();
+    private final Set<ObjectName> published = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Creates a registry.
+     *
+     * @param jmxEnabled Whether meters are published as JMX MBeans
+     */
+    public SimpleMetricsRegistry(boolean jmxEnabled) {
+        this.jmxEnabled = jmxEnabled;
+    }
+
+    /**
+     * Creates a registry configured from the {@code METRICS_JMX_ENABLED} setting (default true).
+     *
+     * @return The registry
+     */
+    public static SimpleMetricsRegistry fromSettings() {
+        return new SimpleMetricsRegistry(AIConfig.getBooleanSetting("METRICS_JMX_ENABLED", true));
+    }
+
+    @Override
+    public Timer timer(String name, String... tags) {
+        return timers.computeIfAbsent(id(name, tags), id -> {
+            LatencyHistogram timer = new LatencyHistogram();
+            register("timer", name, tags, new PublishedMBean<>(new TimerView(timer), TimerMXBean.class));
+            return timer;
+        });
+    }
+
+    @Override
+    public Counter counter(String name, String... tags) {
+        return counters.computeIfAbsent(id(name, tags), id -> {
+            SimpleCounter counter = new SimpleCounter();
+            register("counter", name, tags, new PublishedMBean<>(counter, CounterMXBean.class));
+            return counter;
+        });
+    }
+
+    @Override
+    public void gauge(String name, Supplier<Number> value, String... tags) {
+        gauges.computeIfAbsent(id(name, tags), id -> {
+            register("gauge", name, tags, new PublishedMBean<>((GaugeMXBean) () -> value.get().doubleValue(), GaugeMXBean.class));
+            return value;
+        });
+    }
+
+    /**
+     * Gets all timers, keyed by name and tags such as {@code claude.request.latency{site=decomposition}}.
+     *
+     * @return The timers, sorted by key
+     */
+    public Map<String, Timer> getTimers() {
+        return Collections.unmodifiableMap(new TreeMap<>(timers));
+    }
+
+    /**
+     * Gets all counters, keyed by name and tags.
+     *
+     * @return The counters, sorted by key
+     */
+    public Map<String, Counter> getCounters() {
+        return Collections.unmodifiableMap(new TreeMap<>(counters));
+    }
+
+    /**
+     * Gets the current value of every gauge, keyed by name and tags.
+     *
+     * @return The gauge values, sorted by key
+     */
+    public Map<String, Number> getGaugeValues() {
+        Map<String, Number> values = new TreeMap<>();
+        gauges.forEach((id, value) -> values.put(id, value.get()));
+        return values;
+    }
+
+    private static String id(String name, String... tags) {
+        if (tags.length % 2 != 0) {
+            throw new IllegalArgumentException("Tags must be key-value pairs: " + String.join(",", tags));
+        }
+        if (tags.length == 0) {
+            return name;
+        }
+        StringBuilder id = new StringBuilder(name).append('{');
+        for (int i = 0; i < tags.length; i += 2) {
+            id.append(i > 0 ? "," : "").append(tags[i]).append('=').append(tags[i + 1]);
+        }
+        return id.append('}').toString();
+    }
+
+    private void register(String type, String name, String[] tags, StandardMBean mbean) {
+        if (!jmxEnabled) {
+            return;
+        }
+        StringBuilder objectName = new StringBuilder(JMX_DOMAIN)
+            .append(":meter=").append(type)
+            .append(",name=").append(quoteIfNeeded(name));
+        for (int i = 0; i < tags.length; i += 2) {
+            // Tag keys must not repeat the keys used above
+            String key = "meter".equals(tags[i]) || "name".equals(tags[i]) ? "tag." + tags[i] : tags[i];
+            objectName.append(',').append(key).append('=').append(quoteIfNeeded(tags[i + 1]));
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName mbeanName = new ObjectName(objectName.toString());
+            if (server.isRegistered(mbeanName)) {
+                server.unregisterMBean(mbeanName);
+            }
+            server.registerMBean(mbean, mbeanName);
+            OWNERS.put(mbeanName, this);
+            published.add(mbeanName);
+        } catch (JMException e) {
+            LOG.warn("Unable to publish metric {} over JMX: {}", objectName, e.getMessage());
+        }
+    }
+
+    /**
+     * Unregisters every MBean this registry has published and that has not been replaced
+     * since by another registry.
+     */
+    @Override
+    public void close() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (ObjectName name : published) {
+            try {
+                // A registry of a newer deployment has other classes, so check the loader too
+                if (OWNERS.remove(name, this)
+                        && server.getClassLoaderFor(name) == SimpleMetricsRegistry.class.getClassLoader()) {
+                    server.unregisterMBean(name);
+                }
+            } catch (JMException e) {
+                // Removed by another registry in the meantime
+                LOG.debug("Unable to unregister {}: {}", name, e.getMessage());
+            }
+        }
+        published.clear();
+    }
+
+    private static String quoteIfNeeded(String value) {
+        for (char c : value.toCharArray()) {
+            if (c == ',' || c == '=' || c == ':' || c == '"' || c == '*' || c == '?' || c == '\n') {
+                return ObjectName.quote(value);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * An MXBean whose class comes from this application's class loader, so the MBean server
+     * can tell which deployment published it.
+     */
+    private static final class PublishedMBean<T> extends StandardMBean {
+        PublishedMBean(T implementation, Class<T> mbeanInterface) {
+            super(implementation, mbeanInterface, true);
+        }
+    }
+
+    /**
+     * JMX view of a timer, in milliseconds.
+     */
+    public interface TimerMXBean {
+        long getCount();
+        double getMeanMillis();
+        double getMaxMillis();
+        double getP50Millis();
+        double getP90Millis();
+        double getP99Millis();
+        double getP999Millis();
+    }
+
+    /**
+     * JMX view of a counter.
+     */
+    public interface CounterMXBean {
+        long getCount();
+    }
+
+    /**
+     * JMX view of a gauge.
+     */
+    public interface GaugeMXBean {
+        double getValue();
+    }
+
+    private static final class TimerView implements TimerMXBean {
+        private final Timer timer;
+
+        TimerView(Timer timer) {
+            this.timer = timer;
+        }
+
+        @Override
+        public long getCount() {
+            return timer.count();
+        }
+
+        @Override
+        public double getMeanMillis() {
+            return timer.mean(TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public double getMaxMillis() {
+            return timer.max(TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public double getP50Millis() {
+            return timer.percentile(0.5, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public double getP90Millis() {
+            return timer.percentile(0.9, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public double getP99Millis() {
+            return timer.percentile(0.99, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public double getP999Millis() {
+            return timer.percentile(0.999, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static final class SimpleCounter implements Counter, CounterMXBean {
+        private final LongAdder count = new LongAdder();
+
+        @Override
+        public void increment(long amount) {
+            count.add(amount);
+        }
+
+        @Override
+        public long count() {
+            return count.sum();
+        }
+
+        @Override
+        public long getCount() {
+            return count();
+        }
+    }
+}
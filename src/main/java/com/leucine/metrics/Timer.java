@@ -0,0 +1,60 @@
+package com.leucine.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the distribution of durations, such as request latencies.
+ */
+public interface Timer {
+
+    /**
+     * Records one duration.
+     *
+     * @param duration The duration, negative values are recorded as zero
+     * @param unit The unit of the duration
+     */
+    void record(long duration, TimeUnit unit);
+
+    /**
+     * Gets the number of recorded durations.
+     *
+     * @return The count
+     */
+    long count();
+
+    /**
+     * Gets the sum of the recorded durations.
+     *
+     * @param unit The unit of the result
+     * @return The total time
+     */
+    double totalTime(TimeUnit unit);
+
+    /**
+     * Gets the longest recorded duration.
+     *
+     * @param unit The unit of the result
+     * @return The maximum, or 0 if nothing was recorded
+     */
+    double max(TimeUnit unit);
+
+    /**
+     * Gets a percentile of the recorded durations.
+     *
+     * @param percentile The percentile between 0 and 1, for example 0.99
+     * @param unit The unit of the result
+     * @return The duration at the percentile, or 0 if nothing was recorded
+     */
+    double percentile(double percentile, TimeUnit unit);
+
+    /**
+     * Gets the mean of the recorded durations.
+     *
+     * @param unit The unit of the result
+     * @return The mean, or 0 if nothing was recorded
+     */
+    default double mean(TimeUnit unit) {
+        long count = count();
+        return count == 0 ? 0 : totalTime(unit) / count;
+    }
+}
@@ -1,6 +1,6 @@
 package com.leucine.model;
 
-import java.util.UUID;
+import com.leucine.utils.Ids;
 
 /**
  * Represents an atomic action that can be performed by an autonomous system.
@@ -17,7 +17,7 @@ public class Action {
      * @param description The description of the action
      */
     public Action(String description) {
-        this.id = UUID.randomUUID().toString();
+        this.id = Ids.newId();
         this.description = description;
     }
     
@@ -49,6 +49,15 @@ public class Action {
         this.description = description;
     }
     
+    /**
+     * Creates a copy of this action with a newly generated ID.
+     * 
+     * @return The copy
+     */
+    public Action copy() {
+        return new Action(description);
+    }
+    
     @Override
     public String toString() {
         return "Action{" +
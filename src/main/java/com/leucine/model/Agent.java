@@ -1,8 +1,9 @@
 package com.leucine.model;
 
+import com.leucine.utils.Ids;
+
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 
 /**
  * Represents an autonomous agent for deviation investigation.
@@ -19,7 +20,7 @@ public class Agent {
      * Creates a new agent with default settings.
      */
     public Agent() {
-        this.id = UUID.randomUUID().toString();
+        this.id = Ids.newId();
         this.goals = new ArrayList<>();
     }
     
@@ -29,7 +30,7 @@ public class Agent {
      * @param name The name of the agent
      */
     public Agent(String name) {
-        this.id = UUID.randomUUID().toString();
+        this.id = Ids.newId();
         this.goals = new ArrayList<>();
         this.name = name;
     }
@@ -113,6 +114,21 @@ public class Agent {
         this.goals = goals;
     }
     
+    /**
+     * Creates a deep copy of this agent. The copy keeps the agent's name, objective and
+     * standard procedure, but the agent and every goal, subgoal and action get newly
+     * generated IDs, so copies handed to different sessions never share element IDs.
+     * 
+     * @return The copy
+     */
+    public Agent copy() {
+        Agent copy = new Agent(Ids.newId(), name, objective, standardProcedure);
+        for (Goal goal : goals) {
+            copy.addGoal(goal.copy());
+        }
+        return copy;
+    }
+    
     @Override
     public String toString() {
         return "Agent{" +
@@ -0,0 +1,273 @@
+package com.leucine.model;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.BitSet;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Immutable, compact encoding of an agent and its goal tree, for agents that are kept in
+ * memory long after they were built.
+ *
+ * <p>An {@link Agent} holds one object per goal, subgoal and action, each with its own list
+ * and a 36-character id string. Here the tree is stored column by column instead. Goals,
+ * subgoals and actions are numbered in order. Their descriptions sit in one array per level,
+ * and each goal and subgoal records where its children end in the next level's array, so
+ * children are found by offset rather than through lists. Ids that are UUIDs in canonical
+ * form are kept as two longs. Other ids, such as those assigned by a client, are kept as
+ * strings. Descriptions and the agent's name, objective and standard procedure are interned,
+ * so agents decomposed from the same objective share their strings. The interner holds its
+ * strings weakly, so a string is released once no agent uses it.</p>
+ *
+ * <p>{@link #toAgent()} builds an ordinary, mutable agent from the encoding. Null goal,
+ * subgoal and action lists are encoded as empty lists.</p>
+ */
+public final class CompactAgentTree {
+
+    private static final Interner STRINGS = new Interner();
+
+    private final String name;
+    private final String objective;
+    private final String standardProcedure;
+
+    private final String[] goalDescriptions;
+    private final int[] goalSubGoalEnds;
+    private final String[] subGoalDescriptions;
+    private final int[] subGoalActionEnds;
+    private final String[] actionDescriptions;
+
+    // Two longs per node: the agent, then its goals, subgoals and actions in order
+    private final long[] ids;
+    // Nodes whose id is not a canonical UUID, and those ids by node; null if there are none
+    private BitSet irregularIds;
+    private String[] irregularIdValues;
+
+    private CompactAgentTree(Agent agent) {
+        List<Goal> goals = orEmpty(agent.getGoals());
+        int subGoalCount = 0;
+        int actionCount = 0;
+        for (Goal goal : goals) {
+            for (SubGoal subGoal : orEmpty(goal.getSubgoals())) {
+                subGoalCount++;
+                actionCount += orEmpty(subGoal.getActions()).size();
+            }
+        }
+
+        this.name = STRINGS.intern(agent.getName());
+        this.objective = STRINGS.intern(agent.getObjective());
+        this.standardProcedure = STRINGS.intern(agent.getStandardProcedure());
+        this.goalDescriptions = new String[goals.size()];
+        this.goalSubGoalEnds = new int[goals.size()];
+        this.subGoalDescriptions = new String[subGoalCount];
+        this.subGoalActionEnds = new int[subGoalCount];
+        this.actionDescriptions = new String[actionCount];
+
+        int nodes = 1 + goals.size() + subGoalCount + actionCount;
+        this.ids = new long[2 * nodes];
+        encodeId(0, agent.getId());
+
+        int s = 0;
+        int a = 0;
+        int subGoalBase = 1 + goals.size();
+        int actionBase = subGoalBase + subGoalCount;
+        for (int g = 0; g < goals.size(); g++) {
+            Goal goal = goals.get(g);
+            goalDescriptions[g] = STRINGS.intern(goal.getDescription());
+            encodeId(1 + g, goal.getId());
+            for (SubGoal subGoal : orEmpty(goal.getSubgoals())) {
+                subGoalDescriptions[s] = STRINGS.intern(subGoal.getDescription());
+                encodeId(subGoalBase + s, subGoal.getId());
+                for (Action action : orEmpty(subGoal.getActions())) {
+                    actionDescriptions[a] = STRINGS.intern(action.getDescription());
+                    encodeId(actionBase + a, action.getId());
+                    a++;
+                }
+                subGoalActionEnds[s++] = a;
+            }
+            goalSubGoalEnds[g] = s;
+        }
+    }
+
+    /**
+     * Encodes an agent. The agent is only read, and later changes to it are not reflected
+     * in the encoding.
+     *
+     * @param agent The agent to encode
+     * @return The compact encoding
+     */
+    public static CompactAgentTree of(Agent agent) {
+        return new CompactAgentTree(agent);
+    }
+
+    /**
+     * Builds a new agent with the same ids, text and goal tree as the encoded one.
+     *
+     * @return The agent
+     */
+    public Agent toAgent() {
+        Agent agent = new Agent(decodeId(0), name, objective, standardProcedure);
+        int subGoalBase = 1 + goalDescriptions.length;
+        int actionBase = subGoalBase + subGoalDescriptions.length;
+        int s = 0;
+        int a = 0;
+        for (int g = 0; g < goalDescriptions.length; g++) {
+            Goal goal = new Goal(decodeId(1 + g), goalDescriptions[g]);
+            for (; s < goalSubGoalEnds[g]; s++) {
+                SubGoal subGoal = new SubGoal(decodeId(subGoalBase + s), subGoalDescriptions[s]);
+                for (; a < subGoalActionEnds[s]; a++) {
+                    subGoal.addAction(new Action(decodeId(actionBase + a), actionDescriptions[a]));
+                }
+                goal.addSubgoal(subGoal);
+            }
+            agent.addGoal(goal);
+        }
+        return agent;
+    }
+
+    /**
+     * Gets the id of the encoded agent.
+     *
+     * @return The agent id
+     */
+    public String getId() {
+        return decodeId(0);
+    }
+
+    public int getGoalCount() {
+        return goalDescriptions.length;
+    }
+
+    public int getSubGoalCount() {
+        return subGoalDescriptions.length;
+    }
+
+    public int getActionCount() {
+        return actionDescriptions.length;
+    }
+
+    private void encodeId(int node, String id) {
+        UUID uuid = parseCanonicalUuid(id);
+        if (uuid == null) {
+            if (irregularIds == null) {
+                irregularIds = new BitSet(ids.length / 2);
+                irregularIdValues = new String[ids.length / 2];
+            }
+            irregularIds.set(node);
+            irregularIdValues[node] = id;
+            return;
+        }
+        ids[2 * node] = uuid.getMostSignificantBits();
+        ids[2 * node + 1] = uuid.getLeastSignificantBits();
+    }
+
+    private String decodeId(int node) {
+        if (irregularIds != null && irregularIds.get(node)) {
+            return irregularIdValues[node];
+        }
+        return new UUID(ids[2 * node], ids[2 * node + 1]).toString();
+    }
+
+    /**
+     * Parses an id that is a UUID in the form {@link UUID#toString()} produces, so that it
+     * decodes to the same string.
+     *
+     * @return The UUID, or null if the id has any other form
+     */
+    private static UUID parseCanonicalUuid(String id) {
+        if (id == null || id.length() != 36) {
+            return null;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            boolean valid = i == 8 || i == 13 || i == 18 || i == 23
+                ? c == '-'
+                : (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f');
+            if (!valid) {
+                return null;
+            }
+        }
+        return UUID.fromString(id);
+    }
+
+    private static <T> List<T> orEmpty(List<T> list) {
+        return list != null ? list : List.of();
+    }
+
+    /**
+     * Canonicalizes equal strings to one instance without keeping them alive, unlike
+     * {@link String#intern()}, whose table is never trimmed. Each entry is itself the weak
+     * reference to its string, which keeps the overhead per distinct string at about 40
+     * bytes; a {@code WeakHashMap} would need a separate reference object as the value.
+     */
+    private static class Interner {
+        private final ReferenceQueue<String> cleared = new ReferenceQueue<>();
+        private Entry[] table = new Entry[1024];
+        private int size;
+
+        synchronized String intern(String value) {
+            if (value == null) {
+                return null;
+            }
+            expungeCleared();
+            int hash = value.hashCode();
+            int index = hash & (table.length - 1);
+            for (Entry entry = table[index]; entry != null; entry = entry.next) {
+                String canonical = entry.get();
+                if (entry.hash == hash && value.equals(canonical)) {
+                    return canonical;
+                }
+            }
+            table[index] = new Entry(value, hash, table[index], cleared);
+            if (++size > table.length * 3 / 4) {
+                resize();
+            }
+            return value;
+        }
+
+        private void expungeCleared() {
+            for (Reference<? extends String> reference; (reference = cleared.poll()) != null; ) {
+                Entry removed = (Entry) reference;
+                int index = removed.hash & (table.length - 1);
+                Entry previous = null;
+                for (Entry entry = table[index]; entry != null; previous = entry, entry = entry.next) {
+                    if (entry == removed) {
+                        if (previous == null) {
+                            table[index] = entry.next;
+                        } else {
+                            previous.next = entry.next;
+                        }
+                        size--;
+                        break;
+                    }
+                }
+            }
+        }
+
+        private void resize() {
+            Entry[] resized = new Entry[table.length * 2];
+            for (Entry head : table) {
+                for (Entry entry = head; entry != null; ) {
+                    Entry next = entry.next;
+                    int index = entry.hash & (resized.length - 1);
+                    entry.next = resized[index];
+                    resized[index] = entry;
+                    entry = next;
+                }
+            }
+            table = resized;
+        }
+
+        private static class Entry extends WeakReference<String> {
+            final int hash;
+            Entry next;
+
+            Entry(String value, int hash, Entry next, ReferenceQueue<String> queue) {
+                super(value, queue);
+                this.hash = hash;
+                this.next = next;
+            }
+        }
+    }
+}
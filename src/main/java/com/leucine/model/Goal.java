@@ -1,8 +1,9 @@
 package com.leucine.model;
 
+import com.leucine.utils.Ids;
+
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
 
 /**
  * Represents a goal that the agent aims to achieve.
@@ -18,7 +19,19 @@ public class Goal {
      * @param description The description of the goal
      */
     public Goal(String description) {
-        this.id = UUID.randomUUID().toString();
+        this.id = Ids.newId();
+        this.description = description;
+        this.subgoals = new ArrayList<>();
+    }
+    
+    /**
+     * Creates a new goal with the specified ID and description.
+     * 
+     * @param id The ID of the goal
+     * @param description The description of the goal
+     */
+    public Goal(String id, String description) {
+        this.id = id;
         this.description = description;
         this.subgoals = new ArrayList<>();
     }
@@ -55,6 +68,19 @@ public class Goal {
         this.subgoals = subgoals;
     }
     
+    /**
+     * Creates a deep copy of this goal and its subgoals with newly generated IDs.
+     * 
+     * @return The copy
+     */
+    public Goal copy() {
+        Goal copy = new Goal(description);
+        for (SubGoal subgoal : subgoals) {
+            copy.addSubgoal(subgoal.copy());
+        }
+        return copy;
+    }
+    
     @Override
     public String toString() {
         return "Goal{" +
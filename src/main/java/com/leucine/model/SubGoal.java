@@ -1,9 +1,10 @@
 package com.leucine.model;
 
+import com.leucine.utils.Ids;
+
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
-import java.util.UUID;
 
 /**
  * Represents a subgoal within a goal.
@@ -20,7 +21,7 @@ public class SubGoal {
      * @param description The description of the subgoal
      */
     public SubGoal(String description) {
-        this.id = UUID.randomUUID().toString();
+        this.id = Ids.newId();
         this.description = description;
         this.actions = new ArrayList<>();
     }
@@ -73,6 +74,19 @@ public class SubGoal {
         this.actions = Objects.requireNonNull(actions, "Actions cannot be null");
     }
     
+    /**
+     * Creates a deep copy of this subgoal and its actions with newly generated IDs.
+     * 
+     * @return The copy
+     */
+    public SubGoal copy() {
+        SubGoal copy = new SubGoal(description);
+        for (Action action : actions) {
+            copy.addAction(action.copy());
+        }
+        return copy;
+    }
+    
     @Override
     public String toString() {
         return "SubGoal{" +
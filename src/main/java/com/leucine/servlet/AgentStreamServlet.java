@@ -0,0 +1,385 @@
+package com.leucine.servlet;
+
+import com.google.gson.Gson;
+import com.leucine.model.Action;
+import com.leucine.model.Agent;
+import com.leucine.model.Goal;
+import com.leucine.model.SubGoal;
+import com.leucine.wizard.model.WizardSession;
+import com.leucine.wizard.model.WizardState;
+import com.leucine.wizard.service.AgentCreationService;
+import com.leucine.wizard.service.DecompositionListener;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Servlet that decomposes an objective and streams the progress to the client
+ * as Server-Sent Events. Clients receive wizard state transitions, the standard
+ * procedure text and each goal, subgoal and action as soon as it is available,
+ * instead of waiting for the complete agent.
+ *
+ * <p>Usage: {@code GET /api/agent/stream?objective=...[&sessionId=...]}. When no
+ * session ID is given a new wizard session is started. The stream emits the
+ * following events, each with a JSON payload:</p>
+ * <ul>
+ *   <li>{@code session} - the session being processed</li>
+ *   <li>{@code state} - a wizard state transition</li>
+ *   <li>{@code procedure} - a chunk of the standard procedure text</li>
+ *   <li>{@code action}, {@code subgoal}, {@code goal} - parsed elements of the goal tree</li>
+ *   <li>{@code complete} - the decomposition finished; the session can be fetched from {@code /api/agent/create}</li>
+ *   <li>{@code error} - the decomposition failed</li>
+ * </ul>
+ */
+@WebServlet(urlPatterns = "/api/agent/stream", asyncSupported = true)
+public class AgentStreamServlet extends HttpServlet {
+
+    private static final long HEARTBEAT_INTERVAL_SECONDS = 15;
+
+    private final AgentCreationService agentCreationService;
+    private final Gson gson;
+    private AsyncRequestExecutor asyncExecutor;
+    private ScheduledExecutorService heartbeatScheduler;
+
+    /**
+     * Constructs a new AgentStreamServlet.
+     */
+    public AgentStreamServlet() {
+        this.agentCreationService = AgentCreationService.getInstance();
+        this.gson = new Gson();
+    }
+
+    /**
+     * Initializes the executor used for decompositions and the heartbeat scheduler.
+     *
+     * @throws ServletException If the servlet cannot be initialized
+     */
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        this.asyncExecutor = AsyncRequestExecutor.fromConfig(getServletConfig());
+        this.heartbeatScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, getServletName() + "-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Shuts down the executor and the heartbeat scheduler.
+     */
+    @Override
+    public void destroy() {
+        if (heartbeatScheduler != null) {
+            heartbeatScheduler.shutdownNow();
+        }
+        if (asyncExecutor != null) {
+            asyncExecutor.shutdown();
+        }
+        super.destroy();
+    }
+
+    /**
+     * Handles GET requests by starting a decomposition and streaming its progress.
+     *
+     * @param request The HTTP request
+     * @param response The HTTP response
+     * @throws ServletException If an error occurs during servlet processing
+     * @throws IOException If an I/O error occurs
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+
+        String objective = request.getParameter("objective");
+        if (objective == null || objective.trim().isEmpty()) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            response.setContentType("application/json");
+            response.getWriter().print(gson.toJson(new ErrorEvent("Objective is required")));
+            return;
+        }
+
+        String sessionId = request.getParameter("sessionId");
+        if (sessionId == null || sessionId.trim().isEmpty()) {
+            sessionId = agentCreationService.startNewSession();
+        } else if (agentCreationService.getSession(sessionId) == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            response.setContentType("application/json");
+            response.getWriter().print(gson.toJson(new ErrorEvent("Session not found")));
+            return;
+        }
+
+        response.setContentType("text/event-stream");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        response.setHeader("X-Accel-Buffering", "no");
+
+        AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(asyncExecutor.getTimeoutMillis());
+        EventStream stream = new EventStream(asyncContext, response.getWriter());
+        asyncContext.addListener(stream);
+
+        stream.send("session", new SessionEvent(sessionId, agentCreationService.getSession(sessionId).getState()));
+        stream.startHeartbeat(heartbeatScheduler);
+
+        String resolvedSessionId = sessionId;
+        try {
+            asyncExecutor.submit(() -> {
+                try {
+                    WizardSession session = agentCreationService.processObjective(
+                        resolvedSessionId, objective.trim(), new StreamingListener(resolvedSessionId, stream));
+                    WizardSession.Snapshot snapshot = session.getSnapshot();
+                    Agent agent = snapshot.getAgent();
+                    stream.send("complete", new CompleteEvent(
+                        session.getSessionId(),
+                        snapshot.getState(),
+                        agent != null ? agent.getName() : null,
+                        agent != null ? agent.getObjective() : null
+                    ));
+                } catch (Exception e) {
+                    stream.send("error", new ErrorEvent("Error processing request: " + e.getMessage()));
+                } finally {
+                    stream.close();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            agentCreationService.failSession(resolvedSessionId, "Server is busy, please retry later");
+            stream.send("error", new ErrorEvent("Server is busy, please retry later"));
+            stream.close();
+        }
+    }
+
+    /**
+     * Forwards decomposition progress to the event stream.
+     */
+    private class StreamingListener implements DecompositionListener {
+        private final String sessionId;
+        private final EventStream stream;
+
+        StreamingListener(String sessionId, EventStream stream) {
+            this.sessionId = sessionId;
+            this.stream = stream;
+        }
+
+        @Override
+        public void onStateChanged(WizardState state) {
+            stream.send("state", new SessionEvent(sessionId, state));
+        }
+
+        @Override
+        public void onStandardProcedureChunk(String text) {
+            stream.send("procedure", new ProcedureEvent(text));
+        }
+
+        @Override
+        public void onAction(SubGoal subGoal, Action action) {
+            stream.send("action", new ActionEvent(subGoal.getId(), action.getId(), action.getDescription()));
+        }
+
+        @Override
+        public void onSubGoal(Goal goal, SubGoal subGoal) {
+            stream.send("subgoal", new SubGoalEvent(goal.getId(), subGoal.getId(), subGoal.getDescription()));
+        }
+
+        @Override
+        public void onGoal(Goal goal) {
+            stream.send("goal", new GoalEvent(goal.getId(), goal.getDescription()));
+        }
+    }
+
+    /**
+     * A Server-Sent Events channel bound to an async context. Writes are serialized,
+     * and once the client disconnects or the stream is closed further events are dropped.
+     */
+    private class EventStream implements AsyncListener {
+        private final AsyncContext asyncContext;
+        private final PrintWriter out;
+        private boolean closed;
+        private ScheduledFuture<?> heartbeat;
+
+        EventStream(AsyncContext asyncContext, PrintWriter out) {
+            this.asyncContext = asyncContext;
+            this.out = out;
+        }
+
+        synchronized void startHeartbeat(ScheduledExecutorService scheduler) {
+            if (!closed) {
+                heartbeat = scheduler.scheduleAtFixedRate(this::sendHeartbeat,
+                    HEARTBEAT_INTERVAL_SECONDS, HEARTBEAT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+            }
+        }
+
+        synchronized void send(String event, Object payload) {
+            if (closed) {
+                return;
+            }
+            out.write("event: ");
+            out.write(event);
+            out.write("\ndata: ");
+            out.write(gson.toJson(payload));
+            out.write("\n\n");
+            flush();
+        }
+
+        private synchronized void sendHeartbeat() {
+            if (!closed) {
+                out.write(": keep-alive\n\n");
+                flush();
+            }
+        }
+
+        private void flush() {
+            out.flush();
+            if (out.checkError()) {
+                // The client disconnected; stop writing but let the decomposition finish
+                close();
+            }
+        }
+
+        synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (heartbeat != null) {
+                heartbeat.cancel(false);
+            }
+            try {
+                asyncContext.complete();
+            } catch (IllegalStateException e) {
+                // Already completed by the container
+            }
+        }
+
+        @Override
+        public synchronized void onTimeout(AsyncEvent event) {
+            send("error", new ErrorEvent("Stream timed out; poll the session for the result"));
+            close();
+        }
+
+        @Override
+        public synchronized void onError(AsyncEvent event) {
+            close();
+        }
+
+        @Override
+        public synchronized void onComplete(AsyncEvent event) {
+            closed = true;
+            if (heartbeat != null) {
+                heartbeat.cancel(false);
+            }
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+
+    /**
+     * Event payload identifying a session and its state.
+     */
+    private static class SessionEvent {
+        private final String sessionId;
+        private final WizardState state;
+
+        SessionEvent(String sessionId, WizardState state) {
+            this.sessionId = sessionId;
+            this.state = state;
+        }
+    }
+
+    /**
+     * Event payload carrying a chunk of the standard procedure.
+     */
+    private static class ProcedureEvent {
+        private final String text;
+
+        ProcedureEvent(String text) {
+            this.text = text;
+        }
+    }
+
+    /**
+     * Event payload for a parsed action.
+     */
+    private static class ActionEvent {
+        private final String subGoalId;
+        private final String id;
+        private final String description;
+
+        ActionEvent(String subGoalId, String id, String description) {
+            this.subGoalId = subGoalId;
+            this.id = id;
+            this.description = description;
+        }
+    }
+
+    /**
+     * Event payload for a parsed subgoal.
+     */
+    private static class SubGoalEvent {
+        private final String goalId;
+        private final String id;
+        private final String description;
+
+        SubGoalEvent(String goalId, String id, String description) {
+            this.goalId = goalId;
+            this.id = id;
+            this.description = description;
+        }
+    }
+
+    /**
+     * Event payload for a parsed goal.
+     */
+    private static class GoalEvent {
+        private final String id;
+        private final String description;
+
+        GoalEvent(String id, String description) {
+            this.id = id;
+            this.description = description;
+        }
+    }
+
+    /**
+     * Event payload sent when the decomposition has finished.
+     */
+    private static class CompleteEvent {
+        private final String sessionId;
+        private final WizardState state;
+        private final String agentName;
+        private final String objective;
+
+        CompleteEvent(String sessionId, WizardState state, String agentName, String objective) {
+            this.sessionId = sessionId;
+            this.state = state;
+            this.agentName = agentName;
+            this.objective = objective;
+        }
+    }
+
+    /**
+     * Event payload describing an error.
+     */
+    private static class ErrorEvent {
+        private final String error;
+
+        ErrorEvent(String error) {
+            this.error = error;
+        }
+    }
+}
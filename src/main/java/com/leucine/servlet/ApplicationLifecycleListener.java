@@ -0,0 +1,33 @@
+package com.leucine.servlet;
+
+import com.leucine.metrics.Metrics;
+import com.leucine.utils.ClaudeClient;
+import com.leucine.wizard.service.AgentCreationService;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+/**
+ * Releases process-wide resources when the web application stops, so that an undeploy or
+ * redeploy does not leave their threads, files, connections and MBeans, and with them the
+ * application's class loader, behind in the container.
+ */
+public class ApplicationLifecycleListener implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent event) {
+    }
+
+    /**
+     * Shuts down the wizard service, then the threads and connections shared by the Claude
+     * clients, and finally unregisters the metric MBeans from the platform MBean server.
+     *
+     * @param event The context event
+     */
+    @Override
+    public void contextDestroyed(ServletContextEvent event) {
+        AgentCreationService.shutdown();
+        ClaudeClient.shutdown();
+        Metrics.close();
+    }
+}
@@ -0,0 +1,218 @@
+package com.leucine.servlet;
+
+import com.leucine.config.ExecutionMode;
+import com.leucine.utils.TaskExecutors;
+
+import javax.servlet.ServletConfig;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded executor for servlet work that outlives the container request thread.
+ * Long-running wizard steps (such as objective decomposition) are handed to this
+ * executor after {@code startAsync()}, so the Tomcat worker thread is released
+ * immediately and the response is written when the task completes.
+ *
+ * <p>In {@link ExecutionMode#PLATFORM} mode tasks run on a bounded thread pool. In
+ * {@link ExecutionMode#VIRTUAL} mode every task gets its own virtual thread and the
+ * same limits are enforced with semaphores, so tasks blocked on Claude hold no
+ * platform thread.</p>
+ *
+ * <p>Settings are read from servlet init parameters, falling back to context
+ * init parameters and then to defaults:</p>
+ * <ul>
+ *   <li>{@code asyncEnabled} - whether the async path is used (default {@code true})</li>
+ *   <li>{@code asyncMaxConcurrent} - maximum number of tasks running at once (default 16)</li>
+ *   <li>{@code asyncQueueCapacity} - tasks allowed to wait for a free slot (default 64)</li>
+ *   <li>{@code asyncTimeoutSeconds} - async context timeout (default 900)</li>
+ * </ul>
+ */
+public class AsyncRequestExecutor {
+
+    private static final int DEFAULT_MAX_CONCURRENT = 16;
+    private static final int DEFAULT_QUEUE_CAPACITY = 64;
+    private static final long DEFAULT_TIMEOUT_SECONDS = 900;
+
+    private final boolean enabled;
+    private final long timeoutMillis;
+    private final ExecutionMode mode;
+    private final int maxConcurrent;
+    private final ExecutorService executor;
+    private final Semaphore admitted;
+    private final Semaphore running;
+
+    /**
+     * Creates a new executor.
+     *
+     * @param name The name used for the executor's threads
+     * @param enabled Whether the async path should be used
+     * @param maxConcurrent The maximum number of tasks running at once
+     * @param queueCapacity The number of tasks allowed to wait for a free slot
+     * @param timeoutMillis The async context timeout in milliseconds
+     */
+    public AsyncRequestExecutor(String name, boolean enabled, int maxConcurrent, int queueCapacity, long timeoutMillis) {
+        this(name, enabled, maxConcurrent, queueCapacity, timeoutMillis, ExecutionMode.PLATFORM);
+    }
+
+    /**
+     * Creates a new executor for the given execution mode.
+     *
+     * @param name The name used for the executor's threads
+     * @param enabled Whether the async path should be used
+     * @param maxConcurrent The maximum number of tasks running at once
+     * @param queueCapacity The number of tasks allowed to wait for a free slot
+     * @param timeoutMillis The async context timeout in milliseconds
+     * @param mode The threading model
+     */
+    public AsyncRequestExecutor(String name, boolean enabled, int maxConcurrent, int queueCapacity,
+                                long timeoutMillis, ExecutionMode mode) {
+        if (maxConcurrent < 1) {
+            throw new IllegalArgumentException("maxConcurrent must be at least 1");
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("queueCapacity must be at least 1");
+        }
+        this.enabled = enabled;
+        this.timeoutMillis = timeoutMillis;
+        this.mode = mode;
+        this.maxConcurrent = maxConcurrent;
+        if (mode == ExecutionMode.VIRTUAL) {
+            this.executor = TaskExecutors.newVirtualThreadPerTaskExecutor(name);
+            this.admitted = new Semaphore(maxConcurrent + queueCapacity);
+            this.running = new Semaphore(maxConcurrent, true);
+        } else {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                    maxConcurrent,
+                    maxConcurrent,
+                    60L, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity),
+                    TaskExecutors.daemonThreadFactory(name),
+                    new ThreadPoolExecutor.AbortPolicy());
+            pool.allowCoreThreadTimeOut(true);
+            this.executor = pool;
+            this.admitted = null;
+            this.running = null;
+        }
+    }
+
+    /**
+     * Creates an executor from the init parameters of a servlet.
+     *
+     * @param config The servlet configuration
+     * @return The configured executor
+     */
+    public static AsyncRequestExecutor fromConfig(ServletConfig config) {
+        return new AsyncRequestExecutor(
+                config.getServletName() + "-async",
+                Boolean.parseBoolean(getParameter(config, "asyncEnabled", "true")),
+                Integer.parseInt(getParameter(config, "asyncMaxConcurrent", String.valueOf(DEFAULT_MAX_CONCURRENT))),
+                Integer.parseInt(getParameter(config, "asyncQueueCapacity", String.valueOf(DEFAULT_QUEUE_CAPACITY))),
+                TimeUnit.SECONDS.toMillis(Long.parseLong(getParameter(config, "asyncTimeoutSeconds", String.valueOf(DEFAULT_TIMEOUT_SECONDS)))),
+                ExecutionMode.fromSettings());
+    }
+
+    static String getParameter(ServletConfig config, String name, String defaultValue) {
+        String value = config.getInitParameter(name);
+        if (value == null && config.getServletContext() != null) {
+            value = config.getServletContext().getInitParameter(name);
+        }
+        return value != null && !value.trim().isEmpty() ? value.trim() : defaultValue;
+    }
+
+    /**
+     * Submits a task for execution.
+     *
+     * @param task The task to run
+     * @throws RejectedExecutionException If all slots are busy and the queue is full
+     */
+    public void submit(Runnable task) {
+        if (mode != ExecutionMode.VIRTUAL) {
+            executor.execute(task);
+            return;
+        }
+        if (!admitted.tryAcquire()) {
+            throw new RejectedExecutionException("Too many tasks waiting");
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    running.acquire();
+                } catch (InterruptedException e) {
+                    admitted.release();
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                try {
+                    task.run();
+                } finally {
+                    running.release();
+                    admitted.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            admitted.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Checks whether the async path is enabled.
+     *
+     * @return true if long-running requests should be processed asynchronously
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Gets the async context timeout.
+     *
+     * @return The timeout in milliseconds
+     */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    /**
+     * Gets the number of tasks currently running.
+     *
+     * @return The number of active tasks
+     */
+    public int getActiveCount() {
+        if (mode == ExecutionMode.VIRTUAL) {
+            return maxConcurrent - running.availablePermits();
+        }
+        return ((ThreadPoolExecutor) executor).getActiveCount();
+    }
+
+    /**
+     * Gets the number of tasks waiting for a free slot.
+     *
+     * @return The number of queued tasks
+     */
+    public int getQueuedCount() {
+        if (mode == ExecutionMode.VIRTUAL) {
+            return running.getQueueLength();
+        }
+        return ((ThreadPoolExecutor) executor).getQueue().size();
+    }
+
+    /**
+     * Stops accepting new tasks and waits briefly for running tasks to finish.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
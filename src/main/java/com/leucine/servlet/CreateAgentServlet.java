@@ -1,42 +1,88 @@
 package com.leucine.servlet;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 import com.leucine.model.Agent;
 import com.leucine.wizard.model.WizardSession;
 import com.leucine.wizard.model.WizardState;
 import com.leucine.wizard.service.AgentCreationService;
-import com.leucine.wizard.service.ObjectiveDecompositionService;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
 
 /**
  * Servlet for creating and managing agents through the wizard process.
  * This servlet handles the creation of agents based on objectives and manages
  * the state transitions of the wizard process.
+ * Requests that decompose an objective are processed asynchronously on a
+ * dedicated {@link AsyncRequestExecutor} so the container thread is released
+ * while Claude is working.
+ *
+ * <p>Session reads carry a weak {@code ETag} derived from the session version, so a poll
+ * with a matching {@code If-None-Match} gets {@code 304} without a body. With
+ * {@code timeout} (seconds) the read becomes a long poll that waits, without holding a
+ * thread, until the session reaches the {@code waitFor} state or, without
+ * {@code waitFor}, until it changes from the version in {@code If-None-Match}. The wait
+ * is capped by the {@code longPollMaxSeconds} init parameter (default 60).</p>
  */
-@WebServlet("/api/agent/create")
+@WebServlet(urlPatterns = "/api/agent/create", asyncSupported = true)
 public class CreateAgentServlet extends HttpServlet {
 
+    private static final long DEFAULT_LONG_POLL_MAX_SECONDS = 60;
+    private static final long LONG_POLL_GRACE_MILLIS = 5000;
+
     private final AgentCreationService agentCreationService;
-    private final ObjectiveDecompositionService decompositionService;
     private final Gson gson;
+    private AsyncRequestExecutor asyncExecutor;
+    private JsonExchange json;
+    private long longPollMaxSeconds;
 
     /**
      * Constructs a new CreateAgentServlet.
      */
     public CreateAgentServlet() {
         this.agentCreationService = AgentCreationService.getInstance();
-        this.decompositionService = new ObjectiveDecompositionService();
         this.gson = new Gson();
     }
 
+    /**
+     * Initializes the executor used for asynchronous objective processing, the
+     * JSON request and response settings and the long-poll limit.
+     *
+     * @throws ServletException If the servlet cannot be initialized
+     */
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        this.asyncExecutor = AsyncRequestExecutor.fromConfig(getServletConfig());
+        this.json = JsonExchange.fromConfig(getServletConfig(), gson);
+        this.longPollMaxSeconds = Long.parseLong(AsyncRequestExecutor.getParameter(
+            getServletConfig(), "longPollMaxSeconds", String.valueOf(DEFAULT_LONG_POLL_MAX_SECONDS)));
+    }
+
+    /**
+     * Shuts down the asynchronous executor.
+     */
+    @Override
+    public void destroy() {
+        if (asyncExecutor != null) {
+            asyncExecutor.shutdown();
+        }
+        super.destroy();
+    }
+
     /**
      * Handles POST requests to create or update agents.
      * 
@@ -49,114 +95,239 @@ public class CreateAgentServlet extends HttpServlet {
     protected void doPost(HttpServletRequest request, HttpServletResponse response) 
             throws ServletException, IOException {
         
-        // Read the request body
-        BufferedReader reader = request.getReader();
-        StringBuilder requestBody = new StringBuilder();
-        String line;
-        while ((line = reader.readLine()) != null) {
-            requestBody.append(line);
+        // Decode the request body straight from the input stream
+        AgentRequest agentRequest;
+        try {
+            agentRequest = json.read(request, AgentRequest.class);
+        } catch (JsonExchange.RequestTooLargeException e) {
+            writeJson(request, response, HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE, new ErrorResponse(e.getMessage()));
+            return;
+        } catch (JsonParseException e) {
+            writeJson(request, response, HttpServletResponse.SC_BAD_REQUEST, new ErrorResponse("Malformed JSON request"));
+            return;
+        }
+        if (agentRequest == null) {
+            writeJson(request, response, HttpServletResponse.SC_BAD_REQUEST, new ErrorResponse("Invalid request"));
+            return;
         }
         
-        // Parse the request body
-        AgentRequest agentRequest = gson.fromJson(requestBody.toString(), AgentRequest.class);
-        
-        // Set response content type
-        response.setContentType("application/json");
-        PrintWriter out = response.getWriter();
+        // Hand long-running decompositions off to the async executor
+        if (asyncExecutor != null && asyncExecutor.isEnabled() && request.isAsyncSupported()
+                && requiresDecomposition(agentRequest)) {
+            processObjectiveAsync(request, response, agentRequest);
+            return;
+        }
         
+        Reply reply;
         try {
-            // Process the request based on the state
-            if (agentRequest.getState() == WizardState.INITIAL && agentRequest.getAgent() == null) {
-                // Create a new agent session
-                String sessionId = agentCreationService.startNewSession();
-                WizardSession session;
-                
-                // If objective is provided, process it
-                if (agentRequest.getObjective() != null && !agentRequest.getObjective().trim().isEmpty()) {
-                    session = agentCreationService.processObjective(sessionId, agentRequest.getObjective());
-                } else {
-                    session = agentCreationService.getSession(sessionId);
+            reply = process(agentRequest);
+        } catch (IllegalStateException e) {
+            // The session is not in a state that allows the requested step
+            reply = new Reply(HttpServletResponse.SC_CONFLICT, new ErrorResponse(e.getMessage()));
+        } catch (Exception e) {
+            reply = new Reply(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+                new ErrorResponse("Error processing request: " + e.getMessage()));
+        }
+        writeJson(request, response, reply.status, reply.body);
+    }
+    
+    /**
+     * Processes a request synchronously.
+     * 
+     * @param agentRequest The parsed request
+     * @return The status and body to respond with
+     * @throws IOException If the objective cannot be processed
+     */
+    private Reply process(AgentRequest agentRequest) throws IOException {
+        // Process the request based on the state
+        if (agentRequest.getState() == WizardState.INITIAL && agentRequest.getAgent() == null) {
+            // Create a new agent session
+            String sessionId = agentCreationService.startNewSession();
+            WizardSession session;
+            
+            // If objective is provided, process it
+            if (agentRequest.getObjective() != null && !agentRequest.getObjective().trim().isEmpty()) {
+                session = agentCreationService.processObjective(sessionId, agentRequest.getObjective());
+            } else {
+                session = agentCreationService.getSession(sessionId);
+            }
+            
+            // Return the session and agent
+            return new Reply(HttpServletResponse.SC_OK, AgentResponse.of(session));
+        }
+        if (agentRequest.getSessionId() == null) {
+            return new Reply(HttpServletResponse.SC_BAD_REQUEST, new ErrorResponse("Invalid request"));
+        }
+        
+        // Get the existing session
+        WizardSession session = agentCreationService.getSession(agentRequest.getSessionId());
+        if (session == null) {
+            return new Reply(HttpServletResponse.SC_NOT_FOUND, new ErrorResponse("Session not found"));
+        }
+        
+        // Process based on the requested state
+        switch (agentRequest.getState()) {
+            case OBJECTIVE_ENTERED:
+                if (agentRequest.getObjective() == null || agentRequest.getObjective().trim().isEmpty()) {
+                    return new Reply(HttpServletResponse.SC_BAD_REQUEST, new ErrorResponse("Objective is required"));
                 }
+                session = agentCreationService.processObjective(agentRequest.getSessionId(), agentRequest.getObjective());
+                break;
                 
-                // Return the session and agent
-                AgentResponse agentResponse = new AgentResponse(
-                    session.getSessionId(),
-                    session.getState(),
-                    session.getAgent(),
-                    null
-                );
+            case AGENT_REVIEWED:
+                session = agentCreationService.reviewAgent(agentRequest.getSessionId());
+                break;
                 
-                out.print(gson.toJson(agentResponse));
+            case COMPLETED:
+                Agent agent = agentCreationService.completeAgentCreation(agentRequest.getSessionId());
+                return new Reply(HttpServletResponse.SC_OK,
+                    new AgentResponse(session.getSessionId(), WizardState.COMPLETED, agent, null));
                 
-            } else if (agentRequest.getSessionId() != null) {
-                // Get the existing session
-                WizardSession session = agentCreationService.getSession(agentRequest.getSessionId());
-                
-                if (session == null) {
-                    response.setStatus(HttpServletResponse.SC_NOT_FOUND);
-                    out.print(gson.toJson(new ErrorResponse("Session not found")));
-                    return;
+            default:
+                return new Reply(HttpServletResponse.SC_BAD_REQUEST, new ErrorResponse("Invalid state transition"));
+        }
+        
+        // Return the updated session and agent
+        return new Reply(HttpServletResponse.SC_OK, AgentResponse.of(session));
+    }
+    
+    /**
+     * Checks whether a request will trigger an objective decomposition.
+     * 
+     * @param agentRequest The parsed request
+     * @return true if processing the request calls Claude
+     */
+    private boolean requiresDecomposition(AgentRequest agentRequest) {
+        if (agentRequest == null || agentRequest.getObjective() == null
+                || agentRequest.getObjective().trim().isEmpty()) {
+            return false;
+        }
+        if (agentRequest.getState() == WizardState.INITIAL && agentRequest.getAgent() == null) {
+            return true;
+        }
+        return agentRequest.getSessionId() != null && agentRequest.getState() == WizardState.OBJECTIVE_ENTERED;
+    }
+    
+    /**
+     * Processes an objective on the async executor and writes the response on completion.
+     * The session is resolved (or created) on the container thread so that a timeout
+     * response can still tell the client which session to poll.
+     * 
+     * @param request The HTTP request
+     * @param response The HTTP response
+     * @param agentRequest The parsed request
+     * @throws IOException If an I/O error occurs
+     */
+    private void processObjectiveAsync(HttpServletRequest request, HttpServletResponse response,
+                                       AgentRequest agentRequest) throws IOException {
+        String sessionId;
+        if (agentRequest.getState() == WizardState.INITIAL) {
+            sessionId = agentCreationService.startNewSession();
+        } else {
+            sessionId = agentRequest.getSessionId();
+            if (agentCreationService.getSession(sessionId) == null) {
+                writeJson(request, response, HttpServletResponse.SC_NOT_FOUND, new ErrorResponse("Session not found"));
+                return;
+            }
+        }
+        String objective = agentRequest.getObjective();
+        
+        AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(asyncExecutor.getTimeoutMillis());
+        AtomicBoolean responded = new AtomicBoolean(false);
+        
+        asyncContext.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) throws IOException {
+                if (responded.compareAndSet(false, true)) {
+                    // The decomposition keeps running; the client can poll the session for the result
+                    WizardSession session = agentCreationService.getSession(sessionId);
+                    WizardSession.Snapshot snapshot = session != null ? session.getSnapshot() : null;
+                    try {
+                        writeJson(request, response, HttpServletResponse.SC_ACCEPTED, new AgentResponse(
+                            sessionId,
+                            snapshot != null ? snapshot.getState() : null,
+                            snapshot != null ? snapshot.getAgent() : null,
+                            "Objective is still being processed; poll the session for the result"
+                        ));
+                    } finally {
+                        asyncContext.complete();
+                    }
                 }
-                
-                // Process based on the requested state
-                switch (agentRequest.getState()) {
-                    case OBJECTIVE_ENTERED:
-                        if (agentRequest.getObjective() != null && !agentRequest.getObjective().trim().isEmpty()) {
-                            session = agentCreationService.processObjective(
-                                agentRequest.getSessionId(), 
-                                agentRequest.getObjective()
-                            );
-                        } else {
-                            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                            out.print(gson.toJson(new ErrorResponse("Objective is required")));
-                            return;
-                        }
-                        break;
-                        
-                    case AGENT_REVIEWED:
-                        session = agentCreationService.reviewAgent(agentRequest.getSessionId());
-                        break;
-                        
-                    case COMPLETED:
-                        Agent agent = agentCreationService.completeAgentCreation(agentRequest.getSessionId());
-                        AgentResponse agentResponse = new AgentResponse(
-                            session.getSessionId(),
-                            WizardState.COMPLETED,
-                            agent,
-                            null
-                        );
-                        out.print(gson.toJson(agentResponse));
-                        return;
-                        
-                    default:
-                        response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                        out.print(gson.toJson(new ErrorResponse("Invalid state transition")));
-                        return;
+            }
+            
+            @Override
+            public void onError(AsyncEvent event) {
+                responded.set(true);
+            }
+            
+            @Override
+            public void onComplete(AsyncEvent event) {
+            }
+            
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+        
+        try {
+            asyncExecutor.submit(() -> {
+                int status;
+                Object body;
+                try {
+                    WizardSession session = agentCreationService.processObjective(sessionId, objective);
+                    status = HttpServletResponse.SC_OK;
+                    body = AgentResponse.of(session);
+                } catch (IllegalStateException e) {
+                    status = HttpServletResponse.SC_CONFLICT;
+                    body = new ErrorResponse(e.getMessage());
+                } catch (Exception e) {
+                    status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+                    body = new ErrorResponse("Error processing request: " + e.getMessage());
                 }
                 
-                // Return the updated session and agent
-                AgentResponse agentResponse = new AgentResponse(
-                    session.getSessionId(),
-                    session.getState(),
-                    session.getAgent(),
-                    null
-                );
-                
-                out.print(gson.toJson(agentResponse));
-                
-            } else {
-                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-                out.print(gson.toJson(new ErrorResponse("Invalid request")));
+                if (responded.compareAndSet(false, true)) {
+                    try {
+                        writeJson(request, response, status, body);
+                    } catch (IOException e) {
+                        // Client went away; the session still holds the result
+                    } finally {
+                        asyncContext.complete();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            if (responded.compareAndSet(false, true)) {
+                agentCreationService.failSession(sessionId, "Server is busy, please retry later");
+                try {
+                    response.setHeader("Retry-After", "30");
+                    writeJson(request, response, HttpServletResponse.SC_SERVICE_UNAVAILABLE,
+                        new ErrorResponse("Server is busy, please retry later"));
+                } finally {
+                    asyncContext.complete();
+                }
             }
-            
-        } catch (Exception e) {
-            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
-            out.print(gson.toJson(new ErrorResponse("Error processing request: " + e.getMessage())));
         }
     }
     
     /**
-     * Handles GET requests to retrieve agent sessions.
+     * Writes a JSON body with the given status code, streamed and compressed when the
+     * client accepts it.
+     * 
+     * @param request The HTTP request
+     * @param response The HTTP response
+     * @param status The HTTP status code
+     * @param body The object to serialize
+     * @throws IOException If an I/O error occurs
+     */
+    private void writeJson(HttpServletRequest request, HttpServletResponse response, int status, Object body)
+            throws IOException {
+        json.write(request, response, status, body);
+    }
+    
+    /**
+     * Handles GET requests to retrieve agent sessions, optionally as a conditional
+     * request or a long poll.
      * 
      * @param request The HTTP request
      * @param response The HTTP response
@@ -169,33 +340,179 @@ public class CreateAgentServlet extends HttpServlet {
         
         // Get the session ID from the request parameter
         String sessionId = request.getParameter("sessionId");
+        if (sessionId == null || sessionId.trim().isEmpty()) {
+            writeJson(request, response, HttpServletResponse.SC_BAD_REQUEST, new ErrorResponse("Session ID is required"));
+            return;
+        }
         
-        // Set response content type
-        response.setContentType("application/json");
-        PrintWriter out = response.getWriter();
+        WizardSession session = agentCreationService.getSession(sessionId);
+        if (session == null) {
+            writeJson(request, response, HttpServletResponse.SC_NOT_FOUND, new ErrorResponse("Session not found"));
+            return;
+        }
         
-        if (sessionId != null && !sessionId.trim().isEmpty()) {
-            // Get the session
-            WizardSession session = agentCreationService.getSession(sessionId);
+        WizardState waitFor = null;
+        long timeoutSeconds = 0;
+        try {
+            String waitForParameter = request.getParameter("waitFor");
+            if (waitForParameter != null && !waitForParameter.trim().isEmpty()) {
+                waitFor = WizardState.valueOf(waitForParameter.trim().toUpperCase());
+            }
+            String timeoutParameter = request.getParameter("timeout");
+            if (timeoutParameter != null && !timeoutParameter.trim().isEmpty()) {
+                timeoutSeconds = Math.min(Math.max(0, Long.parseLong(timeoutParameter.trim())), longPollMaxSeconds);
+            }
+        } catch (IllegalArgumentException e) {
+            writeJson(request, response, HttpServletResponse.SC_BAD_REQUEST,
+                new ErrorResponse("Invalid waitFor or timeout parameter"));
+            return;
+        }
+        
+        Predicate<WizardSession.Snapshot> ready = readyCondition(waitFor, request.getHeader("If-None-Match"));
+        WizardSession.Snapshot snapshot = session.getSnapshot();
+        if (timeoutSeconds > 0 && request.isAsyncSupported() && !ready.test(snapshot)) {
+            longPoll(request, response, session, ready, timeoutSeconds);
+            return;
+        }
+        writeSession(request, response, sessionId, snapshot);
+    }
+    
+    /**
+     * Builds the condition that ends a long poll: reaching the requested state, or a
+     * state the session will not leave by itself, or else any change from the version
+     * the client already has.
+     * 
+     * @param waitFor The state to wait for, or null
+     * @param ifNoneMatch The {@code If-None-Match} header, or null
+     * @return The condition
+     */
+    private static Predicate<WizardSession.Snapshot> readyCondition(WizardState waitFor, String ifNoneMatch) {
+        if (waitFor != null) {
+            return snapshot -> snapshot.getState() == waitFor
+                || snapshot.getState() == WizardState.COMPLETED || snapshot.getState() == WizardState.ERROR;
+        }
+        if (ifNoneMatch != null) {
+            return snapshot -> !etagMatches(ifNoneMatch, etag(snapshot));
+        }
+        return snapshot -> true;
+    }
+    
+    /**
+     * Parks the request until the session satisfies the condition or the timeout passes,
+     * then responds with the session as it is at that moment.
+     * 
+     * @param request The HTTP request
+     * @param response The HTTP response
+     * @param session The session to watch
+     * @param ready The condition that ends the wait
+     * @param timeoutSeconds The longest time to wait
+     */
+    private void longPoll(HttpServletRequest request, HttpServletResponse response, WizardSession session,
+                          Predicate<WizardSession.Snapshot> ready, long timeoutSeconds) {
+        AsyncContext asyncContext = request.startAsync();
+        // The container timeout is only a backstop; the wait below normally ends first
+        asyncContext.setTimeout(TimeUnit.SECONDS.toMillis(timeoutSeconds) + LONG_POLL_GRACE_MILLIS);
+        AtomicBoolean responded = new AtomicBoolean(false);
+        CompletableFuture<WizardSession.Snapshot> change = session.await(ready);
+        
+        asyncContext.addListener(new AsyncListener() {
+            @Override
+            public void onTimeout(AsyncEvent event) throws IOException {
+                if (responded.compareAndSet(false, true)) {
+                    change.cancel(false);
+                    try {
+                        writeSession(request, response, session.getSessionId(), session.getSnapshot());
+                    } finally {
+                        asyncContext.complete();
+                    }
+                }
+            }
             
-            if (session != null) {
-                // Return the session and agent
-                AgentResponse agentResponse = new AgentResponse(
-                    session.getSessionId(),
-                    session.getState(),
-                    session.getAgent(),
-                    null
-                );
-                
-                out.print(gson.toJson(agentResponse));
-            } else {
-                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
-                out.print(gson.toJson(new ErrorResponse("Session not found")));
+            @Override
+            public void onError(AsyncEvent event) {
+                responded.set(true);
+                change.cancel(false);
             }
-        } else {
-            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-            out.print(gson.toJson(new ErrorResponse("Session ID is required")));
+            
+            @Override
+            public void onComplete(AsyncEvent event) {
+            }
+            
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+        
+        change.orTimeout(timeoutSeconds, TimeUnit.SECONDS).whenComplete((snapshot, error) -> {
+            if (!responded.compareAndSet(false, true)) {
+                return;
+            }
+            // The change is reported on the thread that made it, so respond on a container thread
+            asyncContext.start(() -> {
+                try {
+                    writeSession(request, response, session.getSessionId(),
+                        snapshot != null ? snapshot : session.getSnapshot());
+                } catch (IOException e) {
+                    // Client went away
+                } finally {
+                    asyncContext.complete();
+                }
+            });
+        });
+    }
+    
+    /**
+     * Writes a session with its {@code ETag}, or {@code 304} without a body when the
+     * client's {@code If-None-Match} already names this version.
+     * 
+     * @param request The HTTP request
+     * @param response The HTTP response
+     * @param sessionId The session ID
+     * @param snapshot The snapshot of the session to write
+     * @throws IOException If an I/O error occurs
+     */
+    private void writeSession(HttpServletRequest request, HttpServletResponse response, String sessionId,
+                              WizardSession.Snapshot snapshot) throws IOException {
+        String etag = etag(snapshot);
+        response.setHeader("ETag", etag);
+        // Caches may keep the response but must revalidate it, which costs a 304 at most
+        response.setHeader("Cache-Control", "no-cache");
+        if (etagMatches(request.getHeader("If-None-Match"), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        writeJson(request, response, HttpServletResponse.SC_OK, AgentResponse.of(sessionId, snapshot));
+    }
+    
+    /**
+     * Gets the entity tag of a session version. The version is persisted with the session,
+     * so the tag survives restarts and is the same on every node. The tag is weak because
+     * the same version is sent with different content encodings.
+     */
+    private static String etag(WizardSession.Snapshot snapshot) {
+        return "W/\"" + snapshot.getVersion() + "\"";
+    }
+    
+    /**
+     * Checks an {@code If-None-Match} header against an entity tag, using the weak
+     * comparison that the header calls for.
+     */
+    private static boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
         }
+        String opaqueTag = opaqueTag(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || opaqueTag(tag).equals(opaqueTag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static String opaqueTag(String tag) {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
     }
     
     /**
@@ -239,6 +556,33 @@ public class CreateAgentServlet extends HttpServlet {
             this.agent = agent;
             this.errorMessage = errorMessage;
         }
+        
+        /**
+         * Creates a response from one consistent snapshot of a session.
+         */
+        public static AgentResponse of(WizardSession session) {
+            return of(session.getSessionId(), session.getSnapshot());
+        }
+        
+        /**
+         * Creates a response from a snapshot of a session.
+         */
+        public static AgentResponse of(String sessionId, WizardSession.Snapshot snapshot) {
+            return new AgentResponse(sessionId, snapshot.getState(), snapshot.getAgent(), null);
+        }
+    }
+    
+    /**
+     * Status and body of a response.
+     */
+    private static class Reply {
+        private final int status;
+        private final Object body;
+        
+        public Reply(int status, Object body) {
+            this.status = status;
+            this.body = body;
+        }
     }
     
     /**
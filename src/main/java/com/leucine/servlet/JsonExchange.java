@@ -0,0 +1,298 @@
+package com.leucine.servlet;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Reads JSON request bodies and writes JSON responses without materializing either as a
+ * string. Requests are decoded straight from the servlet input stream with a size cap,
+ * and responses are serialized straight to the output stream, compressed with gzip or
+ * deflate when the client accepts it and the body is large enough to benefit.
+ *
+ * <p>Settings are read from servlet init parameters, falling back to context
+ * init parameters and then to defaults:</p>
+ * <ul>
+ *   <li>{@code maxRequestBytes} - largest accepted request body (default 1048576)</li>
+ *   <li>{@code compressionEnabled} - whether responses may be compressed (default {@code true})</li>
+ *   <li>{@code compressionMinBytes} - smallest response body that is compressed (default 1024)</li>
+ * </ul>
+ */
+public class JsonExchange {
+
+    private static final long DEFAULT_MAX_REQUEST_BYTES = 1024 * 1024;
+    private static final int DEFAULT_COMPRESSION_MIN_BYTES = 1024;
+
+    private final Gson gson;
+    private final long maxRequestBytes;
+    private final boolean compressionEnabled;
+    private final int compressionMinBytes;
+
+    /**
+     * Creates a new exchange.
+     *
+     * @param gson The Gson instance used for binding
+     * @param maxRequestBytes The largest accepted request body in bytes
+     * @param compressionEnabled Whether responses may be compressed
+     * @param compressionMinBytes The smallest response body in bytes that is compressed
+     */
+    public JsonExchange(Gson gson, long maxRequestBytes, boolean compressionEnabled, int compressionMinBytes) {
+        if (maxRequestBytes < 1) {
+            throw new IllegalArgumentException("maxRequestBytes must be at least 1");
+        }
+        this.gson = gson;
+        this.maxRequestBytes = maxRequestBytes;
+        this.compressionEnabled = compressionEnabled;
+        this.compressionMinBytes = Math.max(0, compressionMinBytes);
+    }
+
+    /**
+     * Creates an exchange from the init parameters of a servlet.
+     *
+     * @param config The servlet configuration
+     * @param gson The Gson instance used for binding
+     * @return The configured exchange
+     */
+    public static JsonExchange fromConfig(ServletConfig config, Gson gson) {
+        return new JsonExchange(
+                gson,
+                Long.parseLong(AsyncRequestExecutor.getParameter(config, "maxRequestBytes", String.valueOf(DEFAULT_MAX_REQUEST_BYTES))),
+                Boolean.parseBoolean(AsyncRequestExecutor.getParameter(config, "compressionEnabled", "true")),
+                Integer.parseInt(AsyncRequestExecutor.getParameter(config, "compressionMinBytes", String.valueOf(DEFAULT_COMPRESSION_MIN_BYTES))));
+    }
+
+    /**
+     * Decodes the request body.
+     *
+     * @param request The HTTP request
+     * @param type The type to bind the body to
+     * @param <T> The body type
+     * @return The decoded body, or null if the body is empty
+     * @throws RequestTooLargeException If the body is larger than {@code maxRequestBytes}
+     * @throws JsonParseException If the body is not valid JSON for the type
+     * @throws IOException If the body cannot be read
+     */
+    public <T> T read(HttpServletRequest request, Class<T> type) throws IOException {
+        // getContentLength() rather than the Servlet 3.1 long variant, which Tomcat 7 lacks;
+        // the stream limit below catches bodies that omit or misstate their length
+        int declaredLength = request.getContentLength();
+        if (declaredLength > maxRequestBytes) {
+            throw new RequestTooLargeException(maxRequestBytes);
+        }
+        Charset charset = request.getCharacterEncoding() != null
+            ? Charset.forName(request.getCharacterEncoding()) : StandardCharsets.UTF_8;
+        JsonReader reader = gson.newJsonReader(new InputStreamReader(
+            new LimitedInputStream(request.getInputStream(), maxRequestBytes), charset));
+        try {
+            return gson.fromJson(reader, type);
+        } catch (JsonParseException e) {
+            // Gson wraps read failures, including an exceeded limit
+            if (e.getCause() instanceof RequestTooLargeException) {
+                throw (RequestTooLargeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Writes a JSON body with the given status code, compressing it if the client
+     * accepts gzip or deflate and the body reaches {@code compressionMinBytes}.
+     *
+     * @param request The HTTP request, for content negotiation
+     * @param response The HTTP response
+     * @param status The HTTP status code
+     * @param body The object to serialize
+     * @throws IOException If an I/O error occurs
+     */
+    public void write(HttpServletRequest request, HttpServletResponse response, int status, Object body)
+            throws IOException {
+        response.setStatus(status);
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        String encoding = null;
+        if (compressionEnabled) {
+            // Caches must not serve a compressed body to a client that did not ask for it
+            response.addHeader("Vary", "Accept-Encoding");
+            encoding = negotiateEncoding(request.getHeader("Accept-Encoding"));
+        }
+
+        OutputStream out = encoding != null
+            ? new CompressingOutputStream(response, encoding, compressionMinBytes)
+            : response.getOutputStream();
+        JsonWriter writer = gson.newJsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        gson.toJson(body, body.getClass(), writer);
+        // Closing finishes the compressed stream and ends the response body
+        writer.close();
+    }
+
+    /**
+     * Picks the content coding for a response from an {@code Accept-Encoding} header,
+     * preferring gzip when both codings are equally acceptable.
+     *
+     * @param acceptEncoding The header value, or null
+     * @return {@code gzip}, {@code deflate}, or null for an uncompressed response
+     */
+    static String negotiateEncoding(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        Double gzip = null;
+        Double deflate = null;
+        Double any = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase();
+            double quality = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if ("gzip".equals(name) || "x-gzip".equals(name)) {
+                gzip = quality;
+            } else if ("deflate".equals(name)) {
+                deflate = quality;
+            } else if ("*".equals(name)) {
+                any = quality;
+            }
+        }
+        // A coding that is not listed gets the quality of "*", if present
+        double gzipQuality = gzip != null ? gzip : any != null ? any : 0;
+        double deflateQuality = deflate != null ? deflate : any != null ? any : 0;
+        if (gzipQuality > 0 && gzipQuality >= deflateQuality) {
+            return "gzip";
+        }
+        return deflateQuality > 0 ? "deflate" : null;
+    }
+
+    /**
+     * Thrown when a request body exceeds the configured size cap.
+     */
+    public static class RequestTooLargeException extends IOException {
+        /**
+         * Creates a new exception.
+         *
+         * @param maxRequestBytes The size cap that was exceeded
+         */
+        public RequestTooLargeException(long maxRequestBytes) {
+            super("Request body exceeds " + maxRequestBytes + " bytes");
+        }
+    }
+
+    /**
+     * Fails the read once more than the allowed number of bytes has been consumed,
+     * whatever the request declared as its length.
+     */
+    private static class LimitedInputStream extends FilterInputStream {
+        private final long limit;
+        private long count;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n = super.read(buffer, offset, length);
+            if (n > 0) {
+                count(n);
+            }
+            return n;
+        }
+
+        private void count(int n) throws RequestTooLargeException {
+            count += n;
+            if (count > limit) {
+                throw new RequestTooLargeException(limit);
+            }
+        }
+    }
+
+    /**
+     * Holds back the first {@code minBytes} of a body. A body that ends before then is sent
+     * uncompressed with its length; a longer one switches the response to the negotiated
+     * coding, which is only possible because nothing has been committed yet.
+     */
+    private static class CompressingOutputStream extends OutputStream {
+        private final HttpServletResponse response;
+        private final String encoding;
+        private final int minBytes;
+        private ByteArrayOutputStream buffer;
+        private OutputStream compressed;
+
+        CompressingOutputStream(HttpServletResponse response, String encoding, int minBytes) {
+            this.response = response;
+            this.encoding = encoding;
+            this.minBytes = minBytes;
+            this.buffer = new ByteArrayOutputStream(Math.min(minBytes, 8192));
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (compressed == null && buffer.size() + length < minBytes) {
+                buffer.write(bytes, offset, length);
+                return;
+            }
+            if (compressed == null) {
+                startCompression();
+            }
+            compressed.write(bytes, offset, length);
+        }
+
+        private void startCompression() throws IOException {
+            response.setHeader("Content-Encoding", encoding);
+            OutputStream out = response.getOutputStream();
+            // Deflate is the zlib format, which is what DeflaterOutputStream writes
+            compressed = "gzip".equals(encoding) ? new GZIPOutputStream(out, 8192) : new DeflaterOutputStream(out);
+            buffer.writeTo(compressed);
+            buffer = null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (compressed != null) {
+                compressed.close();
+                return;
+            }
+            response.setContentLength(buffer.size());
+            buffer.writeTo(response.getOutputStream());
+            response.getOutputStream().flush();
+        }
+    }
+}
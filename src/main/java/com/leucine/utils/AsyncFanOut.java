@@ -0,0 +1,130 @@
+package com.leucine.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Runs asynchronous tasks over a list of inputs with bounded concurrency.
+ *
+ * <p>The returned future completes normally once every task has finished. The first failure
+ * fails it right away, cancels the futures of the tasks still running and stops new ones
+ * from starting. Cancelling a future does not stop work that is already under way, so a
+ * caller whose tasks have side effects must discard results that arrive after the failure.
+ * Tasks are started from the completion of earlier ones, so no thread is held while waiting
+ * for a free slot.</p>
+ */
+public final class AsyncFanOut {
+
+    private AsyncFanOut() {
+    }
+
+    /**
+     * Applies an asynchronous task to every input, running at most {@code parallelism}
+     * tasks at once.
+     *
+     * @param inputs The inputs
+     * @param parallelism The maximum number of tasks running at once
+     * @param task The task to run for each input
+     * @param <T> The input type
+     * @param <R> The result type
+     * @return A future with the results in input order, or failed with the first task failure
+     */
+    public static <T, R> CompletableFuture<List<R>> all(List<T> inputs, int parallelism,
+                                                        Function<T, CompletableFuture<R>> task) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        return new Scope<>(inputs, task).start(parallelism);
+    }
+
+    private static final class Scope<T, R> {
+        private final List<T> inputs;
+        private final Function<T, CompletableFuture<R>> task;
+        private final List<R> results;
+        private final List<CompletableFuture<R>> running;
+        private final CompletableFuture<List<R>> result = new CompletableFuture<>();
+        private final AtomicInteger next = new AtomicInteger();
+        private final AtomicInteger remaining;
+        // Set under the lock on running once the scope has failed, so no task starts after that
+        private boolean cancelled;
+
+        Scope(List<T> inputs, Function<T, CompletableFuture<R>> task) {
+            this.inputs = inputs;
+            this.task = task;
+            this.results = new ArrayList<>(Collections.nCopies(inputs.size(), null));
+            this.running = new ArrayList<>(Collections.nCopies(inputs.size(), null));
+            this.remaining = new AtomicInteger(inputs.size());
+        }
+
+        CompletableFuture<List<R>> start(int parallelism) {
+            if (inputs.isEmpty()) {
+                result.complete(results);
+                return result;
+            }
+            // Cancelling the scope cancels every running task
+            result.whenComplete((value, error) -> {
+                if (error != null) {
+                    cancelRunning();
+                }
+            });
+            for (int i = 0; i < Math.min(parallelism, inputs.size()); i++) {
+                startNext();
+            }
+            return result;
+        }
+
+        private void startNext() {
+            int index = next.getAndIncrement();
+            if (index >= inputs.size() || result.isDone()) {
+                return;
+            }
+            CompletableFuture<R> future;
+            try {
+                future = task.apply(inputs.get(index));
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+                return;
+            }
+            synchronized (running) {
+                if (cancelled) {
+                    future.cancel(true);
+                    return;
+                }
+                running.set(index, future);
+            }
+            future.whenComplete((value, error) -> {
+                if (error != null) {
+                    result.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error);
+                    return;
+                }
+                synchronized (results) {
+                    results.set(index, value);
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    synchronized (results) {
+                        result.complete(new ArrayList<>(results));
+                    }
+                } else {
+                    startNext();
+                }
+            });
+        }
+
+        private void cancelRunning() {
+            synchronized (running) {
+                cancelled = true;
+                for (CompletableFuture<R> future : running) {
+                    if (future != null) {
+                        future.cancel(true);
+                    }
+                }
+            }
+        }
+    }
+}
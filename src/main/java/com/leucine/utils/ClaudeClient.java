@@ -2,27 +2,54 @@ package com.leucine.utils;
 
 import com.google.gson.annotations.SerializedName;
 import com.leucine.config.AIConfig;
+import com.leucine.metrics.Metrics;
+import com.leucine.metrics.MetricsRegistry;
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
 import okhttp3.*;
+import okio.BufferedSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.time.LocalDateTime;
+import java.io.InterruptedIOException;
+import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 public class ClaudeClient {
+    private static final Logger LOG = LoggerFactory.getLogger(ClaudeClient.class);
     private static final String BASE_URL = "https://api.anthropic.com/v1/messages";
     private static final MediaType JSON = MediaType.parse("application/json");
     private static final String DEFAULT_MODEL = "claude-3-7-sonnet-latest";
     
-    private static final int MAX_RETRIES = 5;  // Increased from 3 to 5
     private static final long INITIAL_RETRY_DELAY_MS = 10000; // 10 seconds (increased from 5)
     private static final long MAX_RETRY_DELAY_MS = 120000; // 120 seconds (increased from 60)
+
+    // Single daemon thread that only fires retry timers; no thread waits out a backoff
+    private static final ScheduledExecutorService RETRY_SCHEDULER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "claude-retry-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
     
     private final String apiKey;
     private final OkHttpClient httpClient;
@@ -31,7 +58,13 @@ public class ClaudeClient {
     private final int maxTokens;
     private final double temperature;
     private final String systemPrompt;
-    private boolean debugMode = true;
+    private final RateLimiter rateLimiter;
+    private final int retryBudgetSeconds;
+    private final String baseUrl;
+    private final UsageTotals usageTotals;
+    private final CallMetrics callMetrics;
+    private final int logBodyMaxChars;
+    private boolean debugMode = false;
 
     private ClaudeClient(Builder builder) {
         this.apiKey = builder.apiKey;
@@ -40,19 +73,92 @@ public class ClaudeClient {
         this.temperature = builder.temperature;
         this.systemPrompt = builder.systemPrompt;
         this.gson = new Gson();
-        this.httpClient = new OkHttpClient.Builder()
-            .connectTimeout(builder.connectTimeout, TimeUnit.SECONDS)
-            .readTimeout(builder.readTimeout, TimeUnit.SECONDS)
-            .writeTimeout(builder.writeTimeout, TimeUnit.SECONDS)
-            .build();
+        HttpTransport transport = builder.transport != null ? builder.transport : HttpTransport.getShared();
+        this.httpClient = transport.newClient(builder.connectTimeout, builder.readTimeout, builder.writeTimeout);
+        this.rateLimiter = builder.rateLimiter != null ? builder.rateLimiter : RateLimiter.getShared();
+        this.retryBudgetSeconds = builder.retryBudgetSeconds;
+        this.baseUrl = builder.baseUrl;
         this.debugMode = builder.debugMode;
+        this.logBodyMaxChars = builder.logBodyMaxChars;
+        this.usageTotals = new UsageTotals();
+        this.callMetrics = new CallMetrics(
+            builder.metricsRegistry != null ? builder.metricsRegistry : Metrics.getRegistry(), builder.callSite);
+    }
+
+    private ClaudeClient(ClaudeClient base, String callSite) {
+        this.apiKey = base.apiKey;
+        this.model = base.model;
+        this.maxTokens = base.maxTokens;
+        this.temperature = base.temperature;
+        this.systemPrompt = base.systemPrompt;
+        this.gson = base.gson;
+        this.httpClient = base.httpClient;
+        this.rateLimiter = base.rateLimiter;
+        this.retryBudgetSeconds = base.retryBudgetSeconds;
+        this.baseUrl = base.baseUrl;
+        this.debugMode = base.debugMode;
+        this.logBodyMaxChars = base.logBodyMaxChars;
+        this.usageTotals = base.usageTotals;
+        this.callMetrics = new CallMetrics(base.callMetrics.registry, callSite);
+    }
+
+    /**
+     * Releases the threads and connections shared by all clients: stops the retry scheduler
+     * and closes the shared rate limiter and HTTP transport. Called when the web application
+     * stops; pending retries and batch polls fail, and clients built before the call can no
+     * longer make requests.
+     */
+    public static void shutdown() {
+        RETRY_SCHEDULER.shutdownNow();
+        RateLimiter.closeShared();
+        HttpTransport.closeShared();
+    }
+
+    /**
+     * Returns a client that shares this client's configuration, connections, rate limiter and
+     * usage totals but tags its metrics with a different call site, so for example standard
+     * procedure and decomposition calls can be measured separately.
+     *
+     * @param callSite The call site tag, such as {@code standard_procedure}
+     * @return A client for the call site
+     */
+    public ClaudeClient withCallSite(String callSite) {
+        return new ClaudeClient(this, callSite);
+    }
+
+    /**
+     * Gets the call site that this client's metrics are tagged with.
+     *
+     * @return The call site
+     */
+    public String getCallSite() {
+        return callMetrics.site;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public double getTemperature() {
+        return temperature;
+    }
+
+    /**
+     * Gets the token totals of all responses received by this client, including prompt
+     * cache writes and reads.
+     *
+     * @return The usage totals
+     */
+    public UsageTotals getUsageTotals() {
+        return usageTotals;
     }
 
     public static class Message {
         @SerializedName("role")
         private String role;
+        // Either a plain string or a list of content blocks, as the Messages API accepts both
         @SerializedName("content")
-        private String content;
+        private Object content;
 
         public Message() {}
 
@@ -61,10 +167,52 @@ public class ClaudeClient {
             this.content = content;
         }
 
+        /**
+         * Creates a message from content blocks, which may carry {@code cache_control} breakpoints.
+         *
+         * @param role The message role
+         * @param content The content blocks
+         */
+        public Message(String role, List<ContentBlock> content) {
+            this.role = role;
+            this.content = new ArrayList<>(content);
+        }
+
         public String getRole() { return role; }
-        public String getContent() { return content; }
         public void setRole(String role) { this.role = role; }
         public void setContent(String content) { this.content = content; }
+
+        /**
+         * Gets the text of the message; the text of content blocks is concatenated.
+         *
+         * @return The message text
+         */
+        public String getContent() {
+            if (content instanceof String) {
+                return (String) content;
+            }
+            return getContentBlocks().stream()
+                .map(ContentBlock::getText)
+                .collect(Collectors.joining());
+        }
+
+        /**
+         * Gets the content of the message as blocks; plain string content is returned as one text block.
+         *
+         * @return The content blocks
+         */
+        @SuppressWarnings("unchecked")
+        public List<ContentBlock> getContentBlocks() {
+            if (content == null) {
+                return new ArrayList<>();
+            }
+            if (content instanceof String) {
+                List<ContentBlock> blocks = new ArrayList<>();
+                blocks.add(ContentBlock.text((String) content));
+                return blocks;
+            }
+            return (List<ContentBlock>) content;
+        }
     }
 
     public static class ContentBlock {
@@ -72,13 +220,148 @@ public class ClaudeClient {
         private String type;
         @SerializedName("text")
         private String text;
+        @SerializedName("cache_control")
+        private CacheControl cacheControl;
 
         public ContentBlock() {}
 
+        public ContentBlock(String type, String text) {
+            this.type = type;
+            this.text = text;
+        }
+
+        /**
+         * Creates a text block.
+         *
+         * @param text The text
+         * @return The content block
+         */
+        public static ContentBlock text(String text) {
+            return new ContentBlock("text", text);
+        }
+
+        /**
+         * Creates a text block that ends a cached prefix. The API caches the request up to and
+         * including this block, so later requests starting with the same content read it from
+         * the cache instead of processing it again.
+         *
+         * @param text The text
+         * @return The content block
+         */
+        public static ContentBlock cachedText(String text) {
+            ContentBlock block = text(text);
+            block.setCacheControl(CacheControl.ephemeral());
+            return block;
+        }
+
         public String getType() { return type; }
         public String getText() { return text; }
+        public CacheControl getCacheControl() { return cacheControl; }
         public void setType(String type) { this.type = type; }
         public void setText(String text) { this.text = text; }
+        public void setCacheControl(CacheControl cacheControl) { this.cacheControl = cacheControl; }
+    }
+
+    /**
+     * A prompt caching breakpoint on a content block.
+     */
+    public static class CacheControl {
+        @SerializedName("type")
+        private String type;
+
+        public CacheControl() {}
+
+        public CacheControl(String type) {
+            this.type = type;
+        }
+
+        /**
+         * Creates the default breakpoint, which keeps the prefix cached for five minutes after its last use.
+         *
+         * @return The cache control
+         */
+        public static CacheControl ephemeral() {
+            return new CacheControl("ephemeral");
+        }
+
+        public String getType() { return type; }
+        public void setType(String type) { this.type = type; }
+    }
+
+    /**
+     * Token counts of a response. Input tokens only count the part of the prompt after the
+     * last cache breakpoint; the cached prefix is counted as cache creation tokens when it is
+     * written and as cache read tokens when it is reused.
+     */
+    public static class Usage {
+        @SerializedName("input_tokens")
+        private long inputTokens;
+        @SerializedName("output_tokens")
+        private long outputTokens;
+        @SerializedName("cache_creation_input_tokens")
+        private long cacheCreationInputTokens;
+        @SerializedName("cache_read_input_tokens")
+        private long cacheReadInputTokens;
+
+        public Usage() {}
+
+        public long getInputTokens() { return inputTokens; }
+        public long getOutputTokens() { return outputTokens; }
+        public long getCacheCreationInputTokens() { return cacheCreationInputTokens; }
+        public long getCacheReadInputTokens() { return cacheReadInputTokens; }
+        public void setInputTokens(long inputTokens) { this.inputTokens = inputTokens; }
+        public void setOutputTokens(long outputTokens) { this.outputTokens = outputTokens; }
+        public void setCacheCreationInputTokens(long cacheCreationInputTokens) { this.cacheCreationInputTokens = cacheCreationInputTokens; }
+        public void setCacheReadInputTokens(long cacheReadInputTokens) { this.cacheReadInputTokens = cacheReadInputTokens; }
+
+        @Override
+        public String toString() {
+            return "input=" + inputTokens + ", cache_write=" + cacheCreationInputTokens
+                + ", cache_read=" + cacheReadInputTokens + ", output=" + outputTokens;
+        }
+    }
+
+    /**
+     * Running token totals of all responses received by a client.
+     */
+    public static class UsageTotals {
+        private final LongAdder responses = new LongAdder();
+        private final LongAdder inputTokens = new LongAdder();
+        private final LongAdder outputTokens = new LongAdder();
+        private final LongAdder cacheCreationInputTokens = new LongAdder();
+        private final LongAdder cacheReadInputTokens = new LongAdder();
+
+        void add(Usage usage) {
+            responses.increment();
+            inputTokens.add(usage.getInputTokens());
+            outputTokens.add(usage.getOutputTokens());
+            cacheCreationInputTokens.add(usage.getCacheCreationInputTokens());
+            cacheReadInputTokens.add(usage.getCacheReadInputTokens());
+        }
+
+        public long getResponses() { return responses.sum(); }
+        public long getInputTokens() { return inputTokens.sum(); }
+        public long getOutputTokens() { return outputTokens.sum(); }
+        public long getCacheCreationInputTokens() { return cacheCreationInputTokens.sum(); }
+        public long getCacheReadInputTokens() { return cacheReadInputTokens.sum(); }
+
+        /**
+         * Gets the share of prompt tokens that were read from the cache.
+         *
+         * @return The cache hit ratio between 0 and 1, or 0 if no prompt tokens were sent
+         */
+        public double getCacheHitRatio() {
+            long read = getCacheReadInputTokens();
+            long total = read + getCacheCreationInputTokens() + getInputTokens();
+            return total == 0 ? 0 : (double) read / total;
+        }
+
+        @Override
+        public String toString() {
+            return "responses=" + getResponses() + ", input=" + getInputTokens()
+                + ", cache_write=" + getCacheCreationInputTokens() + ", cache_read=" + getCacheReadInputTokens()
+                + ", output=" + getOutputTokens();
+        }
     }
 
     public static class ClaudeResponse {
@@ -96,6 +379,8 @@ public class ClaudeClient {
         private String stopReason;
         @SerializedName("error")
         private ClaudeError error;
+        @SerializedName("usage")
+        private Usage usage;
 
         public ClaudeResponse() {}
 
@@ -106,6 +391,7 @@ public class ClaudeClient {
         public List<ContentBlock> getContent() { return content; }
         public String getStopReason() { return stopReason; }
         public ClaudeError getError() { return error; }
+        public Usage getUsage() { return usage; }
 
         public void setId(String id) { this.id = id; }
         public void setType(String type) { this.type = type; }
@@ -114,6 +400,7 @@ public class ClaudeClient {
         public void setContent(List<ContentBlock> content) { this.content = content; }
         public void setStopReason(String stopReason) { this.stopReason = stopReason; }
         public void setError(ClaudeError error) { this.error = error; }
+        public void setUsage(Usage usage) { this.usage = usage; }
 
         public String getTextContent() {
             if (content != null && !content.isEmpty()) {
@@ -159,13 +446,333 @@ public class ClaudeClient {
         public int getStatusCode() { return statusCode; }
     }
 
+    /**
+     * Thrown when a streamed response fails after text has already been delivered
+     * to the listener. Such requests are not retried, since a retry would replay
+     * text the caller has already consumed.
+     */
+    public static class StreamInterruptedException extends IOException {
+        public StreamInterruptedException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    /**
+     * Receives incremental output from a streamed request.
+     */
+    public interface StreamListener {
+        /**
+         * Called for each text delta as it arrives from the API.
+         *
+         * @param text The next piece of generated text
+         */
+        void onText(String text);
+
+        /**
+         * Whether the client should keep the streamed text to assemble the returned
+         * response. Listeners that consume the text themselves can return false so
+         * the response is not held in memory twice.
+         *
+         * @return true to include the generated text in the returned response
+         */
+        default boolean retainText() {
+            return true;
+        }
+    }
+
+    /**
+     * One request of a message batch: a custom ID to match the result and the parameters of
+     * a Messages API call.
+     */
+    public static class BatchRequest {
+        @SerializedName("custom_id")
+        private String customId;
+        @SerializedName("params")
+        private Map<String, Object> params;
+
+        public BatchRequest() {}
+
+        public BatchRequest(String customId, Map<String, Object> params) {
+            this.customId = customId;
+            this.params = params;
+        }
+
+        public String getCustomId() { return customId; }
+        public Map<String, Object> getParams() { return params; }
+        public void setCustomId(String customId) { this.customId = customId; }
+        public void setParams(Map<String, Object> params) { this.params = params; }
+    }
+
+    /**
+     * A message batch as returned by the Message Batches API.
+     */
+    public static class MessageBatch {
+        @SerializedName("id")
+        private String id;
+        @SerializedName("type")
+        private String type;
+        @SerializedName("processing_status")
+        private String processingStatus;
+        @SerializedName("request_counts")
+        private BatchRequestCounts requestCounts;
+        @SerializedName("results_url")
+        private String resultsUrl;
+        @SerializedName("created_at")
+        private String createdAt;
+        @SerializedName("ended_at")
+        private String endedAt;
+        @SerializedName("expires_at")
+        private String expiresAt;
+
+        public MessageBatch() {}
+
+        public String getId() { return id; }
+        public String getType() { return type; }
+        public String getProcessingStatus() { return processingStatus; }
+        public BatchRequestCounts getRequestCounts() { return requestCounts; }
+        public String getResultsUrl() { return resultsUrl; }
+        public String getCreatedAt() { return createdAt; }
+        public String getEndedAt() { return endedAt; }
+        public String getExpiresAt() { return expiresAt; }
+
+        /**
+         * Checks whether processing has finished and the results can be read.
+         *
+         * @return true if the batch has ended
+         */
+        public boolean isEnded() {
+            return "ended".equals(processingStatus);
+        }
+    }
+
+    /**
+     * The number of requests of a message batch in each state.
+     */
+    public static class BatchRequestCounts {
+        @SerializedName("processing")
+        private int processing;
+        @SerializedName("succeeded")
+        private int succeeded;
+        @SerializedName("errored")
+        private int errored;
+        @SerializedName("canceled")
+        private int canceled;
+        @SerializedName("expired")
+        private int expired;
+
+        public int getProcessing() { return processing; }
+        public int getSucceeded() { return succeeded; }
+        public int getErrored() { return errored; }
+        public int getCanceled() { return canceled; }
+        public int getExpired() { return expired; }
+
+        @Override
+        public String toString() {
+            return "processing=" + processing + ", succeeded=" + succeeded + ", errored=" + errored
+                + ", canceled=" + canceled + ", expired=" + expired;
+        }
+    }
+
+    /**
+     * The result of one request of a message batch, read from its JSONL results.
+     */
+    public static class BatchResult {
+        @SerializedName("custom_id")
+        private String customId;
+        @SerializedName("result")
+        private Outcome result;
+
+        public static class Outcome {
+            @SerializedName("type")
+            private String type;
+            @SerializedName("message")
+            private ClaudeResponse message;
+            @SerializedName("error")
+            private JsonObject error;
+        }
+
+        public String getCustomId() { return customId; }
+
+        /**
+         * Gets the result type: {@code succeeded}, {@code errored}, {@code canceled} or {@code expired}.
+         *
+         * @return The result type
+         */
+        public String getType() { return result != null ? result.type : null; }
+
+        public boolean isSucceeded() { return "succeeded".equals(getType()); }
+
+        /**
+         * Gets the response of a succeeded request.
+         *
+         * @return The response, or null if the request did not succeed
+         */
+        public ClaudeResponse getMessage() { return result != null ? result.message : null; }
+
+        /**
+         * Describes why a request did not succeed.
+         *
+         * @return The error message, or the result type if there is none
+         */
+        public String getErrorMessage() {
+            JsonObject error = result != null ? result.error : null;
+            // Errors may be wrapped in an error response envelope
+            while (error != null && error.has("error") && error.get("error").isJsonObject()) {
+                error = error.getAsJsonObject("error");
+            }
+            String message = getString(error, "message");
+            return message != null ? message : getType();
+        }
+    }
+
+    // In-flight requests by call site, shared by all clients so one gauge covers them
+    private static final Map<String, AtomicInteger> IN_FLIGHT = new ConcurrentHashMap<>();
+
+    /**
+     * Records the metrics of one call site:
+     * <ul>
+     *   <li>{@code claude.request.latency} - time from the call until its result, including
+     *       rate limiter waits and retries, tagged by {@code endpoint} and {@code outcome}</li>
+     *   <li>{@code claude.request.ttfb} - time from sending an attempt to its response headers</li>
+     *   <li>{@code claude.request.ttft} - time from a streamed call until its first text</li>
+     *   <li>{@code claude.responses} - responses by {@code status} ({@code 2xx}, {@code 429},
+     *       {@code 4xx}, {@code 5xx})</li>
+     *   <li>{@code claude.retries} - retries by {@code cause} ({@code rate_limit},
+     *       {@code server_error}, {@code network})</li>
+     *   <li>{@code claude.tokens} - tokens by {@code type} ({@code input}, {@code output},
+     *       {@code cache_write}, {@code cache_read})</li>
+     *   <li>{@code claude.requests.in_flight} - calls started but not finished</li>
+     * </ul>
+     * Every meter is tagged with {@code site}.
+     */
+    private static final class CallMetrics {
+        private final MetricsRegistry registry;
+        private final String site;
+        private final AtomicInteger inFlight;
+
+        CallMetrics(MetricsRegistry registry, String site) {
+            this.registry = registry;
+            this.site = site;
+            this.inFlight = IN_FLIGHT.computeIfAbsent(site, key -> new AtomicInteger());
+            registry.gauge("claude.requests.in_flight", inFlight::get, "site", site);
+        }
+
+        void recordLatency(String endpoint, String outcome, long nanos) {
+            registry.timer("claude.request.latency", "site", site, "endpoint", endpoint, "outcome", outcome)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        void recordTimeToFirstByte(String endpoint, long nanos) {
+            registry.timer("claude.request.ttfb", "site", site, "endpoint", endpoint).record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        void recordTimeToFirstText(long nanos) {
+            registry.timer("claude.request.ttft", "site", site).record(nanos, TimeUnit.NANOSECONDS);
+        }
+
+        void recordResponse(int statusCode) {
+            String status = statusCode == 429 ? "429" : (statusCode / 100) + "xx";
+            registry.counter("claude.responses", "site", site, "status", status).increment();
+        }
+
+        void recordRetry(String cause) {
+            registry.counter("claude.retries", "site", site, "cause", cause).increment();
+        }
+
+        void recordUsage(Usage usage) {
+            registry.counter("claude.tokens", "site", site, "type", "input").increment(usage.getInputTokens());
+            registry.counter("claude.tokens", "site", site, "type", "output").increment(usage.getOutputTokens());
+            registry.counter("claude.tokens", "site", site, "type", "cache_write").increment(usage.getCacheCreationInputTokens());
+            registry.counter("claude.tokens", "site", site, "type", "cache_read").increment(usage.getCacheReadInputTokens());
+        }
+    }
+
+    /**
+     * Handles a successful HTTP response and turns it into a result.
+     */
+    private interface ResponseHandler<T> {
+        T handle(Response response) throws IOException;
+    }
+
     public ClaudeResponse sendMessage(String message) throws IOException {
+        return sendMessages(createUserMessages(message));
+    }
+
+    /**
+     * Sends a user message made of content blocks. Blocks created with
+     * {@link ContentBlock#cachedText(String)} mark the end of a prefix that the API caches,
+     * so a long shared context is processed once and reused by later requests.
+     *
+     * @param content The content blocks of the user message
+     * @return The response
+     * @throws IOException If the request fails
+     */
+    public ClaudeResponse sendMessage(List<ContentBlock> content) throws IOException {
+        return sendMessages(createUserMessages(content));
+    }
+
+    /**
+     * Sends a message without blocking the calling thread.
+     *
+     * @param message The user message
+     * @return A future that completes with the response, or exceptionally with an IOException
+     */
+    public CompletableFuture<ClaudeResponse> sendMessageAsync(String message) {
+        return sendMessagesAsync(createUserMessages(message));
+    }
+
+    /**
+     * Sends a user message made of content blocks without blocking the calling thread.
+     *
+     * @param content The content blocks of the user message
+     * @return A future that completes with the response, or exceptionally with an IOException
+     * @see #sendMessage(List)
+     */
+    public CompletableFuture<ClaudeResponse> sendMessageAsync(List<ContentBlock> content) {
+        return sendMessagesAsync(createUserMessages(content));
+    }
+
+    /**
+     * Sends a message using the streaming Messages API. Text is passed to the
+     * listener as it is generated and the complete response is returned at the end.
+     *
+     * @param message The user message
+     * @param listener The listener that receives text deltas
+     * @return The assembled response
+     * @throws IOException If the request fails
+     */
+    public ClaudeResponse streamMessage(String message, StreamListener listener) throws IOException {
+        return streamMessages(createUserMessages(message), listener);
+    }
+
+    /**
+     * Streams the response to a user message made of content blocks.
+     *
+     * @param content The content blocks of the user message
+     * @param listener The listener that receives text deltas
+     * @return The assembled response
+     * @throws IOException If the request fails
+     * @see #sendMessage(List)
+     */
+    public ClaudeResponse streamMessage(List<ContentBlock> content, StreamListener listener) throws IOException {
+        return streamMessages(createUserMessages(content), listener);
+    }
+
+    private List<Message> createUserMessages(String message) {
+        return createUserMessages(new Message("user", message));
+    }
+
+    private List<Message> createUserMessages(List<ContentBlock> content) {
+        return createUserMessages(new Message("user", content));
+    }
+
+    private List<Message> createUserMessages(Message userMessage) {
         List<Message> messages = new ArrayList<>();
         if (systemPrompt != null && !systemPrompt.trim().isEmpty()) {
             messages.add(new Message("system", systemPrompt));
         }
-        messages.add(new Message("user", message));
-        return sendMessages(messages);
+        messages.add(userMessage);
+        return messages;
     }
 
     public ClaudeResponse sendMessageWithSystem(String systemPrompt, String message) throws IOException {
@@ -175,41 +782,73 @@ public class ClaudeClient {
         return sendMessages(messages);
     }
 
+    /**
+     * Checks whether diagnostic messages are written: at DEBUG level, or at INFO level for
+     * clients built with debug mode on.
+     */
+    private boolean isLogEnabled() {
+        return debugMode ? LOG.isInfoEnabled() : LOG.isDebugEnabled();
+    }
+
+    // The overloads match SLF4J's, so no argument array is allocated for disabled messages
     private void log(String message) {
         if (debugMode) {
-            System.out.printf("[%s] ClaudeClient: %s%n", 
-                LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME),
-                message);
+            LOG.info(message);
+        } else {
+            LOG.debug(message);
         }
     }
 
-    private void logError(String message, Exception e) {
-        System.err.printf("[%s] ClaudeClient ERROR: %s%n", 
-            LocalDateTime.now().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME),
-            message);
-        if (e != null) {
-            System.err.printf("Exception: %s%n", e.getMessage());
-            e.printStackTrace();
+    private void log(String format, Object arg) {
+        if (debugMode) {
+            LOG.info(format, arg);
+        } else {
+            LOG.debug(format, arg);
         }
     }
 
-    private void logRequest(Request request, String body) {
+    private void log(String format, Object arg1, Object arg2) {
         if (debugMode) {
-            log("Request URL: " + request.url());
-            // Don't log request body or headers in debug mode
+            LOG.info(format, arg1, arg2);
+        } else {
+            LOG.debug(format, arg1, arg2);
         }
     }
 
+    private void logError(String message, Exception e) {
+        LOG.error("{}: {}", message, e.toString());
+        LOG.debug("Stack trace of the failure", e);
+    }
+
+    private void logRequest(Request request) {
+        // Request bodies and headers are never logged
+        log("Request {} {}", request.method(), request.url());
+    }
+
     private void logResponse(Response response, String body) {
-        if (debugMode && response != null) {
-            log("Response Code: " + response.code());
-            log("Response Message: " + response.message());
-            log("Response Body: " + (body != null ? body : "null"));
-        } else if (debugMode) {
-            log("Response: null");
+        if (isLogEnabled()) {
+            log("Response {}: {}", response.code() + " " + response.message(), abbreviate(body));
         }
     }
 
+    /**
+     * Shortens a body for the log by keeping its beginning and end.
+     *
+     * @param body The body, or null
+     * @return The body, shortened to about {@code CLAUDE_LOG_BODY_MAX_CHARS} characters
+     */
+    private String abbreviate(String body) {
+        if (body == null) {
+            return "null";
+        }
+        if (body.length() <= logBodyMaxChars) {
+            return body;
+        }
+        int keep = logBodyMaxChars / 2;
+        return body.substring(0, keep) + " ... [" + (body.length() - 2 * keep) + " chars omitted] ... "
+            + body.substring(body.length() - keep);
+    }
+
     private boolean isRateLimitError(Response response, ClaudeResponse errorResponse) {
         // Check HTTP status code first
         if (response != null) {
@@ -248,102 +887,687 @@ public class ClaudeClient {
         return false;
     }
 
+    /**
+     * Computes how long to wait before the next attempt. A {@code Retry-After} header
+     * (delta seconds or HTTP-date) takes precedence over exponential backoff with jitter.
+     */
     private long getRetryDelay(int retryCount, Response response) {
         // Get retry delay from response headers if available
         if (response != null) {
             String retryAfter = response.header("Retry-After");
             if (retryAfter != null) {
                 try {
-                    return Long.parseLong(retryAfter) * 1000L; // Convert seconds to milliseconds
+                    return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000L); // Convert seconds to milliseconds
                 } catch (NumberFormatException e) {
-                    // Ignore parse error and use default delay calculation
+                    try {
+                        ZonedDateTime retryAt = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                        return Math.max(0, retryAt.toInstant().toEpochMilli() - System.currentTimeMillis());
+                    } catch (DateTimeParseException ignored) {
+                        // Ignore parse error and use default delay calculation
+                    }
                 }
             }
         }
         
         // Exponential backoff with jitter
-        long baseDelay = INITIAL_RETRY_DELAY_MS * (long) Math.pow(2, retryCount);
+        long baseDelay = INITIAL_RETRY_DELAY_MS * (long) Math.pow(2, Math.min(retryCount, 16));
         long jitter = (long) (Math.random() * INITIAL_RETRY_DELAY_MS);
         return Math.min(baseDelay + jitter, MAX_RETRY_DELAY_MS);
     }
 
+    /**
+     * Checks whether a failed response is worth retrying. Server errors, overload and
+     * request timeouts are transient; other client errors will fail the same way again.
+     */
+    private static boolean isRetryableStatus(int statusCode) {
+        return statusCode == 408 || statusCode == 409 || statusCode >= 500;
+    }
+
     public ClaudeResponse sendMessages(List<Message> messages) throws IOException {
-        int retryCount = 0;
-        while (true) {
-            Map<String, Object> requestBody = new HashMap<>();
-            String responseBody = null;
+        return await(sendMessagesAsync(messages));
+    }
+
+    /**
+     * Sends messages without blocking the calling thread. Retries are scheduled rather
+     * than slept, so no thread is held while waiting for a backoff or rate limit to pass.
+     *
+     * @param messages The conversation messages
+     * @return A future that completes with the response, or exceptionally with an IOException
+     */
+    public CompletableFuture<ClaudeResponse> sendMessagesAsync(List<Message> messages) {
+        return executeAsync(createRequestBody(messages), response -> {
+            String responseBody = response.body().string();
+            logResponse(response, responseBody);
             try {
-                requestBody.put("model", model);
-                requestBody.put("max_tokens", maxTokens);
-                requestBody.put("temperature", temperature);
-                requestBody.put("messages", messages);
+                ClaudeResponse parsed = gson.fromJson(responseBody, ClaudeResponse.class);
+                recordUsage(parsed);
+                return parsed;
+            } catch (JsonSyntaxException e) {
+                LOG.warn("Response could not be parsed as JSON: {}", abbreviate(responseBody));
+                throw e;
+            }
+        });
+    }
 
-                String requestJson = gson.toJson(requestBody);
-                
-                Request request = new Request.Builder()
-                    .url(BASE_URL)
-                    .post(RequestBody.create(requestJson, JSON))
-                    .addHeader("x-api-key", apiKey)
-                    .addHeader("anthropic-version", "2023-06-01")
-                    .addHeader("anthropic-beta", "output-128k-2025-02-19")
-                    .addHeader("content-type", "application/json")
-                    .build();
-
-                logRequest(request, requestJson);
-
-                try (Response response = httpClient.newCall(request).execute()) {
-                     responseBody = response.body().string();
-                    logResponse(response, responseBody);
-
-                    if (!response.isSuccessful()) {
-                        ClaudeResponse errorResponse = gson.fromJson(responseBody, ClaudeResponse.class);
-                        
-                        // Handle rate limit errors
-                        if (isRateLimitError(response, errorResponse) && retryCount < MAX_RETRIES) {
-                            long retryDelay = getRetryDelay(retryCount, response);
-                            log("Rate limit exceeded, retrying in " + retryDelay + "ms (attempt " + (retryCount + 1) + " of " + MAX_RETRIES + ")");
-                            Thread.sleep(retryDelay);
-                            retryCount++;
-                            continue;
-                        }
+    /**
+     * Sends messages using the streaming Messages API ({@code "stream": true}).
+     * Server-sent events are read one at a time from the response source; text
+     * deltas are forwarded to the listener and only the generated text is kept
+     * to assemble the returned response (unless the listener opts out through
+     * {@link StreamListener#retainText()}).
+     *
+     * @param messages The conversation messages
+     * @param listener The listener that receives text deltas
+     * @return The assembled response
+     * @throws IOException If the request fails
+     */
+    public ClaudeResponse streamMessages(List<Message> messages, StreamListener listener) throws IOException {
+        return await(streamMessagesAsync(messages, listener));
+    }
 
-                        if (errorResponse != null && errorResponse.getError() != null) {
-                            throw new ClaudeException(
-                                errorResponse.getError().getMessage(),
-                                errorResponse.getError().getType(),
-                                response.code()
-                            );
-                        }
-                        throw new IOException("API call failed: " + response.code() + 
-                            " - " + response.message() + "\nBody: " + responseBody);
+    /**
+     * Asynchronous variant of {@link #streamMessages(List, StreamListener)}. The listener
+     * is called on an HTTP dispatcher thread.
+     *
+     * @param messages The conversation messages
+     * @param listener The listener that receives text deltas
+     * @return A future that completes with the assembled response
+     */
+    public CompletableFuture<ClaudeResponse> streamMessagesAsync(List<Message> messages, StreamListener listener) {
+        Map<String, Object> requestBody = createRequestBody(messages);
+        requestBody.put("stream", true);
+        long start = System.nanoTime();
+        StreamListener timedListener = new StreamListener() {
+            // Text is delivered by one dispatcher thread at a time, and never again after a retry
+            private boolean first = true;
+
+            @Override
+            public void onText(String text) {
+                if (first) {
+                    first = false;
+                    callMetrics.recordTimeToFirstText(System.nanoTime() - start);
+                }
+                listener.onText(text);
+            }
+
+            @Override
+            public boolean retainText() {
+                return listener.retainText();
+            }
+        };
+        return executeAsync(requestBody, response -> {
+            log("Response {} {} (streaming)", response.code(), response.message());
+            ClaudeResponse parsed = readEventStream(response.body().source(), timedListener);
+            recordUsage(parsed);
+            return parsed;
+        });
+    }
+
+    private void recordUsage(ClaudeResponse response) {
+        if (response != null && response.getUsage() != null) {
+            usageTotals.add(response.getUsage());
+            callMetrics.recordUsage(response.getUsage());
+            log("Usage: {}", response.getUsage());
+        }
+    }
+
+    /**
+     * Creates a request for a message batch with this client's model, token limit and temperature.
+     *
+     * @param customId The ID used to match the request with its result
+     * @param content The content blocks of the user message
+     * @return The batch request
+     */
+    public BatchRequest newBatchRequest(String customId, List<ContentBlock> content) {
+        return new BatchRequest(customId, createRequestBody(createUserMessages(content)));
+    }
+
+    /**
+     * Creates a request for a message batch with this client's model, token limit and temperature.
+     *
+     * @param customId The ID used to match the request with its result
+     * @param message The user message
+     * @return The batch request
+     */
+    public BatchRequest newBatchRequest(String customId, String message) {
+        return new BatchRequest(customId, createRequestBody(createUserMessages(message)));
+    }
+
+    /**
+     * Submits requests to the Message Batches API, which processes them asynchronously
+     * at a lower cost, typically within an hour.
+     *
+     * @param requests The requests, each with a unique custom ID
+     * @return The created batch
+     * @throws IOException If the batch cannot be created
+     */
+    public MessageBatch createBatch(List<BatchRequest> requests) throws IOException {
+        return await(createBatchAsync(requests));
+    }
+
+    /**
+     * Asynchronous variant of {@link #createBatch(List)}.
+     *
+     * @param requests The requests, each with a unique custom ID
+     * @return A future that completes with the created batch
+     */
+    public CompletableFuture<MessageBatch> createBatchAsync(List<BatchRequest> requests) {
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("requests", requests);
+        return executeAsync(getBatchesUrl(), gson.toJson(requestBody), false, this::parseBatch);
+    }
+
+    /**
+     * Gets the current status of a message batch.
+     *
+     * @param batchId The batch ID
+     * @return The batch
+     * @throws IOException If the request fails
+     */
+    public MessageBatch getBatch(String batchId) throws IOException {
+        return await(getBatchAsync(batchId));
+    }
+
+    /**
+     * Asynchronous variant of {@link #getBatch(String)}.
+     *
+     * @param batchId The batch ID
+     * @return A future that completes with the batch
+     */
+    public CompletableFuture<MessageBatch> getBatchAsync(String batchId) {
+        return executeAsync(getBatchesUrl() + "/" + batchId, null, false, this::parseBatch);
+    }
+
+    /**
+     * Waits until a message batch has ended.
+     *
+     * @param batchId The batch ID
+     * @param initialPollMillis The delay before the first status check
+     * @param maxPollMillis The longest delay between status checks
+     * @return The ended batch
+     * @throws IOException If a status check fails or the wait is interrupted
+     * @see #awaitBatchAsync(String, long, long)
+     */
+    public MessageBatch awaitBatch(String batchId, long initialPollMillis, long maxPollMillis) throws IOException {
+        return await(awaitBatchAsync(batchId, initialPollMillis, maxPollMillis));
+    }
+
+    /**
+     * Polls a message batch until it has ended. The delay between status checks starts at
+     * {@code initialPollMillis} and doubles up to {@code maxPollMillis}; polls are scheduled,
+     * so no thread waits between them. Cancelling the returned future stops polling.
+     *
+     * @param batchId The batch ID
+     * @param initialPollMillis The delay before the first status check
+     * @param maxPollMillis The longest delay between status checks
+     * @return A future that completes with the ended batch
+     */
+    public CompletableFuture<MessageBatch> awaitBatchAsync(String batchId, long initialPollMillis, long maxPollMillis) {
+        CompletableFuture<MessageBatch> result = new CompletableFuture<>();
+        schedulePoll(batchId, initialPollMillis, maxPollMillis, result);
+        return result;
+    }
+
+    private void pollBatch(String batchId, long delayMillis, long maxPollMillis, CompletableFuture<MessageBatch> result) {
+        if (result.isDone()) {
+            return;
+        }
+        getBatchAsync(batchId).whenComplete((batch, error) -> {
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else if (batch.isEnded()) {
+                result.complete(batch);
+            } else {
+                long nextDelay = Math.min(delayMillis * 2, maxPollMillis);
+                if (isLogEnabled()) {
+                    log("Batch " + batchId + " is " + batch.getProcessingStatus() + " (" + batch.getRequestCounts()
+                        + "), checking again in " + nextDelay + "ms");
+                }
+                schedulePoll(batchId, nextDelay, maxPollMillis, result);
+            }
+        });
+    }
+
+    private void schedulePoll(String batchId, long delayMillis, long maxPollMillis, CompletableFuture<MessageBatch> result) {
+        try {
+            RETRY_SCHEDULER.schedule(() -> pollBatch(batchId, delayMillis, maxPollMillis, result),
+                delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(new IOException("Claude client has been shut down", e));
+        }
+    }
+
+    /**
+     * Streams the results of an ended message batch. The JSONL results are read one line at
+     * a time and each result is passed to the consumer, so the whole result file is never
+     * held in memory. Results may arrive in any order; match them by custom ID.
+     *
+     * @param batch The ended batch
+     * @param consumer Receives each result on an HTTP dispatcher thread
+     * @return The number of results read
+     * @throws IOException If the results cannot be read
+     */
+    public long readBatchResults(MessageBatch batch, Consumer<BatchResult> consumer) throws IOException {
+        if (batch.getResultsUrl() == null) {
+            throw new IOException("Batch " + batch.getId() + " has no results yet");
+        }
+        return await(executeAsync(batch.getResultsUrl(), null, false, response -> {
+            BufferedSource source = response.body().source();
+            long count = 0;
+            try {
+                String line;
+                while ((line = source.readUtf8Line()) != null) {
+                    if (line.isBlank()) {
+                        continue;
                     }
-                    
-                    return gson.fromJson(responseBody, ClaudeResponse.class);
+                    BatchResult result = gson.fromJson(line, BatchResult.class);
+                    if (result.isSucceeded()) {
+                        recordUsage(result.getMessage());
+                    }
+                    consumer.accept(result);
+                    count++;
                 }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-				throw new IOException("Request interrupted during retry delay", e);
-            } catch (Exception e) {
-                log("The following json was not parsed.: "+ gson.toJson(responseBody));
-
-            	if (retryCount < MAX_RETRIES && (e instanceof IOException || e instanceof ClaudeException)) {
-                    long retryDelay = getRetryDelay(retryCount, null);
-                    log("Request failed, retrying in " + retryDelay + "ms (attempt " + (retryCount + 1) + " of " + MAX_RETRIES + ")");
-                    try {
-                        Thread.sleep(retryDelay);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        throw new IOException("Request interrupted during retry delay", ie);
+                return count;
+            } catch (IOException | RuntimeException e) {
+                if (count > 0) {
+                    throw new StreamInterruptedException("Batch results failed after " + count + " results: " + e.getMessage(), e);
+                }
+                throw e;
+            }
+        }));
+    }
+
+    private String getBatchesUrl() {
+        return baseUrl + "/batches";
+    }
+
+    private MessageBatch parseBatch(Response response) throws IOException {
+        String responseBody = response.body().string();
+        logResponse(response, responseBody);
+        return gson.fromJson(responseBody, MessageBatch.class);
+    }
+
+    private Map<String, Object> createRequestBody(List<Message> messages) {
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("model", model);
+        requestBody.put("max_tokens", maxTokens);
+        requestBody.put("temperature", temperature);
+        requestBody.put("messages", messages);
+        return requestBody;
+    }
+
+    /**
+     * Waits for an asynchronous call and unwraps its failure.
+     *
+     * @param future The future returned by one of the asynchronous methods, or derived from them
+     * @param <T> The result type
+     * @return The result
+     * @throws IOException If the call failed or the wait was interrupted
+     */
+    public static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the Claude API");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException("Claude API call failed", cause);
+        }
+    }
+
+    private CompletableFuture<ClaudeResponse> executeAsync(Map<String, Object> requestBody, ResponseHandler<ClaudeResponse> handler) {
+        return executeAsync(baseUrl, gson.toJson(requestBody), true, handler);
+    }
+
+    private <T> CompletableFuture<T> executeAsync(String url, String requestJson, boolean rateLimited, ResponseHandler<T> handler) {
+        RetryingCall<T> call = new RetryingCall<>(url, requestJson, rateLimited, handler);
+        call.start();
+        return call.result;
+    }
+
+    /**
+     * One logical API call, retried until it succeeds, fails permanently or its deadline
+     * budget runs out. Each Messages API attempt waits for a rate limiter permit and is sent
+     * with {@link Call#enqueue}; backoff delays are handled by the retry scheduler, so
+     * nothing blocks between attempts. Message Batches calls have their own limits and
+     * bypass the limiter.
+     */
+    private class RetryingCall<T> {
+        private final String url;
+        // Null for GET requests
+        private final String requestJson;
+        private final boolean rateLimited;
+        private final ResponseHandler<T> handler;
+        private final long deadlineNanos;
+        // Rough token estimate used to pace requests against the input token limit
+        private final long estimatedInputTokens;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final long startNanos = System.nanoTime();
+        private volatile Call currentCall;
+        private int retryCount;
+
+        RetryingCall(String url, String requestJson, boolean rateLimited, ResponseHandler<T> handler) {
+            this.url = url;
+            this.requestJson = requestJson;
+            this.rateLimited = rateLimited;
+            this.handler = handler;
+            this.deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(retryBudgetSeconds);
+            this.estimatedInputTokens = requestJson != null ? requestJson.length() / 4 : 0;
+            callMetrics.inFlight.incrementAndGet();
+            result.whenComplete((response, error) -> {
+                Call call = currentCall;
+                if (result.isCancelled() && call != null) {
+                    call.cancel();
+                }
+                callMetrics.inFlight.decrementAndGet();
+                callMetrics.recordLatency(getEndpoint(), result.isCancelled() ? "cancelled" : error != null ? "error" : "success",
+                    System.nanoTime() - startNanos);
+            });
+        }
+
+        void start() {
+            if (result.isDone()) {
+                return;
+            }
+            if (!rateLimited) {
+                send(null);
+                return;
+            }
+            // Wait for our turn instead of discovering the rate limit through a 429
+            rateLimiter.acquireAsync(estimatedInputTokens).whenComplete((permit, error) -> {
+                if (error != null) {
+                    fail(new IOException("Unable to acquire a rate limiter permit", error));
+                } else if (result.isDone()) {
+                    permit.release();
+                } else {
+                    send(permit);
+                }
+            });
+        }
+
+        /**
+         * Sends one attempt.
+         *
+         * @param permit The rate limiter permit, or null for calls that bypass the limiter
+         */
+        private void send(RateLimiter.Permit permit) {
+            Request.Builder builder = new Request.Builder()
+                .url(url)
+                .addHeader("x-api-key", apiKey)
+                .addHeader("anthropic-version", "2023-06-01")
+                .addHeader("anthropic-beta", "output-128k-2025-02-19");
+            if (requestJson != null) {
+                builder.post(RequestBody.create(requestJson, JSON))
+                    .addHeader("content-type", "application/json");
+            }
+            Request request = builder.build();
+
+            logRequest(request);
+
+            Call call = httpClient.newCall(request);
+            currentCall = call;
+            long attemptStart = System.nanoTime();
+            call.enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    if (permit != null) {
+                        permit.release();
                     }
+                    retryOrFail(e, getRetryDelay(retryCount, null), "network");
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    callMetrics.recordTimeToFirstByte(getEndpoint(), System.nanoTime() - attemptStart);
+                    callMetrics.recordResponse(response.code());
+                    try (response) {
+                        if (permit != null) {
+                            permit.onResponse(response.code(), response.headers());
+                        }
+                        if (response.isSuccessful()) {
+                            result.complete(handler.handle(response));
+                        } else {
+                            handleError(response);
+                        }
+                    } catch (StreamInterruptedException e) {
+                        fail(e);
+                    } catch (IOException e) {
+                        retryOrFail(e, getRetryDelay(retryCount, null), "network");
+                    } catch (RuntimeException e) {
+                        fail(e);
+                    } finally {
+                        if (permit != null) {
+                            permit.release();
+                        }
+                    }
+                }
+            });
+        }
+
+        private void handleError(Response response) throws IOException {
+            String responseBody = response.body().string();
+            logResponse(response, responseBody);
+            ClaudeResponse errorResponse;
+            try {
+                errorResponse = gson.fromJson(responseBody, ClaudeResponse.class);
+            } catch (JsonSyntaxException e) {
+                errorResponse = null;
+            }
+
+            IOException error;
+            if (errorResponse != null && errorResponse.getError() != null) {
+                error = new ClaudeException(
+                    errorResponse.getError().getMessage(),
+                    errorResponse.getError().getType(),
+                    response.code()
+                );
+            } else {
+                error = new IOException("API call failed: " + response.code() +
+                    " - " + response.message() + "\nBody: " + abbreviate(responseBody));
+            }
+
+            long retryDelay = getRetryDelay(retryCount, response);
+            if (!rateLimited && response.code() == 429) {
+                retryOrFail(error, retryDelay, "rate_limit");
+            } else if (rateLimited && isRateLimitError(response, errorResponse)) {
+                if (withinBudget(retryDelay)) {
+                    // Pause the shared limiter so every caller backs off together,
+                    // then queue for a new permit; the limiter wakes us when the pause ends
+                    LOG.info("Rate limit exceeded, retrying in {}ms (attempt {})", retryDelay, retryCount + 1);
+                    rateLimiter.pause(retryDelay);
+                    callMetrics.recordRetry("rate_limit");
                     retryCount++;
+                    start();
+                    return;
+                }
+                fail(error);
+            } else if (isRetryableStatus(response.code())) {
+                retryOrFail(error, retryDelay, "server_error");
+            } else {
+                fail(error);
+            }
+        }
+
+        private void retryOrFail(Exception error, long retryDelay, String cause) {
+            if (result.isDone()) {
+                return;
+            }
+            if (!withinBudget(retryDelay)) {
+                fail(error);
+                return;
+            }
+            callMetrics.recordRetry(cause);
+            LOG.info("Request failed ({}), retrying in {}ms (attempt {})", error.getMessage(), retryDelay, retryCount + 1);
+            retryCount++;
+            try {
+                RETRY_SCHEDULER.schedule(this::start, retryDelay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // The client has been shut down
+                fail(error);
+            }
+        }
+
+        private String getEndpoint() {
+            return rateLimited ? "messages" : "batches";
+        }
+
+        private boolean withinBudget(long retryDelayMillis) {
+            return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryDelayMillis) < deadlineNanos;
+        }
+
+        private void fail(Exception error) {
+            if (error instanceof StreamInterruptedException) {
+                logError("Streamed response from Claude API was interrupted", error);
+            } else {
+                logError("Error sending messages to Claude API", error);
+            }
+            result.completeExceptionally(error);
+        }
+    }
+
+    /**
+     * Reads a Messages API event stream and assembles the final response.
+     * Only the event currently being parsed and the text generated so far are held in memory.
+     */
+    private ClaudeResponse readEventStream(BufferedSource source, StreamListener listener) throws IOException {
+        ClaudeResponse result = new ClaudeResponse();
+        List<ContentBlock> blocks = new ArrayList<>();
+        result.setContent(blocks);
+
+        String blockType = null;
+        StringBuilder blockText = null;
+        boolean textDelivered = false;
+        boolean retainText = listener.retainText();
+
+        String eventName = null;
+        StringBuilder data = new StringBuilder();
+        try {
+            String line;
+            while ((line = source.readUtf8Line()) != null) {
+                if (line.startsWith("event:")) {
+                    eventName = line.substring(6).trim();
                     continue;
                 }
-                logError("Error sending messages to Claude API", e);
-                throw e;
+                if (line.startsWith("data:")) {
+                    if (data.length() > 0) {
+                        data.append('\n');
+                    }
+                    data.append(line.substring(5).trim());
+                    continue;
+                }
+                if (!line.isEmpty() || data.length() == 0) {
+                    // Comments, unknown fields and blank keep-alive lines
+                    continue;
+                }
+
+                JsonObject event = JsonParser.parseString(data.toString()).getAsJsonObject();
+                data.setLength(0);
+                String type = eventName != null ? eventName : getString(event, "type");
+                eventName = null;
+
+                switch (type) {
+                    case "message_start": {
+                        JsonObject message = event.getAsJsonObject("message");
+                        result.setId(getString(message, "id"));
+                        result.setType(getString(message, "type"));
+                        result.setRole(getString(message, "role"));
+                        result.setModel(getString(message, "model"));
+                        if (message != null && message.has("usage")) {
+                            result.setUsage(gson.fromJson(message.get("usage"), Usage.class));
+                        }
+                        break;
+                    }
+                    case "content_block_start": {
+                        JsonObject block = event.getAsJsonObject("content_block");
+                        blockType = getString(block, "type");
+                        blockText = new StringBuilder();
+                        String initialText = getString(block, "text");
+                        if (initialText != null && !initialText.isEmpty()) {
+                            if (retainText) {
+                                blockText.append(initialText);
+                            }
+                            listener.onText(initialText);
+                            textDelivered = true;
+                        }
+                        break;
+                    }
+                    case "content_block_delta": {
+                        JsonObject delta = event.getAsJsonObject("delta");
+                        if ("text_delta".equals(getString(delta, "type"))) {
+                            String text = getString(delta, "text");
+                            if (text != null && blockText != null) {
+                                if (retainText) {
+                                    blockText.append(text);
+                                }
+                                listener.onText(text);
+                                textDelivered = true;
+                            }
+                        }
+                        break;
+                    }
+                    case "content_block_stop":
+                        if (blockText != null) {
+                            blocks.add(new ContentBlock(blockType, blockText.toString()));
+                        }
+                        blockType = null;
+                        blockText = null;
+                        break;
+                    case "message_delta": {
+                        JsonObject delta = event.getAsJsonObject("delta");
+                        if (delta != null && getString(delta, "stop_reason") != null) {
+                            result.setStopReason(getString(delta, "stop_reason"));
+                        }
+                        // The output token count here is cumulative for the whole message
+                        JsonObject usage = event.getAsJsonObject("usage");
+                        String outputTokens = getString(usage, "output_tokens");
+                        if (outputTokens != null) {
+                            if (result.getUsage() == null) {
+                                result.setUsage(new Usage());
+                            }
+                            result.getUsage().setOutputTokens(Long.parseLong(outputTokens));
+                        }
+                        break;
+                    }
+                    case "message_stop":
+                        log("Streamed response complete, stop reason: {}", result.getStopReason());
+                        return result;
+                    case "error": {
+                        JsonObject error = event.getAsJsonObject("error");
+                        throw new ClaudeException(getString(error, "message"), getString(error, "type"), 200);
+                    }
+                    default:
+                        // ping and any event types added to the API later
+                        break;
+                }
+            }
+            throw new IOException("Event stream ended before message_stop");
+        } catch (IOException | RuntimeException e) {
+            if (textDelivered) {
+                throw new StreamInterruptedException("Streamed response failed after output was delivered: " + e.getMessage(), e);
             }
+            throw e;
         }
     }
 
+    private static String getString(JsonObject object, String member) {
+        if (object == null) {
+            return null;
+        }
+        JsonElement element = object.get(member);
+        return element != null && !element.isJsonNull() ? element.getAsString() : null;
+    }
+
     public static class Builder {
         private String apiKey = AIConfig.getClaudeApiKey();
         private String model = DEFAULT_MODEL;
@@ -353,7 +1577,14 @@ public class ClaudeClient {
         private int connectTimeout = 18000;
         private int readTimeout = 18000;
         private int writeTimeout = 18000;
-        private boolean debugMode = true;
+        private boolean debugMode = false;
+        private int logBodyMaxChars = AIConfig.getIntSetting("CLAUDE_LOG_BODY_MAX_CHARS", 2000);
+        private HttpTransport transport;
+        private RateLimiter rateLimiter;
+        private int retryBudgetSeconds = 600;
+        private String baseUrl = AIConfig.getSetting("CLAUDE_BASE_URL", BASE_URL);
+        private MetricsRegistry metricsRegistry;
+        private String callSite = "default";
 
         public Builder withModel(String model) {
             this.model = model;
@@ -390,11 +1621,78 @@ public class ClaudeClient {
             return this;
         }
 
+        /**
+         * Logs this client's request, response and usage messages at INFO level instead of
+         * DEBUG, so they appear without changing the logging configuration.
+         */
         public Builder withDebugMode(boolean debugMode) {
             this.debugMode = debugMode;
             return this;
         }
 
+        /**
+         * Sets the longest response body written to the log; longer bodies are shortened
+         * in the middle (default {@code CLAUDE_LOG_BODY_MAX_CHARS}, 2000).
+         */
+        public Builder withLogBodyMaxChars(int logBodyMaxChars) {
+            this.logBodyMaxChars = logBodyMaxChars;
+            return this;
+        }
+
+        /**
+         * Attaches the client to a specific transport instead of the process-wide
+         * {@link HttpTransport#getShared() shared} one.
+         */
+        public Builder withTransport(HttpTransport transport) {
+            this.transport = transport;
+            return this;
+        }
+
+        /**
+         * Uses a specific rate limiter instead of the process-wide
+         * {@link RateLimiter#getShared() shared} one.
+         */
+        public Builder withRateLimiter(RateLimiter rateLimiter) {
+            this.rateLimiter = rateLimiter;
+            return this;
+        }
+
+        /**
+         * Sets the total time a call may spend retrying before it fails,
+         * measured from the first attempt.
+         */
+        public Builder withRetryBudget(int seconds) {
+            this.retryBudgetSeconds = seconds;
+            return this;
+        }
+
+        /**
+         * Overrides the Messages API endpoint, for example to route through a proxy or a local stub.
+         */
+        public Builder withBaseUrl(String baseUrl) {
+            this.baseUrl = baseUrl;
+            return this;
+        }
+
+        /**
+         * Records metrics in a specific registry instead of the process-wide
+         * {@link Metrics#getRegistry() default} one.
+         */
+        public Builder withMetricsRegistry(MetricsRegistry metricsRegistry) {
+            this.metricsRegistry = metricsRegistry;
+            return this;
+        }
+
+        /**
+         * Sets the call site that metrics are tagged with (default {@code default}).
+         *
+         * @see ClaudeClient#withCallSite(String)
+         */
+        public Builder withCallSite(String callSite) {
+            this.callSite = callSite;
+            return this;
+        }
+
         public ClaudeClient build() {
             if (apiKey == null || apiKey.trim().isEmpty()) {
                 throw new IllegalArgumentException("API key must be provided");
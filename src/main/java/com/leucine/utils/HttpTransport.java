@@ -0,0 +1,268 @@
+package com.leucine.utils;
+
+import com.leucine.config.AIConfig;
+import com.leucine.config.ExecutionMode;
+import com.leucine.metrics.Metrics;
+import com.leucine.metrics.MetricsRegistry;
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.EventListener;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide HTTP transport shared by all {@link ClaudeClient} instances.
+ * Owns a single OkHttp {@link ConnectionPool} and {@link Dispatcher}, so every client
+ * reuses the same connections, TLS sessions and HTTP/2 multiplexed streams instead of
+ * each building its own pool and thread pool. Clients derive their own
+ * {@link OkHttpClient} with per-client timeouts through {@link #newClient(int, int, int)}.
+ *
+ * <p>The shared instance is configured from the following settings (see {@link AIConfig#getSetting}):</p>
+ * <ul>
+ *   <li>{@code CLAUDE_HTTP_MAX_IDLE_CONNECTIONS} (default 16)</li>
+ *   <li>{@code CLAUDE_HTTP_KEEP_ALIVE_SECONDS} (default 300)</li>
+ *   <li>{@code CLAUDE_HTTP_MAX_REQUESTS} (default 128)</li>
+ *   <li>{@code CLAUDE_HTTP_MAX_REQUESTS_PER_HOST} (default 64)</li>
+ *   <li>{@code CLAUDE_HTTP2_ENABLED} (default true)</li>
+ *   <li>{@code WIZARD_EXECUTION_MODE} - {@code platform} or {@code virtual} dispatcher threads</li>
+ * </ul>
+ */
+public class HttpTransport {
+
+    private static volatile HttpTransport shared;
+
+    private final OkHttpClient client;
+    private final ConnectionPool connectionPool;
+    private final Dispatcher dispatcher;
+    private final AtomicLong poolHits = new AtomicLong();
+    private final AtomicLong poolMisses = new AtomicLong();
+
+    private HttpTransport(Builder builder) {
+        this.connectionPool = new ConnectionPool(builder.maxIdleConnections, builder.keepAliveSeconds, TimeUnit.SECONDS);
+        // In virtual mode asynchronous calls (and streamed bodies read in their callbacks)
+        // run on virtual threads instead of the dispatcher's platform thread pool
+        this.dispatcher = builder.executionMode == ExecutionMode.VIRTUAL
+            ? new Dispatcher(TaskExecutors.newTaskExecutor(ExecutionMode.VIRTUAL, "okhttp-dispatcher"))
+            : new Dispatcher();
+        this.dispatcher.setMaxRequests(builder.maxRequests);
+        this.dispatcher.setMaxRequestsPerHost(builder.maxRequestsPerHost);
+        this.client = new OkHttpClient.Builder()
+            .connectionPool(connectionPool)
+            .dispatcher(dispatcher)
+            .protocols(builder.http2
+                ? Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1)
+                : Arrays.asList(Protocol.HTTP_1_1))
+            .eventListenerFactory(call -> new PoolUsageListener())
+            .build();
+    }
+
+    /**
+     * Gets the process-wide transport, creating it from configuration on first use.
+     *
+     * @return The shared transport
+     */
+    public static HttpTransport getShared() {
+        HttpTransport transport = shared;
+        if (transport == null) {
+            synchronized (HttpTransport.class) {
+                transport = shared;
+                if (transport == null) {
+                    transport = new Builder()
+                        .withMaxIdleConnections(AIConfig.getIntSetting("CLAUDE_HTTP_MAX_IDLE_CONNECTIONS", 16))
+                        .withKeepAlive(AIConfig.getLongSetting("CLAUDE_HTTP_KEEP_ALIVE_SECONDS", 300))
+                        .withMaxRequests(AIConfig.getIntSetting("CLAUDE_HTTP_MAX_REQUESTS", 128))
+                        .withMaxRequestsPerHost(AIConfig.getIntSetting("CLAUDE_HTTP_MAX_REQUESTS_PER_HOST", 64))
+                        .withHttp2(AIConfig.getBooleanSetting("CLAUDE_HTTP2_ENABLED", true))
+                        .withExecutionMode(ExecutionMode.fromSettings())
+                        .build();
+                    transport.registerMetrics(Metrics.getRegistry(), "shared");
+                    shared = transport;
+                }
+            }
+        }
+        return transport;
+    }
+
+    /**
+     * Closes the process-wide transport, if one has been created. The next call to
+     * {@link #getShared()} creates a new one.
+     */
+    public static synchronized void closeShared() {
+        HttpTransport transport = shared;
+        if (transport != null) {
+            transport.close();
+            shared = null;
+        }
+    }
+
+    /**
+     * Publishes the connection pool and dispatcher state of this transport as gauges tagged
+     * with {@code transport=name}.
+     *
+     * @param registry The registry to publish to
+     * @param name The name of this transport
+     */
+    public void registerMetrics(MetricsRegistry registry, String name) {
+        registry.gauge("claude.http.connections", this::getConnectionCount, "transport", name);
+        registry.gauge("claude.http.idle_connections", this::getIdleConnectionCount, "transport", name);
+        registry.gauge("claude.http.running_calls", this::getRunningCallsCount, "transport", name);
+        registry.gauge("claude.http.queued_calls", this::getQueuedCallsCount, "transport", name);
+        registry.gauge("claude.http.pool_hits", this::getPoolHits, "transport", name);
+        registry.gauge("claude.http.pool_misses", this::getPoolMisses, "transport", name);
+    }
+
+    /**
+     * Creates an OkHttpClient that shares this transport's connection pool and
+     * dispatcher but uses its own timeouts.
+     *
+     * @param connectTimeout The connect timeout in seconds
+     * @param readTimeout The read timeout in seconds
+     * @param writeTimeout The write timeout in seconds
+     * @return A client bound to this transport
+     */
+    public OkHttpClient newClient(int connectTimeout, int readTimeout, int writeTimeout) {
+        return client.newBuilder()
+            .connectTimeout(connectTimeout, TimeUnit.SECONDS)
+            .readTimeout(readTimeout, TimeUnit.SECONDS)
+            .writeTimeout(writeTimeout, TimeUnit.SECONDS)
+            .build();
+    }
+
+    /**
+     * Cancels the calls of every client bound to this transport, stops the dispatcher's
+     * threads and closes the pooled connections. Clients bound to it can no longer make calls.
+     */
+    public void close() {
+        dispatcher.cancelAll();
+        dispatcher.executorService().shutdown();
+        connectionPool.evictAll();
+    }
+
+    /**
+     * Gets the number of calls that reused a pooled connection.
+     *
+     * @return The number of pool hits
+     */
+    public long getPoolHits() {
+        return poolHits.get();
+    }
+
+    /**
+     * Gets the number of calls that had to open a new connection.
+     *
+     * @return The number of pool misses
+     */
+    public long getPoolMisses() {
+        return poolMisses.get();
+    }
+
+    /**
+     * Gets the total number of connections in the pool.
+     *
+     * @return The connection count
+     */
+    public int getConnectionCount() {
+        return connectionPool.connectionCount();
+    }
+
+    /**
+     * Gets the number of idle connections in the pool.
+     *
+     * @return The idle connection count
+     */
+    public int getIdleConnectionCount() {
+        return connectionPool.idleConnectionCount();
+    }
+
+    /**
+     * Gets the number of calls currently executing.
+     *
+     * @return The running call count
+     */
+    public int getRunningCallsCount() {
+        return dispatcher.runningCallsCount();
+    }
+
+    /**
+     * Gets the number of asynchronous calls waiting for the dispatcher.
+     *
+     * @return The queued call count
+     */
+    public int getQueuedCallsCount() {
+        return dispatcher.queuedCallsCount();
+    }
+
+    /**
+     * Classifies each connection acquisition as a pool hit or miss.
+     * A new listener is created per call, so the flag is never shared between calls.
+     */
+    private class PoolUsageListener extends EventListener {
+        private boolean connected;
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+            connected = true;
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            if (connected) {
+                poolMisses.incrementAndGet();
+            } else {
+                poolHits.incrementAndGet();
+            }
+            connected = false;
+        }
+    }
+
+    public static class Builder {
+        private int maxIdleConnections = 16;
+        private long keepAliveSeconds = 300;
+        private int maxRequests = 128;
+        private int maxRequestsPerHost = 64;
+        private boolean http2 = true;
+        private ExecutionMode executionMode = ExecutionMode.PLATFORM;
+
+        public Builder withMaxIdleConnections(int maxIdleConnections) {
+            this.maxIdleConnections = maxIdleConnections;
+            return this;
+        }
+
+        public Builder withKeepAlive(long seconds) {
+            this.keepAliveSeconds = seconds;
+            return this;
+        }
+
+        public Builder withMaxRequests(int maxRequests) {
+            this.maxRequests = maxRequests;
+            return this;
+        }
+
+        public Builder withMaxRequestsPerHost(int maxRequestsPerHost) {
+            this.maxRequestsPerHost = maxRequestsPerHost;
+            return this;
+        }
+
+        public Builder withHttp2(boolean http2) {
+            this.http2 = http2;
+            return this;
+        }
+
+        public Builder withExecutionMode(ExecutionMode executionMode) {
+            this.executionMode = executionMode;
+            return this;
+        }
+
+        public HttpTransport build() {
+            return new HttpTransport(this);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.leucine.utils;
+
+import java.util.UUID;
+
+/**
+ * Generates ids for agents, goals, subgoals, actions and wizard sessions.
+ *
+ * <p>Implementations must be thread-safe. {@link Ids} holds the generators in use.</p>
+ */
+public interface IdGenerator {
+
+    /**
+     * Generates version 4 UUIDs with {@link UUID#randomUUID()}, which draws every id from
+     * one shared {@code SecureRandom}.
+     */
+    IdGenerator RANDOM_UUID = () -> UUID.randomUUID().toString();
+
+    /**
+     * Generates a new id.
+     *
+     * @return The id
+     */
+    String newId();
+}
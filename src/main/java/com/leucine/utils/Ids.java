@@ -0,0 +1,86 @@
+package com.leucine.utils;
+
+import com.leucine.config.AIConfig;
+
+/**
+ * Holds the process-wide {@link IdGenerator}s: one for agents, goals, subgoals and actions,
+ * and one for wizard session ids, which act as the only credential for a session and so
+ * must not be guessable.
+ *
+ * <p>The setting {@code ID_GENERATOR} chooses the default for model ids: {@code time-ordered}
+ * (the default) uses a {@link TimeOrderedIdGenerator} and {@code random} uses
+ * {@link IdGenerator#RANDOM_UUID}. Session ids always default to
+ * {@link IdGenerator#RANDOM_UUID}, with 122 random bits and nothing that reveals when the
+ * session was created. Either generator can be replaced at startup with
+ * {@link #setGenerator} and {@link #setSessionGenerator}.</p>
+ */
+public final class Ids {
+
+    private static volatile IdGenerator generator;
+    private static volatile IdGenerator sessionGenerator = IdGenerator.RANDOM_UUID;
+
+    private Ids() {
+    }
+
+    /**
+     * Generates an id for an agent, goal, subgoal or action.
+     *
+     * @return The id
+     */
+    public static String newId() {
+        IdGenerator current = generator;
+        if (current == null) {
+            synchronized (Ids.class) {
+                if (generator == null) {
+                    generator = timeOrdered() ? new TimeOrderedIdGenerator() : IdGenerator.RANDOM_UUID;
+                }
+                current = generator;
+            }
+        }
+        return current.newId();
+    }
+
+    /**
+     * Generates an id for a wizard session.
+     *
+     * @return The id
+     */
+    public static String newSessionId() {
+        return sessionGenerator.newId();
+    }
+
+    /**
+     * Replaces the generator for agent, goal, subgoal and action ids.
+     *
+     * @param generator The new generator
+     */
+    public static void setGenerator(IdGenerator generator) {
+        if (generator == null) {
+            throw new IllegalArgumentException("generator must not be null");
+        }
+        Ids.generator = generator;
+    }
+
+    /**
+     * Replaces the generator for wizard session ids.
+     *
+     * @param generator The new generator
+     */
+    public static void setSessionGenerator(IdGenerator generator) {
+        if (generator == null) {
+            throw new IllegalArgumentException("generator must not be null");
+        }
+        Ids.sessionGenerator = generator;
+    }
+
+    private static boolean timeOrdered() {
+        String value = AIConfig.getSetting("ID_GENERATOR", "time-ordered");
+        if ("time-ordered".equalsIgnoreCase(value)) {
+            return true;
+        }
+        if ("random".equalsIgnoreCase(value)) {
+            return false;
+        }
+        throw new IllegalStateException("ID_GENERATOR must be time-ordered or random, not " + value);
+    }
+}
@@ -0,0 +1,459 @@
+package com.leucine.utils;
+
+import com.leucine.config.AIConfig;
+import com.leucine.metrics.Metrics;
+import com.leucine.metrics.MetricsRegistry;
+import okhttp3.Headers;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client-side limiter shared by all {@link ClaudeClient} instances that use the same API key.
+ * Callers acquire a {@link Permit} before each request and report the response back to it,
+ * so the limiter can stay ahead of the API's limits instead of reacting to 429s:
+ *
+ * <ul>
+ *   <li>Token buckets for requests, input tokens and output tokens are synchronized from the
+ *       {@code anthropic-ratelimit-*} response headers and refill continuously over a minute.</li>
+ *   <li>The number of concurrent requests adapts AIMD-style: it grows by roughly one per
+ *       round of successful requests and halves on every rate limit response.</li>
+ *   <li>Rate limit responses pause the whole limiter until the API's {@code retry-after}.</li>
+ *   <li>Waiting callers are served strictly in arrival order, so no caller can starve another
+ *       by retrying more aggressively.</li>
+ * </ul>
+ *
+ * <p>Until the first response headers arrive the buckets are unbounded and only the
+ * concurrency limit applies.</p>
+ */
+public class RateLimiter {
+
+    private static final long MINUTE_NANOS = TimeUnit.MINUTES.toNanos(1);
+    // The default asyncMaxConcurrent of the servlets' request executors
+    private static final int DEFAULT_CONCURRENT_DECOMPOSITIONS = 16;
+
+    private static volatile RateLimiter shared;
+
+    private final int maxConcurrency;
+    private final ScheduledExecutorService scheduler;
+    private final Deque<Waiter> waiters = new ArrayDeque<>();
+
+    private final Bucket requests = new Bucket();
+    private final Bucket inputTokens = new Bucket();
+    private final Bucket outputTokens = new Bucket();
+
+    private double concurrencyLimit;
+    private int inFlight;
+    private long pausedUntilNanos;
+    private ScheduledFuture<?> scheduledDrain;
+    private long scheduledDrainAt;
+    private boolean closed;
+
+    private final AtomicLong granted = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+
+    /**
+     * A token bucket whose capacity and refill rate are learned from response headers.
+     */
+    private static class Bucket {
+        double capacity = Double.POSITIVE_INFINITY;
+        double tokens = Double.POSITIVE_INFINITY;
+        double refillPerNano;
+        long updatedAt = System.nanoTime();
+
+        void refill(long now) {
+            if (!Double.isInfinite(capacity)) {
+                tokens = Math.min(capacity, tokens + (now - updatedAt) * refillPerNano);
+            }
+            updatedAt = now;
+        }
+
+        long nanosUntil(double amount, long now) {
+            refill(now);
+            // Requests larger than the whole bucket are allowed once it is full
+            double needed = Math.min(amount, capacity);
+            if (tokens >= needed) {
+                return 0;
+            }
+            if (refillPerNano <= 0) {
+                return MINUTE_NANOS;
+            }
+            return (long) Math.ceil((needed - tokens) / refillPerNano);
+        }
+
+        void take(double amount) {
+            if (!Double.isInfinite(capacity)) {
+                tokens -= Math.min(amount, capacity);
+            }
+        }
+
+        void sync(String limit, String remaining, long now) {
+            try {
+                if (limit != null) {
+                    refill(now);
+                    capacity = Double.parseDouble(limit);
+                    refillPerNano = capacity / MINUTE_NANOS;
+                }
+                if (remaining != null && !Double.isInfinite(capacity)) {
+                    tokens = Math.min(capacity, Double.parseDouble(remaining));
+                    updatedAt = now;
+                }
+            } catch (NumberFormatException e) {
+                // Ignore malformed headers and keep the previous state
+            }
+        }
+    }
+
+    /**
+     * A caller waiting for a permit.
+     */
+    private static class Waiter {
+        final long inputTokens;
+        final CompletableFuture<Permit> future = new CompletableFuture<>();
+
+        Waiter(long inputTokens) {
+            this.inputTokens = inputTokens;
+        }
+    }
+
+    /**
+     * Permission to send one request. Report the response with {@link #onResponse}
+     * and always {@link #release()} the permit when the request is finished.
+     */
+    public class Permit {
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        private Permit() {}
+
+        /**
+         * Updates the limiter from a response. Rate limit headers resynchronize the token
+         * buckets; a 429 halves the concurrency limit while any other response grows it.
+         *
+         * @param statusCode The HTTP status code
+         * @param headers The response headers
+         */
+        public void onResponse(int statusCode, Headers headers) {
+            RateLimiter.this.onResponse(statusCode, headers);
+        }
+
+        /**
+         * Returns the permit so the next waiting caller can proceed. Safe to call more than once.
+         */
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                RateLimiter.this.release();
+            }
+        }
+    }
+
+    /**
+     * Creates a new limiter.
+     *
+     * @param maxConcurrency The upper bound for the adaptive concurrency limit
+     */
+    public RateLimiter(int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be at least 1");
+        }
+        this.maxConcurrency = maxConcurrency;
+        this.concurrencyLimit = maxConcurrency;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "claude-rate-limiter");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Gets the process-wide limiter. Its concurrency bound is {@code CLAUDE_MAX_CONCURRENCY},
+     * which defaults to 16 concurrent decompositions, the default {@code asyncMaxConcurrent},
+     * times {@code DECOMPOSITION_PARALLELISM} (default 4) calls each. A lower bound would
+     * queue calls that the request executors already admitted, and the adaptive limit can
+     * only shrink below the bound, never grow past it.
+     *
+     * @return The shared limiter
+     */
+    public static RateLimiter getShared() {
+        RateLimiter limiter = shared;
+        if (limiter == null) {
+            synchronized (RateLimiter.class) {
+                limiter = shared;
+                if (limiter == null) {
+                    int defaultConcurrency = DEFAULT_CONCURRENT_DECOMPOSITIONS
+                        * Math.max(1, AIConfig.getIntSetting("DECOMPOSITION_PARALLELISM", 4));
+                    limiter = new RateLimiter(AIConfig.getIntSetting("CLAUDE_MAX_CONCURRENCY", defaultConcurrency));
+                    limiter.registerMetrics(Metrics.getRegistry(), "shared");
+                    shared = limiter;
+                }
+            }
+        }
+        return limiter;
+    }
+
+    /**
+     * Closes the process-wide limiter, if one has been created. The next call to
+     * {@link #getShared()} creates a new one.
+     */
+    public static synchronized void closeShared() {
+        RateLimiter limiter = shared;
+        if (limiter != null) {
+            limiter.close();
+            shared = null;
+        }
+    }
+
+    /**
+     * Publishes the state of this limiter as gauges tagged with {@code limiter=name}.
+     *
+     * @param registry The registry to publish to
+     * @param name The name of this limiter
+     */
+    public void registerMetrics(MetricsRegistry registry, String name) {
+        registry.gauge("claude.limiter.concurrency_limit", this::getConcurrencyLimit, "limiter", name);
+        registry.gauge("claude.limiter.in_flight", this::getInFlight, "limiter", name);
+        registry.gauge("claude.limiter.queue_length", this::getQueueLength, "limiter", name);
+        registry.gauge("claude.limiter.granted", this::getGrantedCount, "limiter", name);
+        registry.gauge("claude.limiter.throttled", this::getThrottledCount, "limiter", name);
+    }
+
+    /**
+     * Requests a permit without blocking. The returned future completes once the caller
+     * reaches the head of the queue and capacity is available.
+     *
+     * @param estimatedInputTokens The estimated number of input tokens the request will use
+     * @return A future that completes with the permit
+     */
+    public CompletableFuture<Permit> acquireAsync(long estimatedInputTokens) {
+        Waiter waiter = new Waiter(estimatedInputTokens);
+        synchronized (this) {
+            if (closed) {
+                waiter.future.completeExceptionally(new IllegalStateException("Rate limiter is closed"));
+                return waiter.future;
+            }
+            waiters.addLast(waiter);
+        }
+        drain();
+        return waiter.future;
+    }
+
+    /**
+     * Blocks until a permit is available.
+     *
+     * @param estimatedInputTokens The estimated number of input tokens the request will use
+     * @return The permit
+     * @throws InterruptedException If the thread is interrupted while waiting
+     */
+    public Permit acquire(long estimatedInputTokens) throws InterruptedException {
+        CompletableFuture<Permit> future = acquireAsync(estimatedInputTokens);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            if (!future.cancel(false)) {
+                // The permit was granted just as we were interrupted
+                future.join().release();
+            }
+            throw e;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Rate limiter failed", e.getCause());
+        }
+    }
+
+    /**
+     * Pauses all callers for at least the given delay, for example after a rate limit response.
+     *
+     * @param delayMillis The delay in milliseconds
+     */
+    public void pause(long delayMillis) {
+        synchronized (this) {
+            pausedUntilNanos = Math.max(pausedUntilNanos, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis));
+        }
+        drain();
+    }
+
+    /**
+     * Stops the thread that schedules delayed grants and fails every waiting caller.
+     * Permits already granted can still be released.
+     */
+    public void close() {
+        List<Waiter> pending;
+        synchronized (this) {
+            closed = true;
+            pending = new ArrayList<>(waiters);
+            waiters.clear();
+        }
+        scheduler.shutdownNow();
+        for (Waiter waiter : pending) {
+            waiter.future.completeExceptionally(new IllegalStateException("Rate limiter is closed"));
+        }
+    }
+
+    private void onResponse(int statusCode, Headers headers) {
+        long now = System.nanoTime();
+        synchronized (this) {
+            requests.sync(headers.get("anthropic-ratelimit-requests-limit"),
+                headers.get("anthropic-ratelimit-requests-remaining"), now);
+            inputTokens.sync(headers.get("anthropic-ratelimit-input-tokens-limit"),
+                headers.get("anthropic-ratelimit-input-tokens-remaining"), now);
+            outputTokens.sync(headers.get("anthropic-ratelimit-output-tokens-limit"),
+                headers.get("anthropic-ratelimit-output-tokens-remaining"), now);
+
+            if (statusCode == 429) {
+                throttled.incrementAndGet();
+                concurrencyLimit = Math.max(1, concurrencyLimit / 2);
+                long resetAt = latestReset(headers, now);
+                if (resetAt > now) {
+                    pausedUntilNanos = Math.max(pausedUntilNanos, resetAt);
+                }
+            } else if (statusCode < 500) {
+                concurrencyLimit = Math.min(maxConcurrency, concurrencyLimit + 1.0 / concurrencyLimit);
+            }
+        }
+        drain();
+    }
+
+    /**
+     * Finds when the exhausted limits reset, according to the reset headers.
+     */
+    private static long latestReset(Headers headers, long now) {
+        long latest = 0;
+        long wallNow = System.currentTimeMillis();
+        for (String name : new String[] {
+                "anthropic-ratelimit-requests-reset",
+                "anthropic-ratelimit-input-tokens-reset",
+                "anthropic-ratelimit-output-tokens-reset"}) {
+            String remaining = headers.get(name.replace("-reset", "-remaining"));
+            String reset = headers.get(name);
+            if (reset == null || (remaining != null && !"0".equals(remaining))) {
+                continue;
+            }
+            try {
+                long delayMillis = Instant.parse(reset).toEpochMilli() - wallNow;
+                latest = Math.max(latest, now + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis)));
+            } catch (DateTimeParseException e) {
+                // Ignore malformed headers
+            }
+        }
+        return latest;
+    }
+
+    private void release() {
+        synchronized (this) {
+            inFlight--;
+        }
+        drain();
+    }
+
+    /**
+     * Grants permits to waiting callers in arrival order while capacity allows. When the
+     * head of the queue has to wait for a bucket to refill or a pause to end, a drain is
+     * scheduled for that moment instead of polling.
+     */
+    private void drain() {
+        List<Waiter> ready = new ArrayList<>();
+        synchronized (this) {
+            long now = System.nanoTime();
+            while (!waiters.isEmpty()) {
+                Waiter head = waiters.peekFirst();
+                if (head.future.isDone()) {
+                    // Cancelled by an interrupted caller
+                    waiters.pollFirst();
+                    continue;
+                }
+                if (inFlight >= (int) concurrencyLimit) {
+                    break;
+                }
+                long waitNanos = Math.max(pausedUntilNanos - now, 0);
+                waitNanos = Math.max(waitNanos, requests.nanosUntil(1, now));
+                waitNanos = Math.max(waitNanos, inputTokens.nanosUntil(head.inputTokens, now));
+                waitNanos = Math.max(waitNanos, outputTokens.nanosUntil(1, now));
+                if (waitNanos > 0) {
+                    scheduleDrain(now + waitNanos);
+                    break;
+                }
+                waiters.pollFirst();
+                requests.take(1);
+                inputTokens.take(head.inputTokens);
+                inFlight++;
+                ready.add(head);
+            }
+        }
+        for (Waiter waiter : ready) {
+            if (!waiter.future.complete(new Permit())) {
+                release();
+            } else {
+                granted.incrementAndGet();
+            }
+        }
+    }
+
+    private void scheduleDrain(long at) {
+        if (closed) {
+            return;
+        }
+        if (scheduledDrain != null && !scheduledDrain.isDone() && scheduledDrainAt <= at) {
+            return;
+        }
+        if (scheduledDrain != null) {
+            scheduledDrain.cancel(false);
+        }
+        scheduledDrainAt = at;
+        scheduledDrain = scheduler.schedule(this::drain, Math.max(0, at - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Gets the current adaptive concurrency limit.
+     *
+     * @return The number of requests allowed in flight
+     */
+    public synchronized int getConcurrencyLimit() {
+        return (int) concurrencyLimit;
+    }
+
+    /**
+     * Gets the number of requests currently holding a permit.
+     *
+     * @return The in-flight count
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * Gets the number of callers waiting for a permit.
+     *
+     * @return The queue length
+     */
+    public synchronized int getQueueLength() {
+        return waiters.size();
+    }
+
+    /**
+     * Gets the number of permits granted so far.
+     *
+     * @return The granted count
+     */
+    public long getGrantedCount() {
+        return granted.get();
+    }
+
+    /**
+     * Gets the number of rate limit responses reported so far.
+     *
+     * @return The throttled count
+     */
+    public long getThrottledCount() {
+        return throttled.get();
+    }
+}
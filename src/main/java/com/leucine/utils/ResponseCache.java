@@ -0,0 +1,496 @@
+package com.leucine.utils;
+
+import com.leucine.config.AIConfig;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Content-addressed cache for Claude responses.
+ * Entries are keyed by a SHA-256 hash of the model, temperature and rendered prompt
+ * (see {@link #key(String, double, String)}), so identical requests can skip the API call.
+ *
+ * <p>The cache has two tiers:</p>
+ * <ul>
+ *   <li>An in-memory LRU tier bounded by the total number of cached characters.</li>
+ *   <li>An optional disk tier holding one file per key. Files are written once through an
+ *       atomic rename and survive restarts. Entries read from disk are promoted to memory.
+ *       The tier is bounded by its total size in bytes.</li>
+ * </ul>
+ * <p>Every entry expires after the configured time-to-live in both tiers. A background
+ * sweep, run on startup, periodically and whenever a write takes the disk tier past its
+ * bound, deletes expired files and abandoned temporary files, then deletes the least
+ * recently used files until the tier is within its bound.</p>
+ */
+public class ResponseCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ResponseCache.class);
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final String ENTRY_SUFFIX = ".entry";
+    private static final String TEMP_SUFFIX = ".tmp";
+    // A write renames its temporary file within moments; older ones were left by a failure
+    private static final long STALE_TEMP_MILLIS = 60_000;
+
+    private final long maxWeight;
+    private final long ttlMillis;
+    private final Path diskDirectory;
+    private final long maxDiskBytes;
+    private final ScheduledExecutorService diskSweeper;
+    private final AtomicBoolean diskSweepScheduled = new AtomicBoolean();
+    private final AtomicLong diskBytes = new AtomicLong();
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong diskEvictions = new AtomicLong();
+
+    private static class Entry {
+        final String value;
+        final long expiresAt;
+
+        Entry(String value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private ResponseCache(Builder builder) {
+        this.maxWeight = builder.maxWeight;
+        this.ttlMillis = builder.ttl.toMillis();
+        this.diskDirectory = builder.diskDirectory;
+        this.maxDiskBytes = builder.maxDiskBytes;
+        if (diskDirectory == null) {
+            this.diskSweeper = null;
+            return;
+        }
+        try {
+            Files.createDirectories(diskDirectory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to create cache directory " + diskDirectory, e);
+        }
+        this.diskSweeper = Executors.newSingleThreadScheduledExecutor(
+            TaskExecutors.daemonThreadFactory("response-cache-sweeper"));
+        long interval = builder.diskSweepInterval.toMillis();
+        diskSweeper.scheduleWithFixedDelay(this::sweepDisk, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates the standard procedure cache from configuration, or returns null when caching is disabled.
+     * Uses the settings {@code STANDARD_PROCEDURE_CACHE_ENABLED} (default true),
+     * {@code STANDARD_PROCEDURE_CACHE_MAX_CHARS} (default 8,000,000),
+     * {@code STANDARD_PROCEDURE_CACHE_TTL_HOURS} (default 24),
+     * {@code STANDARD_PROCEDURE_CACHE_DIR} (no disk tier when unset) and
+     * {@code STANDARD_PROCEDURE_CACHE_MAX_DISK_BYTES} (default 256 MiB).
+     *
+     * @return The configured cache, or null if disabled
+     */
+    public static ResponseCache forStandardProcedures() {
+        if (!AIConfig.getBooleanSetting("STANDARD_PROCEDURE_CACHE_ENABLED", true)) {
+            return null;
+        }
+        Builder builder = new Builder()
+            .withMaxWeight(AIConfig.getLongSetting("STANDARD_PROCEDURE_CACHE_MAX_CHARS", 8_000_000L))
+            .withTtl(Duration.ofHours(AIConfig.getLongSetting("STANDARD_PROCEDURE_CACHE_TTL_HOURS", 24)))
+            .withMaxDiskBytes(AIConfig.getLongSetting("STANDARD_PROCEDURE_CACHE_MAX_DISK_BYTES", 256L << 20));
+        String directory = AIConfig.getSetting("STANDARD_PROCEDURE_CACHE_DIR", null);
+        if (directory != null) {
+            builder.withDiskDirectory(Paths.get(directory));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Computes the cache key for a request.
+     *
+     * @param model The model name
+     * @param temperature The sampling temperature
+     * @param prompt The fully rendered prompt
+     * @return A hex-encoded SHA-256 hash of the inputs
+     */
+    public static String key(String model, double temperature, String prompt) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.valueOf(model).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(Double.toString(temperature).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            byte[] hash = digest.digest(prompt.getBytes(StandardCharsets.UTF_8));
+            char[] hex = new char[hash.length * 2];
+            for (int i = 0; i < hash.length; i++) {
+                hex[i * 2] = HEX[(hash[i] >> 4) & 0xf];
+                hex[i * 2 + 1] = HEX[hash[i] & 0xf];
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Looks up a cached response.
+     *
+     * @param key The cache key
+     * @return The cached response, or null on a miss
+     */
+    public String get(String key) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt > now) {
+                    hits.incrementAndGet();
+                    return entry.value;
+                }
+                removeEntry(key);
+            }
+        }
+
+        Entry entry = readFromDisk(key, now);
+        if (entry != null) {
+            diskHits.incrementAndGet();
+            synchronized (this) {
+                putEntry(key, entry);
+            }
+            return entry.value;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Stores a response in the cache.
+     *
+     * @param key The cache key
+     * @param value The response to cache
+     */
+    public void put(String key, String value) {
+        Entry entry = new Entry(value, System.currentTimeMillis() + ttlMillis);
+        synchronized (this) {
+            putEntry(key, entry);
+        }
+        writeToDisk(key, entry);
+    }
+
+    private void putEntry(String key, Entry entry) {
+        if (entry.value.length() > maxWeight) {
+            return;
+        }
+        removeEntry(key);
+        entries.put(key, entry);
+        weight += entry.value.length();
+
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (weight > maxWeight && eldest.hasNext()) {
+            weight -= eldest.next().getValue().value.length();
+            eldest.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void removeEntry(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            weight -= removed.value.length();
+        }
+    }
+
+    private Entry readFromDisk(String key, long now) {
+        if (diskDirectory == null) {
+            return null;
+        }
+        Path file = diskDirectory.resolve(key + ENTRY_SUFFIX);
+        try {
+            if (!Files.exists(file)) {
+                return null;
+            }
+            String content = Files.readString(file, StandardCharsets.UTF_8);
+            int newline = content.indexOf('\n');
+            long expiresAt = Long.parseLong(content.substring(0, newline));
+            if (expiresAt <= now) {
+                Files.deleteIfExists(file);
+                return null;
+            }
+            // The sweep evicts the least recently used files first
+            Files.setLastModifiedTime(file, FileTime.fromMillis(now));
+            return new Entry(content.substring(newline + 1), expiresAt);
+        } catch (IOException | RuntimeException e) {
+            // A corrupt or unreadable entry is treated as a miss
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, Entry entry) {
+        if (diskDirectory == null) {
+            return;
+        }
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(diskDirectory, key, TEMP_SUFFIX);
+            Files.writeString(temp, entry.expiresAt + "\n" + entry.value, StandardCharsets.UTF_8);
+            long size = Files.size(temp);
+            Files.move(temp, diskDirectory.resolve(key + ENTRY_SUFFIX),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if (diskBytes.addAndGet(size) > maxDiskBytes && diskSweepScheduled.compareAndSet(false, true)) {
+                diskSweeper.execute(this::sweepDisk);
+            }
+        } catch (IOException e) {
+            // The memory tier still holds the entry; disk is best effort
+            LOG.warn("Failed to write cache entry {}: {}", key, e.getMessage());
+            deleteQuietly(temp);
+        } catch (RejectedExecutionException e) {
+            // The cache is closed; the entry is on disk and counted by the next sweep
+            LOG.debug("Cache sweep not scheduled: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Deletes expired and abandoned files from the disk tier, then deletes the least
+     * recently used files until the tier is within its size bound.
+     */
+    private void sweepDisk() {
+        diskSweepScheduled.set(false);
+        long now = System.currentTimeMillis();
+        List<DiskEntry> kept = new ArrayList<>();
+        long total = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(diskDirectory)) {
+            for (Path file : files) {
+                try {
+                    String name = file.getFileName().toString();
+                    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                    long modified = attributes.lastModifiedTime().toMillis();
+                    if (name.endsWith(TEMP_SUFFIX)) {
+                        if (now - modified > STALE_TEMP_MILLIS) {
+                            Files.deleteIfExists(file);
+                        }
+                    } else if (name.endsWith(ENTRY_SUFFIX)) {
+                        if (readExpiresAt(file) <= now) {
+                            Files.deleteIfExists(file);
+                        } else {
+                            kept.add(new DiskEntry(file, attributes.size(), modified));
+                            total += attributes.size();
+                        }
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // Another sweep or lookup may have deleted the file already
+                    LOG.debug("Skipped cache file {}: {}", file, e.getMessage());
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Cache sweep of {} failed: {}", diskDirectory, e.getMessage());
+            return;
+        }
+
+        if (total > maxDiskBytes) {
+            kept.sort(Comparator.comparingLong(entry -> entry.lastUsedMillis));
+            for (DiskEntry entry : kept) {
+                if (total <= maxDiskBytes) {
+                    break;
+                }
+                try {
+                    Files.deleteIfExists(entry.file);
+                    diskEvictions.incrementAndGet();
+                } catch (IOException e) {
+                    LOG.debug("Failed to evict cache file {}: {}", entry.file, e.getMessage());
+                }
+                total -= entry.size;
+            }
+        }
+        diskBytes.set(total);
+    }
+
+    /**
+     * Reads the expiry time from the first line of an entry file, treating a corrupt file as
+     * expired.
+     */
+    private static long readExpiresAt(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line = reader.readLine();
+            return line != null ? Long.parseLong(line) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOG.warn("Failed to delete {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the background sweeps of the disk tier.
+     */
+    public void close() {
+        if (diskSweeper != null) {
+            diskSweeper.shutdownNow();
+        }
+    }
+
+    private static class DiskEntry {
+        final Path file;
+        final long size;
+        final long lastUsedMillis;
+
+        DiskEntry(Path file, long size, long lastUsedMillis) {
+            this.file = file;
+            this.size = size;
+            this.lastUsedMillis = lastUsedMillis;
+        }
+    }
+
+    /**
+     * Gets the number of lookups served from the memory tier.
+     *
+     * @return The memory hit count
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of lookups served from the disk tier.
+     *
+     * @return The disk hit count
+     */
+    public long getDiskHits() {
+        return diskHits.get();
+    }
+
+    /**
+     * Gets the number of lookups that found no entry.
+     *
+     * @return The miss count
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Gets the number of entries evicted from the memory tier to stay within the size bound.
+     *
+     * @return The eviction count
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Gets the number of files deleted from the disk tier to stay within its size bound.
+     *
+     * @return The disk eviction count
+     */
+    public long getDiskEvictions() {
+        return diskEvictions.get();
+    }
+
+    /**
+     * Gets the total size of the disk tier as of the last sweep and later writes.
+     *
+     * @return The disk tier size in bytes
+     */
+    public long getDiskBytes() {
+        return diskBytes.get();
+    }
+
+    /**
+     * Gets the number of entries in the memory tier.
+     *
+     * @return The entry count
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Gets the total number of characters held in the memory tier.
+     *
+     * @return The memory tier weight
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    public static class Builder {
+        private long maxWeight = 8_000_000L;
+        private Duration ttl = Duration.ofHours(24);
+        private Path diskDirectory;
+        private long maxDiskBytes = 256L << 20;
+        private Duration diskSweepInterval = Duration.ofMinutes(10);
+
+        /**
+         * Sets the maximum number of characters held in the memory tier.
+         */
+        public Builder withMaxWeight(long maxWeight) {
+            this.maxWeight = maxWeight;
+            return this;
+        }
+
+        public Builder withTtl(Duration ttl) {
+            this.ttl = ttl;
+            return this;
+        }
+
+        /**
+         * Enables the disk tier in the given directory.
+         */
+        public Builder withDiskDirectory(Path diskDirectory) {
+            this.diskDirectory = diskDirectory;
+            return this;
+        }
+
+        /**
+         * Sets the maximum total size, in bytes, of the disk tier.
+         */
+        public Builder withMaxDiskBytes(long maxDiskBytes) {
+            this.maxDiskBytes = maxDiskBytes;
+            return this;
+        }
+
+        /**
+         * Sets how often the disk tier is swept for expired files.
+         */
+        public Builder withDiskSweepInterval(Duration diskSweepInterval) {
+            this.diskSweepInterval = diskSweepInterval;
+            return this;
+        }
+
+        public ResponseCache build() {
+            return new ResponseCache(this);
+        }
+    }
+}
@@ -2,19 +2,75 @@ package com.leucine.wizard.model;
 
 import com.leucine.model.Agent;
 import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
 
 /**
  * Represents a session for the agent creation wizard.
  * Contains the current state of the wizard and the agent being created.
+ *
+ * <p>The mutable parts of a session are held in an immutable {@link Snapshot} that is
+ * replaced with compare-and-set, so concurrent requests for the same session never see a
+ * half-applied update and never need a lock. State changes follow the transition table of
+ * {@link WizardState}. Requesting the state the session is already in is a no-op, so
+ * retried requests are idempotent.</p>
+ *
+ * <p>Callers can wait for a change without polling through {@link #await(Predicate)}, which
+ * is notified after every successful update.</p>
  */
 public class WizardSession {
     
     private final String sessionId;
-    private WizardState state;
-    private Agent agent;
-    private LocalDateTime createdAt;
-    private LocalDateTime lastUpdatedAt;
-    private String errorMessage;
+    private final LocalDateTime createdAt;
+    private final AtomicReference<Snapshot> snapshot;
+    private final Set<Runnable> changeListeners = ConcurrentHashMap.newKeySet();
+    
+    /**
+     * Immutable view of a session's state, agent and error at one point in time.
+     */
+    public static final class Snapshot {
+        private final WizardState state;
+        private final Agent agent;
+        private final LocalDateTime lastUpdatedAt;
+        private final String errorMessage;
+        private final long version;
+        
+        private Snapshot(WizardState state, Agent agent, LocalDateTime lastUpdatedAt, String errorMessage, long version) {
+            this.state = state;
+            this.agent = agent;
+            this.lastUpdatedAt = lastUpdatedAt;
+            this.errorMessage = errorMessage;
+            this.version = version;
+        }
+        
+        public WizardState getState() {
+            return state;
+        }
+        
+        public Agent getAgent() {
+            return agent;
+        }
+        
+        public LocalDateTime getLastUpdatedAt() {
+            return lastUpdatedAt;
+        }
+        
+        public String getErrorMessage() {
+            return errorMessage;
+        }
+        
+        /**
+         * Gets the version of the session, incremented by every change.
+         * 
+         * @return The version
+         */
+        public long getVersion() {
+            return version;
+        }
+    }
     
     /**
      * Creates a new wizard session with the specified session ID.
@@ -22,10 +78,7 @@ public class WizardSession {
      * @param sessionId The unique identifier for this session
      */
     public WizardSession(String sessionId) {
-        this.sessionId = sessionId;
-        this.state = WizardState.INITIAL;
-        this.createdAt = LocalDateTime.now();
-        this.lastUpdatedAt = this.createdAt;
+        this(sessionId, null);
     }
     
     /**
@@ -35,8 +88,70 @@ public class WizardSession {
      * @param agent The agent being created in this session
      */
     public WizardSession(String sessionId, Agent agent) {
-        this(sessionId);
-        this.agent = agent;
+        this.sessionId = sessionId;
+        this.createdAt = LocalDateTime.now();
+        this.snapshot = new AtomicReference<>(new Snapshot(WizardState.INITIAL, agent, createdAt, null, 0));
+    }
+    
+    private WizardSession(String sessionId, LocalDateTime createdAt, Snapshot snapshot) {
+        this.sessionId = sessionId;
+        this.createdAt = createdAt;
+        this.snapshot = new AtomicReference<>(snapshot);
+    }
+    
+    /**
+     * Recreates a wizard session from stored values, for example when a persistent
+     * session store loads it after a restart.
+     * 
+     * @param sessionId The unique identifier for the session
+     * @param state The stored state
+     * @param agent The stored agent, or null
+     * @param createdAt The stored creation time
+     * @param lastUpdatedAt The stored last update time
+     * @param errorMessage The stored error message, or null
+     * @param version The stored version
+     * @return The restored wizard session
+     */
+    public static WizardSession restore(String sessionId, WizardState state, Agent agent, LocalDateTime createdAt,
+                                        LocalDateTime lastUpdatedAt, String errorMessage, long version) {
+        return new WizardSession(sessionId, createdAt, new Snapshot(state, agent, lastUpdatedAt, errorMessage, version));
+    }
+    
+    /**
+     * Moves the session to a new state.
+     * 
+     * @param target The new state
+     * @return true if the state changed, false if the session was already in the target state
+     * @throws IllegalStateException If the transition is not allowed from the current state
+     */
+    public boolean transition(WizardState target) {
+        return transition(target, null);
+    }
+    
+    /**
+     * Moves the session to a new state and, in the same atomic step, replaces its agent.
+     * 
+     * @param target The new state
+     * @param agent The new agent, or null to keep the current one
+     * @return true if the state changed, false if the session was already in the target state
+     * @throws IllegalStateException If the transition is not allowed from the current state
+     */
+    public boolean transition(WizardState target, Agent agent) {
+        while (true) {
+            Snapshot current = snapshot.get();
+            if (current.state == target) {
+                return false;
+            }
+            if (!current.state.canTransitionTo(target)) {
+                throw new IllegalStateException("Cannot move from " + current.state + " to " + target);
+            }
+            Snapshot next = new Snapshot(target, agent != null ? agent : current.agent,
+                LocalDateTime.now(), null, current.version + 1);
+            if (snapshot.compareAndSet(current, next)) {
+                notifyChanged();
+                return true;
+            }
+        }
     }
     
     /**
@@ -44,10 +159,10 @@ public class WizardSession {
      * 
      * @param state The new state
      * @return This wizard session for method chaining
+     * @throws IllegalStateException If the transition is not allowed from the current state
      */
     public WizardSession updateState(WizardState state) {
-        this.state = state;
-        this.lastUpdatedAt = LocalDateTime.now();
+        transition(state);
         return this;
     }
     
@@ -58,9 +173,15 @@ public class WizardSession {
      * @return This wizard session for method chaining
      */
     public WizardSession setAgent(Agent agent) {
-        this.agent = agent;
-        this.lastUpdatedAt = LocalDateTime.now();
-        return this;
+        while (true) {
+            Snapshot current = snapshot.get();
+            Snapshot next = new Snapshot(current.state, agent, LocalDateTime.now(),
+                current.errorMessage, current.version + 1);
+            if (snapshot.compareAndSet(current, next)) {
+                notifyChanged();
+                return this;
+            }
+        }
     }
     
     /**
@@ -69,12 +190,51 @@ public class WizardSession {
      * 
      * @param errorMessage The error message
      * @return This wizard session for method chaining
+     * @throws IllegalStateException If the session is already completed
      */
     public WizardSession setError(String errorMessage) {
-        this.errorMessage = errorMessage;
-        this.state = WizardState.ERROR;
-        this.lastUpdatedAt = LocalDateTime.now();
-        return this;
+        while (true) {
+            Snapshot current = snapshot.get();
+            if (current.state != WizardState.ERROR && !current.state.canTransitionTo(WizardState.ERROR)) {
+                throw new IllegalStateException("Cannot move from " + current.state + " to " + WizardState.ERROR);
+            }
+            Snapshot next = new Snapshot(WizardState.ERROR, current.agent, LocalDateTime.now(),
+                errorMessage, current.version + 1);
+            if (snapshot.compareAndSet(current, next)) {
+                notifyChanged();
+                return this;
+            }
+        }
+    }
+    
+    /**
+     * Waits until the session satisfies a condition. The condition is checked now and
+     * again after every change, on the thread that made the change, so it must be cheap.
+     * Completing or cancelling the returned future, for example with
+     * {@link CompletableFuture#orTimeout}, stops the waiting.
+     * 
+     * @param condition The condition on the session's snapshot
+     * @return A future completed with the first snapshot that satisfies the condition
+     */
+    public CompletableFuture<Snapshot> await(Predicate<Snapshot> condition) {
+        CompletableFuture<Snapshot> result = new CompletableFuture<>();
+        Runnable check = () -> {
+            Snapshot current = snapshot.get();
+            if (condition.test(current)) {
+                result.complete(current);
+            }
+        };
+        // Register before the first check, so a change in between is not missed
+        changeListeners.add(check);
+        result.whenComplete((value, error) -> changeListeners.remove(check));
+        check.run();
+        return result;
+    }
+    
+    private void notifyChanged() {
+        for (Runnable listener : changeListeners) {
+            listener.run();
+        }
     }
     
     // Getters
@@ -88,13 +248,23 @@ public class WizardSession {
         return sessionId;
     }
     
+    /**
+     * Gets a consistent view of the session's state, agent and error.
+     * Use this instead of several getters when the values must belong together.
+     * 
+     * @return The current snapshot
+     */
+    public Snapshot getSnapshot() {
+        return snapshot.get();
+    }
+    
     /**
      * Gets the current state of the wizard.
      * 
      * @return The current state
      */
     public WizardState getState() {
-        return state;
+        return snapshot.get().state;
     }
     
     /**
@@ -103,7 +273,7 @@ public class WizardSession {
      * @return The agent
      */
     public Agent getAgent() {
-        return agent;
+        return snapshot.get().agent;
     }
     
     /**
@@ -121,7 +291,7 @@ public class WizardSession {
      * @return The last update time
      */
     public LocalDateTime getLastUpdatedAt() {
-        return lastUpdatedAt;
+        return snapshot.get().lastUpdatedAt;
     }
     
     /**
@@ -130,7 +300,16 @@ public class WizardSession {
      * @return The error message, or null if no error occurred
      */
     public String getErrorMessage() {
-        return errorMessage;
+        return snapshot.get().errorMessage;
+    }
+    
+    /**
+     * Gets the version of this session, incremented by every change.
+     * 
+     * @return The version
+     */
+    public long getVersion() {
+        return snapshot.get().version;
     }
     
     /**
@@ -139,7 +318,7 @@ public class WizardSession {
      * @return true if this session has an error, false otherwise
      */
     public boolean hasError() {
-        return state == WizardState.ERROR;
+        return getState() == WizardState.ERROR;
     }
     
     /**
@@ -148,6 +327,6 @@ public class WizardSession {
      * @return true if this session is completed, false otherwise
      */
     public boolean isCompleted() {
-        return state == WizardState.COMPLETED;
+        return getState() == WizardState.COMPLETED;
     }
 }
\ No newline at end of file
@@ -1,8 +1,15 @@
 package com.leucine.wizard.model;
 
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * Enum representing the different states of the agent creation wizard.
  * These states track the progress of the wizard through the agent creation process.
+ * The allowed moves between states are given by {@link #canTransitionTo(WizardState)}.
  */
 public enum WizardState {
     /**
@@ -33,5 +40,36 @@ public enum WizardState {
     /**
      * State when an error has occurred during the wizard process
      */
-    ERROR
+    ERROR;
+    
+    private static final Map<WizardState, Set<WizardState>> TRANSITIONS = new EnumMap<>(WizardState.class);
+    
+    static {
+        TRANSITIONS.put(INITIAL, EnumSet.of(OBJECTIVE_ENTERED, ERROR));
+        TRANSITIONS.put(OBJECTIVE_ENTERED, EnumSet.of(OBJECTIVE_DECOMPOSED, ERROR));
+        // A decomposed or reviewed agent can be regenerated from a new objective
+        TRANSITIONS.put(OBJECTIVE_DECOMPOSED, EnumSet.of(OBJECTIVE_ENTERED, AGENT_REVIEWED, ERROR));
+        TRANSITIONS.put(AGENT_REVIEWED, EnumSet.of(OBJECTIVE_ENTERED, COMPLETED, ERROR));
+        TRANSITIONS.put(COMPLETED, EnumSet.noneOf(WizardState.class));
+        TRANSITIONS.put(ERROR, EnumSet.of(OBJECTIVE_ENTERED));
+    }
+    
+    /**
+     * Checks whether the wizard may move from this state to the given state.
+     * 
+     * @param target The state to move to
+     * @return true if the transition is allowed
+     */
+    public boolean canTransitionTo(WizardState target) {
+        return TRANSITIONS.get(this).contains(target);
+    }
+    
+    /**
+     * Gets the states the wizard may move to from this state.
+     * 
+     * @return The allowed target states
+     */
+    public Set<WizardState> getAllowedTransitions() {
+        return Collections.unmodifiableSet(TRANSITIONS.get(this));
+    }
 }
\ No newline at end of file
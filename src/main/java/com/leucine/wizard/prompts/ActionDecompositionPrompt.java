@@ -1,25 +1,31 @@
 package com.leucine.wizard.prompts;
 
+import com.leucine.utils.ClaudeClient.ContentBlock;
+
+import java.util.List;
+
 /**
  * Provides prompts for decomposing objectives into goals, subgoals, and actions.
  * This prompt is used to guide the LLM in breaking down high-level objectives into
  * actionable components that can be executed autonomously by a system.
+ * The instructions follow the cached context of {@link ProcedureContextPrompt}.
  */
 public class ActionDecompositionPrompt {
     
     /**
-     * Returns the user prompt template for objective decomposition with actions.
-     * This template includes placeholders that will be replaced with actual values.
+     * The name of this prompt in the {@link PromptRegistry}.
+     */
+    public static final String NAME = "action-decomposition";
+    
+    /**
+     * Returns the built-in instructions for objective decomposition with actions, which follow the
+     * standard procedure and objective context.
      * 
      * @return The user prompt template as a String
      */
     public static String getUserPromptTemplate() {
         return """
-               Standard Procedure:
-               ```%s```
-               
-               Now while keeping scope to the objective given below Objective: ```%s```
-               I want to decompose this objective into goals, it's sub goals and their actions. Each action is a unit level work that the system can perform in order to progress further in the goal. The core idea is that an objective when broken down into meaningful goals can be executed autonomously by a system which also has LLM capability. It may have some checkpoints where it may require user approval before proceeding further. Ensure each action is detailed enough.
+               Now while keeping scope to the objective given above, I want to decompose this objective into goals, it's sub goals and their actions. Each action is a unit level work that the system can perform in order to progress further in the goal. The core idea is that an objective when broken down into meaningful goals can be executed autonomously by a system which also has LLM capability. It may have some checkpoints where it may require user approval before proceeding further. Ensure each action is detailed enough.
                
                Can you decompose my objective and give me in JSON:
                
@@ -48,13 +54,28 @@ public class ActionDecompositionPrompt {
     }
     
     /**
-     * Formats the user prompt by replacing the placeholders with actual values.
+     * Formats the user prompt with the versions the {@link PromptRegistry} chooses for the objective.
      * 
      * @param objective The objective to decompose
      * @param standardProcedure The standard procedure for the objective
      * @return The formatted user prompt as a String
      */
     public static String formatUserPrompt(String objective, String standardProcedure) {
-        return String.format(getUserPromptTemplate(), standardProcedure, objective);
+        return ProcedureContextPrompt.formatContext(objective, standardProcedure) + instructions(objective);
+    }
+    
+    /**
+     * Formats the user prompt as content blocks with the context as a cached prefix.
+     * 
+     * @param objective The objective to decompose
+     * @param standardProcedure The standard procedure for the objective
+     * @return The content blocks of the user message
+     */
+    public static List<ContentBlock> formatUserContent(String objective, String standardProcedure) {
+        return ProcedureContextPrompt.withContext(objective, standardProcedure, instructions(objective));
+    }
+    
+    private static String instructions(String objective) {
+        return PromptRegistry.getDefault().select(NAME, objective).render();
     }
 }
\ No newline at end of file
@@ -0,0 +1,77 @@
+package com.leucine.wizard.prompts;
+
+import com.leucine.utils.ClaudeClient.ContentBlock;
+
+import java.util.List;
+
+/**
+ * Provides prompts for decomposing objectives into goals and subgoals only.
+ * This is the first phase of the parallel decomposition mode: the skeleton is short to
+ * generate, and the actions of each subgoal are requested separately with
+ * {@link SubGoalActionsPrompt}. The instructions follow the cached context of
+ * {@link ProcedureContextPrompt}, which the action prompts reuse.
+ */
+public class GoalSkeletonPrompt {
+    
+    /**
+     * The name of this prompt in the {@link PromptRegistry}.
+     */
+    public static final String NAME = "goal-skeleton";
+    
+    /**
+     * Returns the built-in instructions for the goal and subgoal skeleton, which follow the
+     * standard procedure and objective context.
+     * 
+     * @return The user prompt template as a String
+     */
+    public static String getUserPromptTemplate() {
+        return """
+               Now while keeping scope to the objective given above, I want to decompose this objective into goals and their sub goals. The core idea is that an objective when broken down into meaningful goals can be executed autonomously by a system which also has LLM capability. Do not list actions; they will be planned separately for each sub goal.
+               
+               Can you decompose my objective and give me in JSON:
+               
+               ```json
+               {
+                 "goals": [
+                   {
+                     "name": "Goal name",
+                     "description": "Goal description",
+                     "subgoals": [
+                       {
+                         "name": "Subgoal name",
+                         "description": "Subgoal description"
+                       }
+                     ]
+                   }
+                 ]
+               }
+               ```
+               """;
+    }
+    
+    /**
+     * Formats the user prompt with the versions the {@link PromptRegistry} chooses for the objective.
+     * 
+     * @param objective The objective to decompose
+     * @param standardProcedure The standard procedure for the objective
+     * @return The formatted user prompt as a String
+     */
+    public static String formatUserPrompt(String objective, String standardProcedure) {
+        return ProcedureContextPrompt.formatContext(objective, standardProcedure) + instructions(objective);
+    }
+    
+    /**
+     * Formats the user prompt as content blocks with the context as a cached prefix.
+     * 
+     * @param objective The objective to decompose
+     * @param standardProcedure The standard procedure for the objective
+     * @return The content blocks of the user message
+     */
+    public static List<ContentBlock> formatUserContent(String objective, String standardProcedure) {
+        return ProcedureContextPrompt.withContext(objective, standardProcedure, instructions(objective));
+    }
+    
+    private static String instructions(String objective) {
+        return PromptRegistry.getDefault().select(NAME, objective).render();
+    }
+}
@@ -0,0 +1,61 @@
+package com.leucine.wizard.prompts;
+
+/**
+ * Provides prompts for decomposing a single phase of a standard procedure into goals and
+ * subgoals. Used by the pipelined decomposition mode, which sends one prompt per top-level
+ * phase while the rest of the standard procedure is still being generated.
+ */
+public class PhaseSkeletonPrompt {
+    
+    /**
+     * The name of this prompt in the {@link PromptRegistry}.
+     */
+    public static final String NAME = "phase-skeleton";
+    
+    /**
+     * Returns the built-in user prompt template for the skeleton of one procedure phase.
+     * This template includes {@code {{objective}}} and {@code {{phase}}} slots.
+     * 
+     * @return The user prompt template as a String
+     */
+    public static String getUserPromptTemplate() {
+        return """
+               Objective: ```{{objective}}```
+               
+               Below is one phase of the standard procedure for this objective:
+               ```{{phase}}```
+               
+               I want to decompose this phase into goals and their sub goals, usually a single goal for the phase. The core idea is that an objective when broken down into meaningful goals can be executed autonomously by a system which also has LLM capability. Keep to the scope of this phase only. Do not list actions; they will be planned separately for each sub goal.
+               
+               Can you decompose the phase and give me in JSON:
+               
+               ```json
+               {
+                 "goals": [
+                   {
+                     "name": "Goal name",
+                     "description": "Goal description",
+                     "subgoals": [
+                       {
+                         "name": "Subgoal name",
+                         "description": "Subgoal description"
+                       }
+                     ]
+                   }
+                 ]
+               }
+               ```
+               """;
+    }
+    
+    /**
+     * Formats the user prompt with the version the {@link PromptRegistry} chooses for the objective.
+     * 
+     * @param objective The objective being decomposed
+     * @param phase The markdown text of one top-level phase of the standard procedure
+     * @return The formatted user prompt as a String
+     */
+    public static String formatUserPrompt(String objective, String phase) {
+        return PromptRegistry.getDefault().select(NAME, objective).render("objective", objective, "phase", phase);
+    }
+}
@@ -0,0 +1,64 @@
+package com.leucine.wizard.prompts;
+
+import com.leucine.utils.ClaudeClient.ContentBlock;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Provides the standard procedure and objective context shared by the decomposition prompts.
+ * The context is the same for every call made for one objective, so it is sent as a cached
+ * prompt prefix: the first call writes it to the prompt cache and the skeleton, action and
+ * repeated decomposition calls that follow read it instead of processing it again.
+ */
+public class ProcedureContextPrompt {
+    
+    /**
+     * The name of this prompt in the {@link PromptRegistry}.
+     */
+    public static final String NAME = "procedure-context";
+    
+    /**
+     * Returns the built-in context template.
+     * This template includes {@code {{standardProcedure}}} and {@code {{objective}}} slots.
+     * 
+     * @return The context template as a String
+     */
+    public static String getContextTemplate() {
+        return """
+               Standard Procedure:
+               ```{{standardProcedure}}```
+               
+               Objective: ```{{objective}}```
+               
+               """;
+    }
+    
+    /**
+     * Formats the context with the version the {@link PromptRegistry} chooses for the objective.
+     * 
+     * @param objective The objective being decomposed
+     * @param standardProcedure The standard procedure for the objective
+     * @return The formatted context as a String
+     */
+    public static String formatContext(String objective, String standardProcedure) {
+        return PromptRegistry.getDefault().select(NAME, objective)
+            .render("standardProcedure", standardProcedure, "objective", objective);
+    }
+    
+    /**
+     * Builds the content of a user message from the cached context followed by the
+     * instructions of one call.
+     * 
+     * @param objective The objective being decomposed
+     * @param standardProcedure The standard procedure for the objective
+     * @param instructions The instructions that follow the context
+     * @return The content blocks of the user message
+     */
+    public static List<ContentBlock> withContext(String objective, String standardProcedure, String instructions) {
+        List<ContentBlock> content = new ArrayList<>();
+        content.add(ContentBlock.cachedText(formatContext(objective, standardProcedure)));
+        content.add(ContentBlock.text(instructions));
+        return content;
+    }
+}
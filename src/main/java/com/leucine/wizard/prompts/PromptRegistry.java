@@ -0,0 +1,371 @@
+package com.leucine.wizard.prompts;
+
+import com.leucine.config.AIConfig;
+import com.leucine.metrics.Counter;
+import com.leucine.metrics.Metrics;
+import com.leucine.utils.TaskExecutors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds the versions of every decomposition prompt and chooses which one each call uses.
+ *
+ * <p>Each prompt has a {@value #BUILTIN} version, the text compiled into its prompt class.
+ * Further versions are read from a directory with one subdirectory per prompt, holding one
+ * {@code <version>.txt} file per version:</p>
+ * <pre>
+ * prompts/
+ *   action-decomposition/
+ *     v2.txt
+ *     weights.properties
+ * </pre>
+ *
+ * <p>{@code weights.properties} splits the traffic of a prompt between its versions, for
+ * example {@code builtin=90} and {@code v2=10}. Without it every call uses the built-in
+ * version, so adding a file changes nothing until it is given a weight. The version is
+ * chosen from a hash of a key, the objective, so every call for one objective uses the same
+ * versions and keeps hitting the prompt cache. A version may only use the slots of the
+ * built-in one; a file with other slots is skipped. Every choice is counted by the
+ * {@code prompt.selections} counter, tagged with the prompt and version.</p>
+ *
+ * <p>The directory is checked for changes in the background and reloaded as a whole, so
+ * versions and weights can be changed without a redeploy. Calls in progress keep the
+ * templates they were given.</p>
+ */
+public class PromptRegistry {
+
+    /**
+     * The version compiled into the prompt classes.
+     */
+    public static final String BUILTIN = "builtin";
+
+    private static final Logger LOG = LoggerFactory.getLogger(PromptRegistry.class);
+    private static final String WEIGHTS_FILE = "weights.properties";
+    private static final String TEMPLATE_SUFFIX = ".txt";
+
+    private static volatile PromptRegistry defaultRegistry;
+
+    private final Map<String, PromptTemplate> builtins = new LinkedHashMap<>();
+    private final Path directory;
+    private final ScheduledExecutorService reloader;
+    private volatile Map<String, Prompt> prompts;
+    private String fingerprint;
+
+    /**
+     * Creates a registry.
+     *
+     * @param directory The directory of prompt versions, or null for the built-in versions only
+     * @param reloadInterval How often the directory is checked for changes, or zero to load it only once
+     */
+    public PromptRegistry(Path directory, Duration reloadInterval) {
+        builtin(StandardProcedurePrompt.NAME, StandardProcedurePrompt.getUserPromptTemplate());
+        builtin(ProcedureContextPrompt.NAME, ProcedureContextPrompt.getContextTemplate());
+        builtin(ActionDecompositionPrompt.NAME, ActionDecompositionPrompt.getUserPromptTemplate());
+        builtin(GoalSkeletonPrompt.NAME, GoalSkeletonPrompt.getUserPromptTemplate());
+        builtin(PhaseSkeletonPrompt.NAME, PhaseSkeletonPrompt.getUserPromptTemplate());
+        builtin(SubGoalActionsPrompt.NAME, SubGoalActionsPrompt.getUserPromptTemplate());
+        this.directory = directory;
+        reload();
+
+        long interval = reloadInterval.toMillis();
+        if (directory != null && interval > 0) {
+            reloader = Executors.newSingleThreadScheduledExecutor(TaskExecutors.daemonThreadFactory("prompt-reloader"));
+            reloader.scheduleWithFixedDelay(this::reload, interval, interval, TimeUnit.MILLISECONDS);
+        } else {
+            reloader = null;
+        }
+    }
+
+    /**
+     * Gets the registry used by the prompt classes, creating it on first use.
+     * Uses the settings {@code PROMPT_TEMPLATE_DIR} (default unset, for the built-in
+     * versions only) and {@code PROMPT_RELOAD_INTERVAL_SECONDS} (default 30).
+     *
+     * @return The registry
+     */
+    public static PromptRegistry getDefault() {
+        PromptRegistry current = defaultRegistry;
+        if (current == null) {
+            synchronized (PromptRegistry.class) {
+                if (defaultRegistry == null) {
+                    String dir = AIConfig.getSetting("PROMPT_TEMPLATE_DIR", null);
+                    defaultRegistry = new PromptRegistry(dir != null ? Paths.get(dir) : null,
+                        Duration.ofSeconds(AIConfig.getLongSetting("PROMPT_RELOAD_INTERVAL_SECONDS", 30)));
+                }
+                current = defaultRegistry;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Closes the registry used by the prompt classes, if one has been created. The next
+     * call to {@link #getDefault()} creates a new one.
+     */
+    public static synchronized void closeDefault() {
+        if (defaultRegistry != null) {
+            defaultRegistry.close();
+            defaultRegistry = null;
+        }
+    }
+
+    /**
+     * Chooses the version of a prompt for a call.
+     *
+     * @param name The name of the prompt
+     * @param key The key the choice is made from, usually the objective; null for a random choice
+     * @return The template to render
+     * @throws IllegalArgumentException If there is no prompt with that name
+     */
+    public PromptTemplate select(String name, String key) {
+        Prompt prompt = prompts.get(name);
+        if (prompt == null) {
+            throw new IllegalArgumentException("Unknown prompt: " + name);
+        }
+        Variant variant = prompt.select(key);
+        variant.selections.increment();
+        return variant.template;
+    }
+
+    /**
+     * Gets one version of a prompt, whatever its weight.
+     *
+     * @param name The name of the prompt
+     * @param version The version
+     * @return The template, or null if the prompt has no such version
+     */
+    public PromptTemplate get(String name, String version) {
+        Prompt prompt = prompts.get(name);
+        return prompt != null ? prompt.versions.get(version) : null;
+    }
+
+    /**
+     * Gets the versions of a prompt that are currently loaded.
+     *
+     * @param name The name of the prompt
+     * @return The versions, or an empty list if there is no prompt with that name
+     */
+    public List<String> getVersions(String name) {
+        Prompt prompt = prompts.get(name);
+        return prompt != null ? new ArrayList<>(prompt.versions.keySet()) : Collections.emptyList();
+    }
+
+    /**
+     * Reloads the prompt directory if anything in it changed since the last load.
+     *
+     * @return true if the prompts were reloaded
+     */
+    public synchronized boolean reload() {
+        try {
+            String current = fingerprint();
+            if (prompts != null && current.equals(fingerprint)) {
+                return false;
+            }
+            Map<String, Prompt> loaded = new LinkedHashMap<>();
+            for (Map.Entry<String, PromptTemplate> builtin : builtins.entrySet()) {
+                loaded.put(builtin.getKey(), load(builtin.getValue()));
+            }
+            prompts = loaded;
+            fingerprint = current;
+            if (directory != null) {
+                LOG.info("Loaded prompt versions from {}", directory);
+            }
+            return true;
+        } catch (IOException | RuntimeException e) {
+            // Keep serving the prompts loaded before; the next check tries again
+            LOG.warn("Could not load prompt versions from {}: {}", directory, e.getMessage());
+            if (prompts == null) {
+                Map<String, Prompt> loaded = new LinkedHashMap<>();
+                for (PromptTemplate builtin : builtins.values()) {
+                    loaded.put(builtin.getName(), builtinOnly(builtin));
+                }
+                prompts = loaded;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Stops checking the prompt directory for changes.
+     */
+    public void close() {
+        if (reloader != null) {
+            reloader.shutdownNow();
+        }
+    }
+
+    private void builtin(String name, String text) {
+        builtins.put(name, PromptTemplate.parse(name, BUILTIN, text));
+    }
+
+    private Prompt load(PromptTemplate builtin) throws IOException {
+        String name = builtin.getName();
+        Map<String, PromptTemplate> versions = new LinkedHashMap<>();
+        versions.put(BUILTIN, builtin);
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        Path dir = directory != null ? directory.resolve(name) : null;
+        if (dir == null || !Files.isDirectory(dir)) {
+            return builtinOnly(builtin);
+        }
+
+        for (Path file : list(dir)) {
+            String fileName = file.getFileName().toString();
+            if (!fileName.endsWith(TEMPLATE_SUFFIX)) {
+                continue;
+            }
+            String version = fileName.substring(0, fileName.length() - TEMPLATE_SUFFIX.length());
+            PromptTemplate template = PromptTemplate.parse(name, version, Files.readString(file, StandardCharsets.UTF_8));
+            if (BUILTIN.equals(version)) {
+                LOG.warn("Skipping {}: the version name {} is reserved", file, BUILTIN);
+            } else if (!builtin.getSlotNames().containsAll(template.getSlotNames())) {
+                LOG.warn("Skipping {}: it uses slots {}, but {} only has {}", file, template.getSlotNames(), name,
+                    builtin.getSlotNames());
+            } else {
+                versions.put(version, template);
+            }
+        }
+
+        Path weightsFile = dir.resolve(WEIGHTS_FILE);
+        if (Files.isRegularFile(weightsFile)) {
+            Properties properties = new Properties();
+            try (Reader reader = Files.newBufferedReader(weightsFile, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+            for (String version : new TreeSet<>(properties.stringPropertyNames())) {
+                int weight = parseWeight(weightsFile, version, properties.getProperty(version));
+                if (!versions.containsKey(version)) {
+                    LOG.warn("Ignoring the weight of {} in {}: there is no such version", version, weightsFile);
+                } else if (weight > 0) {
+                    weights.put(version, weight);
+                }
+            }
+        }
+        if (weights.isEmpty()) {
+            weights.put(BUILTIN, 1);
+        }
+        return new Prompt(name, versions, weights);
+    }
+
+    private static Prompt builtinOnly(PromptTemplate builtin) {
+        return new Prompt(builtin.getName(), Map.of(BUILTIN, builtin), Map.of(BUILTIN, 1));
+    }
+
+    private static int parseWeight(Path weightsFile, String version, String value) {
+        try {
+            int weight = Integer.parseInt(value.trim());
+            if (weight >= 0) {
+                return weight;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        LOG.warn("Ignoring the weight of {} in {}: {} is not a whole number of at least 0", version, weightsFile, value);
+        return 0;
+    }
+
+    /**
+     * Describes every file the prompts are loaded from, so a reload can be skipped when
+     * nothing has changed.
+     */
+    private String fingerprint() throws IOException {
+        if (directory == null) {
+            return "";
+        }
+        StringBuilder fingerprint = new StringBuilder();
+        for (String name : builtins.keySet()) {
+            Path dir = directory.resolve(name);
+            if (!Files.isDirectory(dir)) {
+                continue;
+            }
+            for (Path file : list(dir)) {
+                fingerprint.append(file).append(':').append(Files.getLastModifiedTime(file).toMillis())
+                    .append(':').append(Files.size(file)).append('\n');
+            }
+        }
+        return fingerprint.toString();
+    }
+
+    private static List<Path> list(Path dir) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, Files::isRegularFile)) {
+            stream.forEach(files::add);
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    /**
+     * The loaded versions of one prompt and how traffic is split between them.
+     */
+    private static class Prompt {
+        final Map<String, PromptTemplate> versions;
+        final Variant[] variants;
+        final int totalWeight;
+
+        Prompt(String name, Map<String, PromptTemplate> versions, Map<String, Integer> weights) {
+            this.versions = versions;
+            this.variants = new Variant[weights.size()];
+            int total = 0;
+            int i = 0;
+            for (Map.Entry<String, Integer> weight : weights.entrySet()) {
+                total += weight.getValue();
+                variants[i++] = new Variant(versions.get(weight.getKey()), total,
+                    Metrics.getRegistry().counter("prompt.selections", "prompt", name, "version", weight.getKey()));
+            }
+            this.totalWeight = total;
+        }
+
+        Variant select(String key) {
+            if (variants.length == 1) {
+                return variants[0];
+            }
+            int bucket;
+            if (key == null) {
+                bucket = ThreadLocalRandom.current().nextInt(totalWeight);
+            } else {
+                // Spread similar keys, such as objectives that differ in one word, across buckets
+                int hash = key.hashCode() * 0x9E3779B9;
+                bucket = Math.floorMod(hash ^ (hash >>> 16), totalWeight);
+            }
+            for (Variant variant : variants) {
+                if (bucket < variant.cumulativeWeight) {
+                    return variant;
+                }
+            }
+            return variants[variants.length - 1];
+        }
+    }
+
+    private static class Variant {
+        final PromptTemplate template;
+        final int cumulativeWeight;
+        final Counter selections;
+
+        Variant(PromptTemplate template, int cumulativeWeight, Counter selections) {
+            this.template = template;
+            this.cumulativeWeight = cumulativeWeight;
+            this.selections = selections;
+        }
+    }
+}
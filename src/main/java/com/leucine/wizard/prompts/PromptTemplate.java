@@ -0,0 +1,117 @@
+package com.leucine.wizard.prompts;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A prompt template parsed once into literal text and named slots.
+ *
+ * <p>Slots are written {@code {{name}}}. Rendering copies the literal segments and the slot
+ * values into a buffer sized for the result, so the cost of a call is that of copying the
+ * text. Unlike {@code String.format}, nothing in the values is interpreted, and a {@code %}
+ * in the template or in a value is just text.</p>
+ */
+public class PromptTemplate {
+
+    private static final Pattern SLOT = Pattern.compile("\\{\\{([A-Za-z][A-Za-z0-9]*)}}");
+
+    private final String name;
+    private final String version;
+    // Literal text, with the slot names between them: literals[i] is followed by slots[i]
+    private final String[] literals;
+    private final String[] slots;
+    private final int literalLength;
+    private final Set<String> slotNames;
+
+    private PromptTemplate(String name, String version, String[] literals, String[] slots) {
+        this.name = name;
+        this.version = version;
+        this.literals = literals;
+        this.slots = slots;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+        Set<String> names = new LinkedHashSet<>();
+        Collections.addAll(names, slots);
+        this.slotNames = Collections.unmodifiableSet(names);
+    }
+
+    /**
+     * Parses a template.
+     *
+     * @param name The name of the prompt
+     * @param version The version of the prompt
+     * @param text The template text
+     * @return The parsed template
+     */
+    public static PromptTemplate parse(String name, String version, String text) {
+        List<String> literals = new ArrayList<>();
+        List<String> slots = new ArrayList<>();
+        Matcher matcher = SLOT.matcher(text);
+        int start = 0;
+        while (matcher.find()) {
+            literals.add(text.substring(start, matcher.start()));
+            slots.add(matcher.group(1));
+            start = matcher.end();
+        }
+        literals.add(text.substring(start));
+        return new PromptTemplate(name, version, literals.toArray(new String[0]), slots.toArray(new String[0]));
+    }
+
+    /**
+     * Renders the template.
+     *
+     * @param values Alternating slot names and values; a null value is rendered as {@code null}
+     * @return The rendered prompt
+     * @throws IllegalArgumentException If a slot has no value
+     */
+    public String render(String... values) {
+        if (slots.length == 0) {
+            return literals[0];
+        }
+        String[] resolved = new String[slots.length];
+        int length = literalLength;
+        for (int i = 0; i < slots.length; i++) {
+            resolved[i] = String.valueOf(valueOf(slots[i], values));
+            length += resolved[i].length();
+        }
+        StringBuilder prompt = new StringBuilder(length);
+        for (int i = 0; i < slots.length; i++) {
+            prompt.append(literals[i]).append(resolved[i]);
+        }
+        return prompt.append(literals[slots.length]).toString();
+    }
+
+    private String valueOf(String slot, String[] values) {
+        for (int i = 0; i + 1 < values.length; i += 2) {
+            if (slot.equals(values[i])) {
+                return values[i + 1];
+            }
+        }
+        throw new IllegalArgumentException("No value for slot " + slot + " of prompt " + name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the names of the slots in the template, in order of first use.
+     *
+     * @return The slot names
+     */
+    public Set<String> getSlotNames() {
+        return slotNames;
+    }
+}
@@ -8,14 +8,19 @@ package com.leucine.wizard.prompts;
 public class StandardProcedurePrompt {
     
     /**
-     * Returns the user prompt template for retrieving standard procedures.
-     * This template includes placeholders that will be replaced with actual values.
+     * The name of this prompt in the {@link PromptRegistry}.
+     */
+    public static final String NAME = "standard-procedure";
+    
+    /**
+     * Returns the built-in user prompt template for retrieving standard procedures.
+     * This template includes a {@code {{objective}}} slot.
      * 
      * @return The user prompt template as a String
      */
     public static String getUserPromptTemplate() {
         return """
-               Objective: %s
+               Objective: {{objective}}
                
                Provide a detailed hierarchical analysis of the current standard procedure for this objective in pharmaceutical manufacturing, including:
                
@@ -35,12 +40,12 @@ public class StandardProcedurePrompt {
     }
     
     /**
-     * Formats the user prompt by replacing the placeholder with the actual objective.
+     * Formats the user prompt with the version the {@link PromptRegistry} chooses for the objective.
      * 
      * @param objective The objective to get standard procedures for
      * @return The formatted user prompt as a String
      */
     public static String formatUserPrompt(String objective) {
-        return String.format(getUserPromptTemplate(), objective);
+        return PromptRegistry.getDefault().select(NAME, objective).render("objective", objective);
     }
 }
\ No newline at end of file
@@ -0,0 +1,79 @@
+package com.leucine.wizard.prompts;
+
+import com.leucine.utils.ClaudeClient.ContentBlock;
+
+import java.util.List;
+
+/**
+ * Provides prompts for generating the actions of a single subgoal.
+ * This is the second phase of the parallel decomposition mode; one prompt is sent per
+ * subgoal of the skeleton produced with {@link GoalSkeletonPrompt}. Only the goal and
+ * subgoal differ between these prompts; they follow the cached context of
+ * {@link ProcedureContextPrompt}.
+ */
+public class SubGoalActionsPrompt {
+    
+    /**
+     * The name of this prompt in the {@link PromptRegistry}.
+     */
+    public static final String NAME = "subgoal-actions";
+    
+    /**
+     * Returns the built-in user prompt template for the actions of one subgoal, which follows
+     * the standard procedure and objective context.
+     * This template includes {@code {{goal}}} and {@code {{subGoal}}} slots.
+     * 
+     * @return The user prompt template as a String
+     */
+    public static String getUserPromptTemplate() {
+        return """
+               Goal: ```{{goal}}```
+               Sub goal: ```{{subGoal}}```
+               
+               List the actions needed to achieve this sub goal. Each action is a unit level work that the system can perform in order to progress further in the goal. The system also has LLM capability and may have some checkpoints where it requires user approval before proceeding further. Ensure each action is detailed enough and stays within the scope of this sub goal.
+               
+               Give me the actions in JSON:
+               
+               ```json
+               {
+                 "actions": [
+                   "Detailed action 1",
+                   "Detailed action 2",
+                   "Detailed action 3"
+                 ]
+               }
+               ```
+               """;
+    }
+    
+    /**
+     * Formats the user prompt with the versions the {@link PromptRegistry} chooses for the objective.
+     * 
+     * @param objective The objective being decomposed
+     * @param standardProcedure The standard procedure for the objective
+     * @param goal The description of the goal the subgoal belongs to
+     * @param subGoal The description of the subgoal
+     * @return The formatted user prompt as a String
+     */
+    public static String formatUserPrompt(String objective, String standardProcedure, String goal, String subGoal) {
+        return ProcedureContextPrompt.formatContext(objective, standardProcedure) + instructions(objective, goal, subGoal);
+    }
+    
+    /**
+     * Formats the user prompt as content blocks with the context as a cached prefix.
+     * 
+     * @param objective The objective being decomposed
+     * @param standardProcedure The standard procedure for the objective
+     * @param goal The description of the goal the subgoal belongs to
+     * @param subGoal The description of the subgoal
+     * @return The content blocks of the user message
+     */
+    public static List<ContentBlock> formatUserContent(String objective, String standardProcedure,
+                                                       String goal, String subGoal) {
+        return ProcedureContextPrompt.withContext(objective, standardProcedure, instructions(objective, goal, subGoal));
+    }
+    
+    private static String instructions(String objective, String goal, String subGoal) {
+        return PromptRegistry.getDefault().select(NAME, objective).render("goal", goal, "subGoal", subGoal);
+    }
+}
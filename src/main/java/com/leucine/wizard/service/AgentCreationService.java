@@ -1,13 +1,21 @@
 package com.leucine.wizard.service;
 
+import com.leucine.config.AIConfig;
 import com.leucine.model.Agent;
+import com.leucine.utils.Ids;
 import com.leucine.wizard.model.WizardSession;
 import com.leucine.wizard.model.WizardState;
+import com.leucine.wizard.prompts.PromptRegistry;
+import com.leucine.wizard.store.SessionStore;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Singleton service for managing agent creation wizard sessions.
@@ -18,18 +26,26 @@ public class AgentCreationService {
     
     private static AgentCreationService instance;
     
-    // Map of agent IDs to wizard sessions
-    private final Map<String, WizardSession> sessions;
+    // Wizard sessions by ID
+    private final SessionStore sessions;
     
     // Service for decomposing objectives
     private final ObjectiveDecompositionService decompositionService;
     
+    // Decompositions currently running, keyed by normalized objective
+    private final Map<String, CompletableFuture<Agent>> inFlightDecompositions;
+    
+    // Whether concurrent identical objectives share one decomposition
+    private final boolean coalescingEnabled;
+    
     /**
      * Private constructor to enforce singleton pattern.
      */
     private AgentCreationService() {
-        this.sessions = new ConcurrentHashMap<>();
+        this.sessions = SessionStore.fromSettings();
         this.decompositionService = new ObjectiveDecompositionService();
+        this.inFlightDecompositions = new ConcurrentHashMap<>();
+        this.coalescingEnabled = AIConfig.getBooleanSetting("DECOMPOSITION_COALESCING_ENABLED", true);
     }
     
     /**
@@ -44,15 +60,31 @@ public class AgentCreationService {
         return instance;
     }
     
+    /**
+     * Shuts down the singleton instance, if one has been created, and the default prompt
+     * registry. Closes the session store, so its background threads stop and a file-backed
+     * store no longer writes its log, and the standard procedure cache. Called when the web
+     * application stops, so that a redeployed application is the only one using the session
+     * log. The next call to {@link #getInstance()} creates a new instance.
+     */
+    public static synchronized void shutdown() {
+        if (instance != null) {
+            instance.sessions.close();
+            instance.decompositionService.close();
+            instance = null;
+        }
+        PromptRegistry.closeDefault();
+    }
+    
     /**
      * Starts a new wizard session for creating an agent.
      * 
      * @return The ID of the new session
      */
     public String startNewSession() {
-        String sessionId = UUID.randomUUID().toString();
+        String sessionId = Ids.newSessionId();
         WizardSession session = new WizardSession(sessionId);
-        sessions.put(sessionId, session);
+        sessions.put(session);
         return sessionId;
     }
     
@@ -60,7 +92,7 @@ public class AgentCreationService {
      * Gets a wizard session by its ID.
      * 
      * @param sessionId The ID of the session to get
-     * @return The wizard session, or null if no session exists with the given ID
+     * @return The wizard session, or null if no session exists with the given ID or it has expired
      */
     public WizardSession getSession(String sessionId) {
         return sessions.get(sessionId);
@@ -74,43 +106,169 @@ public class AgentCreationService {
      * @param objective The objective to process
      * @return The updated wizard session
      * @throws IllegalArgumentException If no session exists with the given ID
+     * @throws IllegalStateException If the session is already processing an objective or is completed
      * @throws IOException If there's an error communicating with the Claude API
      */
     public WizardSession processObjective(String sessionId, String objective) throws IOException {
+        return processObjective(sessionId, objective, DecompositionListener.NONE);
+    }
+    
+    /**
+     * Processes an objective for a wizard session, reporting state transitions and
+     * decomposition progress to the given listener.
+     * 
+     * @param sessionId The ID of the session
+     * @param objective The objective to process
+     * @param listener The listener to notify of progress
+     * @return The updated wizard session
+     * @throws IllegalArgumentException If no session exists with the given ID
+     * @throws IllegalStateException If the session is already processing an objective or is completed
+     * @throws IOException If there's an error communicating with the Claude API
+     */
+    public WizardSession processObjective(String sessionId, String objective, DecompositionListener listener) throws IOException {
         WizardSession session = getSession(sessionId);
         if (session == null) {
             throw new IllegalArgumentException("No session found with ID: " + sessionId);
         }
         
+        // Claim the session; only one request at a time may decompose an objective for it
+        if (!session.transition(WizardState.OBJECTIVE_ENTERED)) {
+            throw new IllegalStateException("An objective is already being processed for session: " + sessionId);
+        }
+        sessions.put(session);
+        listener.onStateChanged(WizardState.OBJECTIVE_ENTERED);
+        
         try {
-            // Update the session state
-            session.updateState(WizardState.OBJECTIVE_ENTERED);
-            
-            // Decompose the objective
-            Agent agent = decompositionService.decomposeObjective(objective);
+            // Decompose the objective, sharing the work with identical in-flight requests
+            Agent agent = coalescingEnabled
+                ? decomposeCoalesced(objective, listener)
+                : decompositionService.decomposeObjective(objective, listener);
             
             // Set the agent ID to match the session ID
             agent.setId(sessionId);
             
             
-            // Update the session with the agent and new state
-            session.setAgent(agent)
-                  .updateState(WizardState.OBJECTIVE_DECOMPOSED);
+            // Update the session with the agent and new state in one step
+            session.transition(WizardState.OBJECTIVE_DECOMPOSED, agent);
+            sessions.put(session);
+            listener.onStateChanged(WizardState.OBJECTIVE_DECOMPOSED);
             
             return session;
         } catch (Exception e) {
             // Handle any errors
             session.setError("Error processing objective: " + e.getMessage());
+            sessions.put(session);
+            listener.onStateChanged(WizardState.ERROR);
             throw e;
         }
     }
     
+    /**
+     * Creates agents for many objectives in one bulk job, for example to pre-generate agents
+     * for a catalogue overnight. The objectives are decomposed through the Message Batches
+     * API, and a wizard session is created for each as its result is read: in the
+     * OBJECTIVE_DECOMPOSED state with its agent, or in the ERROR state if it failed. The
+     * call blocks until every batch has ended, which can take up to a day.
+     * 
+     * @param objectives The objectives to create agents for
+     * @return The sessions created and the throughput of the job
+     * @throws IOException If a batch cannot be created, polled or read
+     */
+    public BulkJobReport createAgentsInBulk(List<String> objectives) throws IOException {
+        BulkJobReport report = new BulkJobReport(objectives);
+        long start = System.nanoTime();
+        decompositionService.decomposeInBatches(objectives, new BatchDecompositionListener() {
+            @Override
+            public void onAgent(int index, String objective, Agent agent) {
+                WizardSession session = new WizardSession(Ids.newSessionId());
+                agent.setId(session.getSessionId());
+                session.transition(WizardState.OBJECTIVE_ENTERED);
+                session.transition(WizardState.OBJECTIVE_DECOMPOSED, agent);
+                sessions.put(session);
+                report.recordSession(index, session.getSessionId(), null);
+            }
+            
+            @Override
+            public void onFailure(int index, String objective, String errorMessage) {
+                WizardSession session = new WizardSession(Ids.newSessionId());
+                session.setError("Error processing objective: " + errorMessage);
+                sessions.put(session);
+                report.recordSession(index, session.getSessionId(), errorMessage);
+            }
+        });
+        report.setElapsed(Duration.ofNanos(System.nanoTime() - start));
+        return report;
+    }
+    
+    /**
+     * Decomposes an objective, coalescing concurrent requests for the same objective.
+     * The first caller for a normalized objective runs the decomposition and streams
+     * progress to its own listener; callers arriving while it is in flight wait for the
+     * same result and receive a deep copy, with the finished tree replayed to their listener.
+     * The first caller keeps the tree whose ids it streamed and shares a copy of it, so the
+     * followers' copies are never taken from a tree that some caller is changing.
+     * 
+     * @param objective The objective to decompose
+     * @param listener The listener to notify of progress
+     * @return An agent owned exclusively by the caller
+     * @throws IOException If there's an error communicating with the Claude API
+     */
+    private Agent decomposeCoalesced(String objective, DecompositionListener listener) throws IOException {
+        String key = normalizeObjective(objective);
+        CompletableFuture<Agent> future = new CompletableFuture<>();
+        CompletableFuture<Agent> inFlight = inFlightDecompositions.putIfAbsent(key, future);
+        
+        if (inFlight == null) {
+            try {
+                Agent agent = decompositionService.decomposeObjective(objective, listener);
+                future.complete(agent.copy());
+                return agent;
+            } catch (IOException | RuntimeException e) {
+                future.completeExceptionally(e);
+                throw e;
+            } finally {
+                inFlightDecompositions.remove(key, future);
+            }
+        }
+        
+        try {
+            Agent agent = inFlight.get().copy();
+            listener.onStandardProcedureChunk(agent.getStandardProcedure());
+            DecompositionListener.replayGoals(agent, listener);
+            return agent;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a shared decomposition", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException("Shared decomposition failed", cause);
+        }
+    }
+    
+    /**
+     * Normalizes an objective for coalescing: trims it, collapses whitespace and ignores case.
+     * 
+     * @param objective The objective to normalize
+     * @return The normalized objective
+     */
+    private static String normalizeObjective(String objective) {
+        return objective.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+    
     /**
      * Reviews and confirms an agent in a wizard session.
+     * Reviewing an already reviewed agent succeeds without changing the session.
      * 
      * @param sessionId The ID of the session
      * @return The updated wizard session
-     * @throws IllegalArgumentException If no session exists with the given ID or the session is not in the correct state
+     * @throws IllegalArgumentException If no session exists with the given ID
+     * @throws IllegalStateException If the session is not in the correct state
      */
     public WizardSession reviewAgent(String sessionId) {
         WizardSession session = getSession(sessionId);
@@ -118,22 +276,22 @@ public class AgentCreationService {
             throw new IllegalArgumentException("No session found with ID: " + sessionId);
         }
         
-        if (session.getState() != WizardState.OBJECTIVE_DECOMPOSED) {
-            throw new IllegalArgumentException("Session is not in the correct state for review. Current state: " + session.getState());
-        }
-        
         // Update the session state
-        session.updateState(WizardState.AGENT_REVIEWED);
+        if (transition(session, WizardState.AGENT_REVIEWED, "review")) {
+            sessions.put(session);
+        }
         
         return session;
     }
     
     /**
      * Completes the agent creation process for a wizard session.
+     * Completing an already completed session returns the same agent.
      * 
      * @param sessionId The ID of the session
      * @return The created agent
-     * @throws IllegalArgumentException If no session exists with the given ID or the session is not in the correct state
+     * @throws IllegalArgumentException If no session exists with the given ID
+     * @throws IllegalStateException If the session is not in the correct state
      */
     public Agent completeAgentCreation(String sessionId) {
         WizardSession session = getSession(sessionId);
@@ -141,16 +299,51 @@ public class AgentCreationService {
             throw new IllegalArgumentException("No session found with ID: " + sessionId);
         }
         
-        if (session.getState() != WizardState.AGENT_REVIEWED) {
-            throw new IllegalArgumentException("Session is not in the correct state for completion. Current state: " + session.getState());
-        }
-        
         // Update the session state
-        session.updateState(WizardState.COMPLETED);
+        if (transition(session, WizardState.COMPLETED, "completion")) {
+            sessions.put(session);
+        }
         
         return session.getAgent();
     }
     
+    /**
+     * Applies a user-requested transition, describing a rejected transition in terms of the step.
+     * 
+     * @param session The session
+     * @param target The requested state
+     * @param step The name of the wizard step, used in the error message
+     * @return true if the state changed, false if the session was already in the target state
+     * @throws IllegalStateException If the session is not in the correct state
+     */
+    private static boolean transition(WizardSession session, WizardState target, String step) {
+        try {
+            return session.transition(target);
+        } catch (IllegalStateException e) {
+            throw new IllegalStateException("Session is not in the correct state for " + step
+                + ". Current state: " + session.getState(), e);
+        }
+    }
+    
+    /**
+     * Marks a wizard session as failed, for example when its work could not be scheduled.
+     * 
+     * @param sessionId The ID of the session
+     * @param errorMessage The error message
+     */
+    public void failSession(String sessionId, String errorMessage) {
+        WizardSession session = getSession(sessionId);
+        if (session == null) {
+            return;
+        }
+        try {
+            session.setError(errorMessage);
+            sessions.put(session);
+        } catch (IllegalStateException e) {
+            // A completed session keeps its agent
+        }
+    }
+    
     /**
      * Removes a wizard session.
      * 
@@ -158,7 +351,7 @@ public class AgentCreationService {
      * @return true if the session was removed, false if no session existed with the given ID
      */
     public boolean removeSession(String sessionId) {
-        return sessions.remove(sessionId) != null;
+        return sessions.remove(sessionId);
     }
     
     /**
@@ -169,4 +362,13 @@ public class AgentCreationService {
     public int getActiveSessionCount() {
         return sessions.size();
     }
+    
+    /**
+     * Gets the store holding the wizard sessions, for example to read its eviction counters.
+     * 
+     * @return The session store
+     */
+    public SessionStore getSessionStore() {
+        return sessions;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,29 @@
+package com.leucine.wizard.service;
+
+import com.leucine.model.Agent;
+
+/**
+ * Receives the outcome of each objective of a batch decomposition.
+ * Exactly one method is called for every objective, in the order results arrive,
+ * and never concurrently.
+ */
+public interface BatchDecompositionListener {
+
+    /**
+     * Called when an objective has been decomposed.
+     *
+     * @param index The position of the objective in the submitted list
+     * @param objective The objective
+     * @param agent The decomposed agent
+     */
+    void onAgent(int index, String objective, Agent agent);
+
+    /**
+     * Called when an objective could not be decomposed.
+     *
+     * @param index The position of the objective in the submitted list
+     * @param objective The objective
+     * @param errorMessage Why the decomposition failed
+     */
+    void onFailure(int index, String objective, String errorMessage);
+}
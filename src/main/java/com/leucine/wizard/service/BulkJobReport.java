@@ -0,0 +1,111 @@
+package com.leucine.wizard.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The outcome of a bulk agent creation job: the wizard session created for each objective,
+ * the objectives that failed, and the throughput of the job.
+ */
+public class BulkJobReport {
+    
+    private final List<String> objectives;
+    private final AtomicReferenceArray<String> sessionIds;
+    private final AtomicReferenceArray<String> errors;
+    private volatile Duration elapsed = Duration.ZERO;
+    
+    /**
+     * Creates an empty report for the given objectives.
+     * 
+     * @param objectives The objectives of the job
+     */
+    BulkJobReport(List<String> objectives) {
+        this.objectives = new ArrayList<>(objectives);
+        this.sessionIds = new AtomicReferenceArray<>(objectives.size());
+        this.errors = new AtomicReferenceArray<>(objectives.size());
+    }
+    
+    void recordSession(int index, String sessionId, String errorMessage) {
+        sessionIds.set(index, sessionId);
+        errors.set(index, errorMessage);
+    }
+    
+    void setElapsed(Duration elapsed) {
+        this.elapsed = elapsed;
+    }
+    
+    /**
+     * Gets the objectives of the job, in submission order.
+     * 
+     * @return The objectives
+     */
+    public List<String> getObjectives() {
+        return objectives;
+    }
+    
+    /**
+     * Gets the wizard session created for an objective. Failed objectives have a session
+     * in the ERROR state.
+     * 
+     * @param index The position of the objective
+     * @return The session ID, or null if the job did not reach the objective
+     */
+    public String getSessionId(int index) {
+        return sessionIds.get(index);
+    }
+    
+    /**
+     * Gets why an objective failed.
+     * 
+     * @param index The position of the objective
+     * @return The error message, or null if the objective succeeded
+     */
+    public String getError(int index) {
+        return errors.get(index);
+    }
+    
+    /**
+     * Gets the number of objectives that produced an agent.
+     * 
+     * @return The number of agents created
+     */
+    public int getSucceededCount() {
+        int count = 0;
+        for (int i = 0; i < objectives.size(); i++) {
+            if (sessionIds.get(i) != null && errors.get(i) == null) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Gets the number of objectives that failed.
+     * 
+     * @return The number of failures
+     */
+    public int getFailedCount() {
+        return objectives.size() - getSucceededCount();
+    }
+    
+    /**
+     * Gets the wall-clock time of the job.
+     * 
+     * @return The elapsed time
+     */
+    public Duration getElapsed() {
+        return elapsed;
+    }
+    
+    /**
+     * Gets the throughput of the job.
+     * 
+     * @return Agents created per hour of wall-clock time
+     */
+    public double getAgentsPerHour() {
+        long millis = elapsed.toMillis();
+        return millis == 0 ? 0 : getSucceededCount() * 3_600_000.0 / millis;
+    }
+}
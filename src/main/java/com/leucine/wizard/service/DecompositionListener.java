@@ -0,0 +1,88 @@
+package com.leucine.wizard.service;
+
+import com.leucine.model.Action;
+import com.leucine.model.Agent;
+import com.leucine.model.Goal;
+import com.leucine.model.SubGoal;
+import com.leucine.wizard.model.WizardState;
+
+/**
+ * Receives progress notifications while an objective is being decomposed.
+ * All methods have empty default implementations so listeners only need to
+ * override the events they care about.
+ *
+ * <p>Tree events are delivered in the order elements are completed: each action,
+ * then the subgoal that contains it, then the goal once all of its subgoals are done.
+ * The parent objects passed along with an event may not be fully populated yet,
+ * but their IDs are stable.</p>
+ */
+public interface DecompositionListener {
+
+    /**
+     * A listener that ignores every event.
+     */
+    DecompositionListener NONE = new DecompositionListener() {};
+
+    /**
+     * Called when the wizard session moves to a new state.
+     *
+     * @param state The new state
+     */
+    default void onStateChanged(WizardState state) {}
+
+    /**
+     * Called with a piece of the standard procedure text as it becomes available.
+     *
+     * @param text The next chunk of the standard procedure
+     */
+    default void onStandardProcedureChunk(String text) {}
+
+    /**
+     * Called when an action has been parsed.
+     *
+     * @param subGoal The subgoal the action belongs to
+     * @param action The parsed action
+     */
+    default void onAction(SubGoal subGoal, Action action) {}
+
+    /**
+     * Called when a subgoal and all of its actions have been parsed.
+     *
+     * @param goal The goal the subgoal belongs to
+     * @param subGoal The parsed subgoal
+     */
+    default void onSubGoal(Goal goal, SubGoal subGoal) {}
+
+    /**
+     * Called when a goal and all of its subgoals have been parsed.
+     *
+     * @param goal The parsed goal
+     */
+    default void onGoal(Goal goal) {}
+
+    /**
+     * Replays the goal tree of an already built agent to a listener,
+     * in the same order the events would have been produced while parsing.
+     *
+     * @param agent The agent whose goals should be replayed
+     * @param listener The listener to notify
+     */
+    static void replayGoals(Agent agent, DecompositionListener listener) {
+        if (agent == null || agent.getGoals() == null) {
+            return;
+        }
+        for (Goal goal : agent.getGoals()) {
+            if (goal.getSubgoals() != null) {
+                for (SubGoal subGoal : goal.getSubgoals()) {
+                    if (subGoal.getActions() != null) {
+                        for (Action action : subGoal.getActions()) {
+                            listener.onAction(subGoal, action);
+                        }
+                    }
+                    listener.onSubGoal(goal, subGoal);
+                }
+            }
+            listener.onGoal(goal);
+        }
+    }
+}
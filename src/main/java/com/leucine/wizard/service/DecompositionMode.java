@@ -0,0 +1,41 @@
+package com.leucine.wizard.service;
+
+import com.leucine.config.AIConfig;
+
+/**
+ * How the goal tree of an objective is generated from its standard procedure.
+ * Selected with the {@code DECOMPOSITION_MODE} setting.
+ */
+public enum DecompositionMode {
+    /**
+     * One completion generates the whole goal, subgoal and action tree (the default).
+     */
+    SINGLE,
+
+    /**
+     * One short completion generates the goal and subgoal skeleton, then the actions of
+     * every subgoal are generated by separate calls running in parallel.
+     */
+    PARALLEL,
+
+    /**
+     * Like {@link #PARALLEL}, but the skeleton is generated per top-level phase of the
+     * standard procedure, starting as soon as each phase has been streamed, so skeleton
+     * generation overlaps with the rest of the standard procedure.
+     */
+    PIPELINED;
+
+    /**
+     * Gets the configured decomposition mode.
+     *
+     * @return The decomposition mode to use
+     */
+    public static DecompositionMode fromSettings() {
+        String value = AIConfig.getSetting("DECOMPOSITION_MODE", "single");
+        try {
+            return valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Unknown DECOMPOSITION_MODE: " + value);
+        }
+    }
+}
@@ -1,40 +1,69 @@
 package com.leucine.wizard.service;
 
-import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
 import com.google.gson.JsonSyntaxException;
-import com.leucine.model.Agent;
+import com.leucine.config.AIConfig;
 import com.leucine.model.Action;
+import com.leucine.model.Agent;
 import com.leucine.model.Goal;
 import com.leucine.model.SubGoal;
+import com.leucine.utils.AsyncFanOut;
 import com.leucine.utils.ClaudeClient;
+import com.leucine.utils.ResponseCache;
+import com.leucine.wizard.prompts.GoalSkeletonPrompt;
+import com.leucine.wizard.prompts.PhaseSkeletonPrompt;
 import com.leucine.wizard.prompts.StandardProcedurePrompt;
 import com.leucine.wizard.prompts.ActionDecompositionPrompt;
+import com.leucine.wizard.prompts.SubGoalActionsPrompt;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
 /**
  * Service for decomposing high-level objectives into structured goals, subgoals, and actions
  * using Claude AI.
+ * 
+ * <p>The goal tree is generated according to the {@link DecompositionMode}. In parallel mode
+ * the number of concurrent action calls per objective is limited by the
+ * {@code DECOMPOSITION_PARALLELISM} setting (default 4), and a subgoal whose actions cannot
+ * be parsed is requested again up to {@code DECOMPOSITION_BRANCH_RETRIES} times (default 2).</p>
+ * 
+ * <p>Many objectives can also be decomposed at once through the Message Batches API with
+ * {@link #decomposeInBatches}. Batch status is checked after {@code BATCH_POLL_INITIAL_SECONDS}
+ * (default 30), backing off to every {@code BATCH_POLL_MAX_SECONDS} (default 300), and at most
+ * {@code BATCH_MAX_REQUESTS} (default 10000) requests are sent in one batch.</p>
  */
 public class ObjectiveDecompositionService {
     
     private final ClaudeClient claudeClient;
-    private final Gson gson;
-    private String currentStandardProcedure;
+    // Views of the client that tag metrics with the call site
+    private final ClaudeClient procedureClient;
+    private final ClaudeClient decompositionClient;
+    private final ClaudeClient skeletonClient;
+    private final ClaudeClient actionsClient;
+    private final ClaudeClient batchClient;
+    private final ResponseCache standardProcedureCache;
+    private final DecompositionMode mode;
+    private final int parallelism;
+    private final int branchRetries;
+    private final long batchInitialPollMillis;
+    private final long batchMaxPollMillis;
+    private final int batchMaxRequests;
     
     /**
      * Constructs a new ObjectiveDecompositionService with default settings.
      */
     public ObjectiveDecompositionService() {
-        this.claudeClient = new ClaudeClient.Builder()
+        this(new ClaudeClient.Builder()
                 .withTemperature(0.7) // Lower temperature for more deterministic outputs
-                .build();
-        this.currentStandardProcedure = null;
-        this.gson = new Gson();
+                .build());
     }
     
     /**
@@ -43,9 +72,52 @@ public class ObjectiveDecompositionService {
      * @param claudeClient The Claude client to use for API calls
      */
     public ObjectiveDecompositionService(ClaudeClient claudeClient) {
+        this(claudeClient, ResponseCache.forStandardProcedures());
+    }
+    
+    /**
+     * Constructs a new ObjectiveDecompositionService with a custom Claude client and
+     * standard procedure cache.
+     * 
+     * @param claudeClient The Claude client to use for API calls
+     * @param standardProcedureCache The cache for standard procedures, or null to disable caching
+     */
+    public ObjectiveDecompositionService(ClaudeClient claudeClient, ResponseCache standardProcedureCache) {
+        this(claudeClient, standardProcedureCache, DecompositionMode.fromSettings());
+    }
+    
+    /**
+     * Constructs a new ObjectiveDecompositionService with a custom Claude client,
+     * standard procedure cache and decomposition mode.
+     * 
+     * @param claudeClient The Claude client to use for API calls
+     * @param standardProcedureCache The cache for standard procedures, or null to disable caching
+     * @param mode How the goal tree is generated
+     */
+    public ObjectiveDecompositionService(ClaudeClient claudeClient, ResponseCache standardProcedureCache,
+                                         DecompositionMode mode) {
         this.claudeClient = claudeClient;
-        this.currentStandardProcedure = null;
-        this.gson = new Gson();
+        this.procedureClient = claudeClient.withCallSite("standard_procedure");
+        this.decompositionClient = claudeClient.withCallSite("decomposition");
+        this.skeletonClient = claudeClient.withCallSite("goal_skeleton");
+        this.actionsClient = claudeClient.withCallSite("subgoal_actions");
+        this.batchClient = claudeClient.withCallSite("batch");
+        this.standardProcedureCache = standardProcedureCache;
+        this.mode = mode;
+        this.parallelism = AIConfig.getIntSetting("DECOMPOSITION_PARALLELISM", 4);
+        this.branchRetries = AIConfig.getIntSetting("DECOMPOSITION_BRANCH_RETRIES", 2);
+        this.batchInitialPollMillis = AIConfig.getLongSetting("BATCH_POLL_INITIAL_SECONDS", 30) * 1000;
+        this.batchMaxPollMillis = AIConfig.getLongSetting("BATCH_POLL_MAX_SECONDS", 300) * 1000;
+        this.batchMaxRequests = AIConfig.getIntSetting("BATCH_MAX_REQUESTS", 10000);
+    }
+    
+    /**
+     * Closes the standard procedure cache, stopping the background sweeps of its disk tier.
+     */
+    public void close() {
+        if (standardProcedureCache != null) {
+            standardProcedureCache.close();
+        }
     }
     
     /**
@@ -58,149 +130,434 @@ public class ObjectiveDecompositionService {
      * @throws JsonSyntaxException If the response cannot be parsed as valid JSON
      */
     public Agent decomposeObjective(String objective) throws IOException, JsonSyntaxException {
-        // Step 1: Get the standard procedure
-        String standardProcedure = getStandardProcedure(objective);
+        return decomposeObjective(objective, DecompositionListener.NONE);
+    }
+    
+    /**
+     * Decomposes an objective into goals, subgoals, and actions using Claude AI,
+     * reporting progress to the given listener as results become available.
+     * 
+     * @param objective The objective to decompose
+     * @param listener The listener to notify of progress
+     * @return An Agent object containing the decomposed goals, subgoals, and actions
+     * @throws IOException If there's an error communicating with the Claude API
+     * @throws JsonSyntaxException If the response cannot be parsed as valid JSON
+     */
+    public Agent decomposeObjective(String objective, DecompositionListener listener) throws IOException, JsonSyntaxException {
+        if (mode == DecompositionMode.PIPELINED) {
+            return decomposePipelined(objective, listener);
+        }
+        
+        // Step 1: Get the standard procedure, streaming it to the listener as it is generated
+        String standardProcedure = getStandardProcedure(objective, listener);
         
         // Step 2: Decompose the objective using the standard procedure
-        return decomposeWithStandardProcedure(objective, standardProcedure);
+        if (mode == DecompositionMode.PARALLEL) {
+            return decomposeInParallel(objective, standardProcedure, listener);
+        }
+        return decomposeWithStandardProcedure(objective, standardProcedure, listener);
+    }
+    
+    /**
+     * Decomposes many objectives through the Message Batches API, which trades latency for
+     * lower cost and separate rate limits. Standard procedures not in the cache are generated
+     * by one batch and the goal trees by a second one, using the single-call prompts with the
+     * procedure as a cached prefix. Results are streamed to the listener as they are read,
+     * so the agents are never all held in memory at once.
+     * 
+     * @param objectives The objectives to decompose
+     * @param listener Receives the agent or the failure of every objective
+     * @throws IOException If a batch cannot be created, polled or read
+     */
+    public void decomposeInBatches(List<String> objectives, BatchDecompositionListener listener) throws IOException {
+        // Step 1: Standard procedures, from the cache where possible
+        String[] procedures = new String[objectives.size()];
+        String[] cacheKeys = new String[objectives.size()];
+        List<ClaudeClient.BatchRequest> procedureRequests = new ArrayList<>();
+        for (int i = 0; i < objectives.size(); i++) {
+            String userPrompt = StandardProcedurePrompt.formatUserPrompt(objectives.get(i));
+            if (standardProcedureCache != null) {
+                cacheKeys[i] = ResponseCache.key(claudeClient.getModel(), claudeClient.getTemperature(), userPrompt);
+                procedures[i] = standardProcedureCache.get(cacheKeys[i]);
+            }
+            if (procedures[i] == null) {
+                procedureRequests.add(batchClient.newBatchRequest(String.valueOf(i), userPrompt));
+            }
+        }
+        runBatches(procedureRequests, objectives, listener, (index, response) -> {
+            procedures[index] = response.getTextContent();
+            // Only cache complete procedures, not ones cut off by the token limit
+            if (cacheKeys[index] != null && "end_turn".equals(response.getStopReason())) {
+                standardProcedureCache.put(cacheKeys[index], procedures[index]);
+            }
+        });
+        
+        // Step 2: Goal trees for every objective that has a procedure
+        List<ClaudeClient.BatchRequest> decompositionRequests = new ArrayList<>();
+        for (int i = 0; i < objectives.size(); i++) {
+            if (procedures[i] != null) {
+                decompositionRequests.add(batchClient.newBatchRequest(String.valueOf(i),
+                    ActionDecompositionPrompt.formatUserContent(objectives.get(i), procedures[i])));
+            }
+        }
+        runBatches(decompositionRequests, objectives, listener, (index, response) -> {
+            String objective = objectives.get(index);
+            if ("max_tokens".equals(response.getStopReason())) {
+                listener.onFailure(index, objective, "Response was cut off by the token limit");
+                return;
+            }
+            try {
+                listener.onAgent(index, objective, parseResponse(response.getTextContent(), objective, procedures[index]));
+            } catch (JsonSyntaxException e) {
+                listener.onFailure(index, objective, e.getMessage());
+            }
+        });
+    }
+    
+    /**
+     * Submits requests in batches of at most {@code BATCH_MAX_REQUESTS}, waits for each batch
+     * to end and passes every succeeded response to the handler. Requests that did not
+     * succeed, or have no result, are reported to the listener as failures.
+     * 
+     * @param requests The requests, with the objective index as custom ID
+     * @param objectives The objectives of the job
+     * @param listener The listener to report failures to
+     * @param handler Receives the objective index and response of each succeeded request
+     * @throws IOException If a batch cannot be created, polled or read
+     */
+    private void runBatches(List<ClaudeClient.BatchRequest> requests, List<String> objectives,
+                            BatchDecompositionListener listener,
+                            BiConsumer<Integer, ClaudeClient.ClaudeResponse> handler) throws IOException {
+        // Submit every batch first so they are processed concurrently
+        List<ClaudeClient.MessageBatch> batches = new ArrayList<>();
+        for (int start = 0; start < requests.size(); start += batchMaxRequests) {
+            batches.add(batchClient.createBatch(requests.subList(start, Math.min(requests.size(), start + batchMaxRequests))));
+        }
+        
+        boolean[] answered = new boolean[objectives.size()];
+        for (ClaudeClient.MessageBatch batch : batches) {
+            ClaudeClient.MessageBatch ended = batchClient.awaitBatch(batch.getId(), batchInitialPollMillis, batchMaxPollMillis);
+            batchClient.readBatchResults(ended, result -> {
+                int index = Integer.parseInt(result.getCustomId());
+                answered[index] = true;
+                if (result.isSucceeded()) {
+                    handler.accept(index, result.getMessage());
+                } else {
+                    listener.onFailure(index, objectives.get(index), "Batch request " + result.getType() + ": " + result.getErrorMessage());
+                }
+            });
+        }
+        for (ClaudeClient.BatchRequest request : requests) {
+            int index = Integer.parseInt(request.getCustomId());
+            if (!answered[index]) {
+                listener.onFailure(index, objectives.get(index), "No result was returned for the batch request");
+            }
+        }
     }
     
     /**
      * Gets the standard procedure for an objective using Claude AI.
+     * The response is streamed so the listener sees the procedure text as it is generated.
+     * Complete procedures are cached by prompt, so repeated objectives skip the call entirely.
      * 
      * @param objective The objective to get the standard procedure for
+     * @param listener The listener to notify with procedure text chunks
      * @return The standard procedure as a markdown string
      * @throws IOException If there's an error communicating with the Claude API
      */
-    private String getStandardProcedure(String objective) throws IOException {
+    private String getStandardProcedure(String objective, DecompositionListener listener) throws IOException {
         // Format the user prompt with the objective
         String userPrompt = StandardProcedurePrompt.formatUserPrompt(objective);
         
+        // Serve repeated objectives from the cache
+        String cacheKey = null;
+        if (standardProcedureCache != null) {
+            cacheKey = ResponseCache.key(claudeClient.getModel(), claudeClient.getTemperature(), userPrompt);
+            String cached = standardProcedureCache.get(cacheKey);
+            if (cached != null) {
+                listener.onStandardProcedureChunk(cached);
+                return cached;
+            }
+        }
+        
         // Send the request to Claude
-        ClaudeClient.ClaudeResponse response = claudeClient.sendMessage(userPrompt);
+        ClaudeClient.ClaudeResponse response = procedureClient.streamMessage(userPrompt, listener::onStandardProcedureChunk);
         
         // Extract the text content from the response
-        this.currentStandardProcedure = response.getTextContent();
-        return this.currentStandardProcedure;
+        String standardProcedure = response.getTextContent();
+        
+        // Only cache complete procedures, not ones cut off by the token limit
+        if (cacheKey != null && "end_turn".equals(response.getStopReason())) {
+            standardProcedureCache.put(cacheKey, standardProcedure);
+        }
+        return standardProcedure;
     }
     
     /**
      * Decomposes an objective into goals, subgoals, and actions using the standard procedure.
+     * The response is streamed straight into a {@link StreamingAgentParser}, so goals, subgoals
+     * and actions reach the listener while Claude is still generating the rest of the tree.
      */
-    private Agent decomposeWithStandardProcedure(String objective, String standardProcedure) throws IOException, JsonSyntaxException {
-        // Format the user prompt with the objective and standard procedure
-        String userPrompt = ActionDecompositionPrompt.formatUserPrompt(objective, standardProcedure);
+    private Agent decomposeWithStandardProcedure(String objective, String standardProcedure,
+                                                 DecompositionListener listener) throws IOException, JsonSyntaxException {
+        // Format the user prompt with the objective and standard procedure as a cached prefix
+        List<ClaudeClient.ContentBlock> userContent = ActionDecompositionPrompt.formatUserContent(objective, standardProcedure);
         
-        // Send the request to Claude and parse the response
-        ClaudeClient.ClaudeResponse response = claudeClient.sendMessage(userPrompt);
-        Agent agent = parseResponse(response.getTextContent(), objective, standardProcedure);
+        // Stream the response from Claude into the incremental parser
+        StreamingAgentParser parser = new StreamingAgentParser(objective, standardProcedure, listener);
+        decompositionClient.streamMessage(userContent, parser);
+        try {
+            return parser.finish();
+        } catch (JsonSyntaxException e) {
+            throw new JsonSyntaxException("Failed to parse Claude response as JSON: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Decomposes an objective in two phases. A short call generates the goal and subgoal
+     * skeleton, then the actions of every subgoal are generated by concurrent calls and merged
+     * into the skeleton. Listener events for a subgoal are sent when its actions arrive, and
+     * for a goal when all of its subgoals are done; they are never delivered concurrently.
+     * If a subgoal fails after its retries, the calls still running are cancelled.
+     */
+    private Agent decomposeInParallel(String objective, String standardProcedure,
+                                      DecompositionListener listener) throws IOException, JsonSyntaxException {
+        // Phase 1: the goal and subgoal skeleton, which also writes the cached context
+        List<ClaudeClient.ContentBlock> skeletonContent = GoalSkeletonPrompt.formatUserContent(objective, standardProcedure);
+        Agent agent = parseResponse(skeletonClient.sendMessage(skeletonContent).getTextContent(), objective, standardProcedure);
+        
+        // Phase 2: the actions of every subgoal, generated concurrently from the cached context
+        generateActions(agent, objective, standardProcedure, listener);
         return agent;
     }
     
     /**
-     * Parses the JSON response from Claude into an Agent object with goals and subgoals.
-     * 
-     * @param responseContent The JSON response from Claude
-     * @param originalObjective The original objective that was decomposed
-     * @param standardProcedure The standard procedure for achieving the objective
-     * @return An Agent object containing the decomposed goals and subgoals
-     * @throws JsonSyntaxException If the response cannot be parsed as valid JSON
+     * Decomposes an objective while its standard procedure is still being generated. Each
+     * top-level phase of the streamed procedure is sent for its own goal and subgoal skeleton
+     * as soon as the next phase begins. Once the whole procedure is known, the phase skeletons
+     * are joined in procedure order and the subgoal actions are generated from the complete
+     * procedure, as in {@link DecompositionMode#PARALLEL} mode. A procedure without top-level
+     * headings falls back to that mode.
      */
-    @SuppressWarnings("unchecked")
-    private Agent parseResponse(String responseContent, String originalObjective, String standardProcedure) throws JsonSyntaxException {
+    private Agent decomposePipelined(String objective, DecompositionListener listener) throws IOException, JsonSyntaxException {
+        // Phases are added from the stream callback; reading them after the procedure
+        // call has returned is ordered by the completion of that call
+        List<CompletableFuture<List<Goal>>> phases = new ArrayList<>();
+        ProcedurePhaseSplitter splitter = new ProcedurePhaseSplitter(phase -> {
+            CompletableFuture<List<Goal>> goals = new CompletableFuture<>();
+            // Each phase is different and short, so there is nothing worth caching
+            List<ClaudeClient.ContentBlock> content =
+                List.of(ClaudeClient.ContentBlock.text(PhaseSkeletonPrompt.formatUserPrompt(objective, phase)));
+            requestParsed(skeletonClient, content, 0, text -> parseResponse(text, objective, phase).getGoals(), goals);
+            phases.add(goals);
+        });
+        DecompositionListener splitting = new DecompositionListener() {
+            @Override
+            public void onStandardProcedureChunk(String text) {
+                listener.onStandardProcedureChunk(text);
+                splitter.accept(text);
+            }
+        };
+        
+        String standardProcedure;
         try {
-            // Extract JSON from the response (in case it contains markdown or other text)
-            String jsonContent = extractJsonFromResponse(responseContent);
-            
-            // Parse the JSON response
-            Map<String, Object> jsonResponse = gson.fromJson(jsonContent, Map.class);
-            
-            // Get the objective from the response or use the original
-            String responseObjective = (String) jsonResponse.get("objective");
-            if (responseObjective == null || responseObjective.trim().isEmpty()) {
-                responseObjective = originalObjective;
-            }
-            
-            // Get the agent name from the response or use a default
-            String agentName = (String) jsonResponse.get("agentName");
-            if (agentName == null || agentName.trim().isEmpty()) {
-                agentName = "Agent for " + originalObjective;
-            }
-            
-            // Create a new agent with a UUID, name, and objective
-            Agent agent = new Agent(UUID.randomUUID().toString(), agentName, responseObjective);
-            
-            // Set the standard procedure if available
-            agent.setStandardProcedure(standardProcedure);
-            
-            // Process the goals
-            List<Map<String, Object>> goalsList = (List<Map<String, Object>>) jsonResponse.get("goals");
-            if (goalsList != null) {
-                for (Map<String, Object> goalMap : goalsList) {
-                    // Create a new goal
-                    String goalDescription = (String) goalMap.get("description");
-                    Goal goal = new Goal(goalDescription);
-                    
-                    // Process subgoals if they exist
-                    List<Map<String, Object>> subgoalsList = (List<Map<String, Object>>) goalMap.get("subgoals");
-                    if (subgoalsList != null) {
-                        for (Map<String, Object> subgoalMap : subgoalsList) {
-                            // Create a new subgoal
-                            String subgoalDescription = (String) subgoalMap.get("description");
-                            String subgoalName = (String) subgoalMap.get("name");
-                            SubGoal subgoal = new SubGoal(subgoalDescription);
-                            
-                            // Set the name if available
-                            if (subgoalName != null && !subgoalName.trim().isEmpty()) {
-                                subgoal.setDescription(subgoalName + ": " + subgoalDescription);
-                            }
-                            
-                            // Process actions if they exist
-                            List<String> actionsList = (List<String>) subgoalMap.get("actions");
-                            if (actionsList != null) {
-                                for (String actionDescription : actionsList) {
-                                    // Create a new action and add it to the subgoal
-                                    Action action = new Action(actionDescription);
-                                    subgoal.addAction(action);
-                                }
-                            }
-                            
-                            goal.addSubgoal(subgoal);
-                        }
+            standardProcedure = getStandardProcedure(objective, splitting);
+            splitter.finish();
+            ClaudeClient.await(CompletableFuture.allOf(phases.toArray(new CompletableFuture<?>[0])));
+        } catch (IOException | RuntimeException e) {
+            phases.forEach(phase -> phase.cancel(true));
+            throw e;
+        }
+        if (phases.isEmpty()) {
+            return decomposeInParallel(objective, standardProcedure, listener);
+        }
+        
+        Agent agent = new Agent();
+        agent.setName("Agent for " + objective);
+        agent.setObjective(objective);
+        agent.setStandardProcedure(standardProcedure);
+        for (CompletableFuture<List<Goal>> phase : phases) {
+            phase.join().forEach(agent::addGoal);
+        }
+        generateActions(agent, objective, standardProcedure, listener);
+        return agent;
+    }
+    
+    /**
+     * Generates the actions of every subgoal of a skeleton with concurrent, individually
+     * retried calls and merges them into the skeleton. Once a branch has failed, branches
+     * that still finish are discarded, so the listener hears nothing after the failure.
+     */
+    private void generateActions(Agent agent, String objective, String standardProcedure,
+                                 DecompositionListener listener) throws IOException {
+        Object listenerLock = new Object();
+        // Guarded by listenerLock
+        AtomicBoolean failed = new AtomicBoolean();
+        List<Branch> branches = new ArrayList<>();
+        for (Goal goal : agent.getGoals()) {
+            if (goal.getSubgoals().isEmpty()) {
+                listener.onGoal(goal);
+                continue;
+            }
+            AtomicInteger pendingSubGoals = new AtomicInteger(goal.getSubgoals().size());
+            for (SubGoal subGoal : goal.getSubgoals()) {
+                branches.add(new Branch(goal, subGoal, pendingSubGoals));
+            }
+        }
+        
+        CompletableFuture<List<List<String>>> actions = AsyncFanOut.all(branches, parallelism, branch -> {
+            List<ClaudeClient.ContentBlock> content = SubGoalActionsPrompt.formatUserContent(
+                objective, standardProcedure, branch.goal.getDescription(), branch.subGoal.getDescription());
+            CompletableFuture<List<String>> result = new CompletableFuture<>();
+            requestParsed(actionsClient, content, 0, ObjectiveDecompositionService::parseActions, result);
+            CompletableFuture<List<String>> merged = result.thenApply(descriptions -> {
+                synchronized (listenerLock) {
+                    if (failed.get()) {
+                        return descriptions;
+                    }
+                    for (String description : descriptions) {
+                        Action action = new Action(description);
+                        branch.subGoal.addAction(action);
+                        listener.onAction(branch.subGoal, action);
                     }
-                    
-                    // Add the goal to the agent
-                    agent.addGoal(goal);
+                    listener.onSubGoal(branch.goal, branch.subGoal);
+                    if (branch.pendingSubGoals.decrementAndGet() == 0) {
+                        listener.onGoal(branch.goal);
+                    }
+                }
+                return descriptions;
+            });
+            // The fan-out cancels the future it is given, which does not reach the call
+            merged.whenComplete((value, error) -> {
+                if (merged.isCancelled()) {
+                    result.cancel(true);
                 }
+            });
+            return merged;
+        });
+        try {
+            ClaudeClient.await(actions);
+        } catch (IOException | RuntimeException e) {
+            // Branches cancelled by the failure may still be merging; wait for them and stop the rest
+            synchronized (listenerLock) {
+                failed.set(true);
             }
-            
-            return agent;
-        } catch (JsonSyntaxException e) {
-            throw new JsonSyntaxException("Failed to parse Claude response as JSON: " + responseContent, e);
+            throw e;
         }
     }
     
     /**
-     * Extracts JSON content from the response, which might contain markdown or other text.
+     * Sends one prompt of a parallel decomposition and parses the reply, requesting it again
+     * when the response cannot be parsed or was cut off. Transport failures are already
+     * retried by the Claude client and fail the branch.
      * 
-     * @param response The response from Claude
-     * @return The extracted JSON content
+     * @param client The client for the call site
+     * @param content The content of the prompt
+     * @param attempt The number of attempts made so far
+     * @param parser Parses the response text, throwing JsonSyntaxException if it is malformed
+     * @param result The future to complete with the parsed response
      */
-    private String extractJsonFromResponse(String response) {
-        // If the response is already valid JSON, return it as is
-        if (response.trim().startsWith("{") && response.trim().endsWith("}")) {
-            return response;
+    private <T> void requestParsed(ClaudeClient client, List<ClaudeClient.ContentBlock> content, int attempt,
+                                   Function<String, T> parser, CompletableFuture<T> result) {
+        if (result.isDone()) {
+            return;
         }
-        
-        // Try to extract JSON between code blocks
-        int startIndex = response.indexOf("{");
-        int endIndex = response.lastIndexOf("}") + 1;
-        
-        if (startIndex >= 0 && endIndex > startIndex) {
-            return response.substring(startIndex, endIndex);
+        CompletableFuture<ClaudeClient.ClaudeResponse> call = client.sendMessageAsync(content);
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) {
+                call.cancel(true);
+            }
+        });
+        call.whenComplete((response, error) -> {
+            if (error != null) {
+                result.completeExceptionally(error);
+                return;
+            }
+            try {
+                if ("max_tokens".equals(response.getStopReason())) {
+                    throw new JsonSyntaxException("Response was cut off by the token limit");
+                }
+                result.complete(parser.apply(response.getTextContent()));
+            } catch (JsonSyntaxException | IllegalStateException e) {
+                if (attempt < branchRetries) {
+                    requestParsed(client, content, attempt + 1, parser, result);
+                } else {
+                    result.completeExceptionally(new JsonSyntaxException(
+                        "Failed to parse response after " + (attempt + 1) + " attempts: " + e.getMessage(), e));
+                }
+            } catch (RuntimeException e) {
+                // whenComplete drops exceptions thrown here, so the branch must be settled
+                result.completeExceptionally(e);
+            }
+        });
+    }
+    
+    /**
+     * Parses the action descriptions from a subgoal actions response.
+     * Any prose or code fences around the JSON document are ignored.
+     * 
+     * @param responseContent The response text
+     * @return The action descriptions
+     * @throws JsonSyntaxException If the response has no actions array or an action description is not a string
+     */
+    private static List<String> parseActions(String responseContent) throws JsonSyntaxException {
+        int start = responseContent.indexOf('{');
+        int end = responseContent.lastIndexOf('}');
+        if (start < 0 || end < start) {
+            throw new JsonSyntaxException("No JSON object found in response");
         }
+        JsonElement actions = JsonParser.parseString(responseContent.substring(start, end + 1))
+            .getAsJsonObject().get("actions");
+        if (actions == null || !actions.isJsonArray()) {
+            throw new JsonSyntaxException("Response has no actions array");
+        }
+        List<String> descriptions = new ArrayList<>();
+        for (JsonElement action : actions.getAsJsonArray()) {
+            if (action.isJsonPrimitive()) {
+                descriptions.add(action.getAsString());
+            } else if (action.isJsonObject() && action.getAsJsonObject().has("description")) {
+                JsonElement description = action.getAsJsonObject().get("description");
+                if (!description.isJsonPrimitive()) {
+                    throw new JsonSyntaxException("Action description is not a string: " + description);
+                }
+                descriptions.add(description.getAsString());
+            }
+        }
+        return descriptions;
+    }
+    
+    /**
+     * A subgoal whose actions are generated by its own call.
+     */
+    private static class Branch {
+        final Goal goal;
+        final SubGoal subGoal;
+        final AtomicInteger pendingSubGoals;
         
-        // If no JSON is found, return the original response
-        return response;
+        Branch(Goal goal, SubGoal subGoal, AtomicInteger pendingSubGoals) {
+            this.goal = goal;
+            this.subGoal = subGoal;
+            this.pendingSubGoals = pendingSubGoals;
+        }
+    }
+    
+    /**
+     * Parses the JSON response from Claude into an Agent object with goals and subgoals.
+     * Any prose or code fences around the JSON document are ignored.
+     * 
+     * @param responseContent The JSON response from Claude
+     * @param originalObjective The original objective that was decomposed
+     * @param standardProcedure The standard procedure for achieving the objective
+     * @return An Agent object containing the decomposed goals and subgoals
+     * @throws JsonSyntaxException If the response cannot be parsed as valid JSON
+     */
+    Agent parseResponse(String responseContent, String originalObjective, String standardProcedure) throws JsonSyntaxException {
+        try {
+            StreamingAgentParser parser = new StreamingAgentParser(originalObjective, standardProcedure, DecompositionListener.NONE);
+            parser.accept(responseContent);
+            return parser.finish();
+        } catch (JsonSyntaxException e) {
+            throw new JsonSyntaxException("Failed to parse Claude response as JSON: " + responseContent, e);
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,78 @@
+package com.leucine.wizard.service;
+
+import java.util.function.Consumer;
+
+/**
+ * Splits a streamed markdown standard procedure into its top-level phases, the sections
+ * introduced by {@code #} headings as requested by the standard procedure prompt. A phase is
+ * reported as soon as the next top-level heading starts, so work on it can begin while the
+ * rest of the procedure is still being generated. Text before the first heading, headings
+ * inside code fences and phases with no content after the heading are ignored.
+ */
+class ProcedurePhaseSplitter {
+
+    private final Consumer<String> onPhase;
+    private final StringBuilder line = new StringBuilder();
+    private final StringBuilder phase = new StringBuilder();
+    private boolean inPhase;
+    private boolean phaseHasContent;
+    private boolean inFence;
+
+    /**
+     * Creates a splitter.
+     *
+     * @param onPhase Receives the markdown text of each completed phase, heading included
+     */
+    ProcedurePhaseSplitter(Consumer<String> onPhase) {
+        this.onPhase = onPhase;
+    }
+
+    /**
+     * Feeds the next chunk of procedure text.
+     *
+     * @param chunk The text chunk
+     */
+    void accept(CharSequence chunk) {
+        for (int i = 0; i < chunk.length(); i++) {
+            char c = chunk.charAt(i);
+            line.append(c);
+            if (c == '\n') {
+                endLine();
+            }
+        }
+    }
+
+    /**
+     * Signals the end of the procedure and reports the last phase.
+     */
+    void finish() {
+        if (line.length() > 0) {
+            endLine();
+        }
+        emit();
+    }
+
+    private void endLine() {
+        String text = line.toString();
+        line.setLength(0);
+        if (text.startsWith("```")) {
+            inFence = !inFence;
+        } else if (!inFence && text.startsWith("# ")) {
+            emit();
+            inPhase = true;
+        } else if (inPhase && !text.trim().isEmpty()) {
+            phaseHasContent = true;
+        }
+        if (inPhase) {
+            phase.append(text);
+        }
+    }
+
+    private void emit() {
+        if (inPhase && phaseHasContent) {
+            onPhase.accept(phase.toString());
+        }
+        phase.setLength(0);
+        phaseHasContent = false;
+    }
+}
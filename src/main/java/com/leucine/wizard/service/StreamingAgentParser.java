@@ -0,0 +1,406 @@
+package com.leucine.wizard.service;
+
+import com.google.gson.JsonSyntaxException;
+import com.leucine.model.Action;
+import com.leucine.model.Agent;
+import com.leucine.model.Goal;
+import com.leucine.model.SubGoal;
+import com.leucine.utils.ClaudeClient;
+import com.leucine.utils.Ids;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Push-style incremental parser for the decomposition JSON returned by Claude.
+ * Text is fed in arbitrary chunks through {@link #accept(CharSequence)} (or directly
+ * as a {@link ClaudeClient.StreamListener}); any prose or code fences before the
+ * first {@code '{'} are skipped, and typed {@link Goal}, {@link SubGoal} and
+ * {@link Action} objects are built and reported to the listener as soon as each
+ * element closes. Only the token currently being read is buffered, so the response
+ * text never has to be held in full.
+ *
+ * <p>The expected document shape is:</p>
+ * <pre>
+ * { "agentName": "...", "objective": "...",
+ *   "goals": [ { "name": "...", "description": "...",
+ *                "subgoals": [ { "name": "...", "description": "...", "actions": [ "..." ] } ] } ] }
+ * </pre>
+ * <p>Unknown members are skipped. A parser instance is single-use and not thread-safe.</p>
+ */
+public class StreamingAgentParser implements ClaudeClient.StreamListener {
+
+    /**
+     * The role a JSON container plays in the decomposition document.
+     */
+    private enum Kind { ROOT, GOALS, GOAL, SUBGOALS, SUBGOAL, ACTIONS, SKIP }
+
+    /**
+     * What the parser expects next inside the current container.
+     */
+    private enum Expect { KEY_OR_END, COLON, VALUE, COMMA_OR_END, VALUE_OR_END }
+
+    /**
+     * An open object or array together with the model object it is building.
+     */
+    private static class Frame {
+        final Kind kind;
+        final boolean object;
+        Expect expect;
+        String key;
+        Goal goal;
+        SubGoal subGoal;
+        String name;
+        String description;
+
+        Frame(Kind kind, boolean object) {
+            this.kind = kind;
+            this.object = object;
+            this.expect = object ? Expect.KEY_OR_END : Expect.VALUE_OR_END;
+        }
+    }
+
+    private final String originalObjective;
+    private final String standardProcedure;
+    private final DecompositionListener listener;
+    private final Agent agent;
+    private final Deque<Frame> stack = new ArrayDeque<>();
+    private final StringBuilder token = new StringBuilder();
+
+    private boolean rootSeen;
+    private boolean done;
+    private boolean inString;
+    private boolean inLiteral;
+    private boolean escape;
+    private int unicodeDigits = -1;
+    private int unicodeValue;
+    private long position;
+
+    private String agentName;
+    private String responseObjective;
+
+    /**
+     * Creates a new parser.
+     *
+     * @param originalObjective The objective that was decomposed, used when the response has none
+     * @param standardProcedure The standard procedure to attach to the agent
+     * @param listener The listener to notify as goals, subgoals and actions are parsed
+     */
+    public StreamingAgentParser(String originalObjective, String standardProcedure, DecompositionListener listener) {
+        this.originalObjective = originalObjective;
+        this.standardProcedure = standardProcedure;
+        this.listener = listener != null ? listener : DecompositionListener.NONE;
+        this.agent = new Agent(Ids.newId(), null, originalObjective);
+    }
+
+    @Override
+    public void onText(String text) {
+        accept(text);
+    }
+
+    /**
+     * The parser consumes the text itself, so the client does not need to keep a copy.
+     *
+     * @return false
+     */
+    @Override
+    public boolean retainText() {
+        return false;
+    }
+
+    /**
+     * Feeds the next chunk of response text to the parser.
+     *
+     * @param chunk The text to parse
+     * @throws JsonSyntaxException If the text is not valid decomposition JSON
+     */
+    public void accept(CharSequence chunk) {
+        for (int i = 0, n = chunk.length(); i < n && !done; i++) {
+            consume(chunk.charAt(i));
+            position++;
+        }
+    }
+
+    /**
+     * Signals the end of the response and returns the parsed agent.
+     *
+     * @return The agent with all parsed goals, subgoals and actions
+     * @throws JsonSyntaxException If no complete JSON object was found
+     */
+    public Agent finish() {
+        if (!rootSeen) {
+            throw new JsonSyntaxException("No JSON object found in response");
+        }
+        if (!done) {
+            throw new JsonSyntaxException("Response ended inside the JSON document at position " + position);
+        }
+
+        if (responseObjective == null || responseObjective.trim().isEmpty()) {
+            responseObjective = originalObjective;
+        }
+        if (agentName == null || agentName.trim().isEmpty()) {
+            agentName = "Agent for " + originalObjective;
+        }
+        agent.setName(agentName);
+        agent.setObjective(responseObjective);
+        agent.setStandardProcedure(standardProcedure);
+        return agent;
+    }
+
+    private void consume(char c) {
+        if (!rootSeen) {
+            // Skip prose and code fences until the document starts
+            if (c == '{') {
+                rootSeen = true;
+                startContainer(true);
+            }
+            return;
+        }
+
+        if (inString) {
+            consumeStringChar(c);
+            return;
+        }
+
+        if (inLiteral) {
+            if (isLiteralChar(c)) {
+                token.append(c);
+                return;
+            }
+            inLiteral = false;
+            onValue(token.toString(), false);
+            token.setLength(0);
+        }
+
+        switch (c) {
+            case '{':
+                expectValue();
+                startContainer(true);
+                break;
+            case '[':
+                expectValue();
+                startContainer(false);
+                break;
+            case '}':
+                endContainer(true);
+                break;
+            case ']':
+                endContainer(false);
+                break;
+            case '"':
+                Frame frame = stack.peek();
+                if (frame.expect != Expect.KEY_OR_END && frame.expect != Expect.VALUE
+                        && frame.expect != Expect.VALUE_OR_END) {
+                    throw syntaxError("Unexpected string");
+                }
+                inString = true;
+                break;
+            case ':':
+                if (stack.peek().expect != Expect.COLON) {
+                    throw syntaxError("Unexpected ':'");
+                }
+                stack.peek().expect = Expect.VALUE;
+                break;
+            case ',':
+                Frame current = stack.peek();
+                if (current.expect != Expect.COMMA_OR_END) {
+                    throw syntaxError("Unexpected ','");
+                }
+                current.expect = current.object ? Expect.KEY_OR_END : Expect.VALUE_OR_END;
+                break;
+            case ' ':
+            case '\t':
+            case '\n':
+            case '\r':
+                break;
+            default:
+                if (isLiteralChar(c)) {
+                    expectValue();
+                    inLiteral = true;
+                    token.append(c);
+                } else {
+                    throw syntaxError("Unexpected character '" + c + "'");
+                }
+        }
+    }
+
+    private void consumeStringChar(char c) {
+        if (unicodeDigits >= 0) {
+            int digit = Character.digit(c, 16);
+            if (digit < 0) {
+                throw syntaxError("Invalid unicode escape");
+            }
+            unicodeValue = (unicodeValue << 4) | digit;
+            if (++unicodeDigits == 4) {
+                token.append((char) unicodeValue);
+                unicodeDigits = -1;
+            }
+            return;
+        }
+        if (escape) {
+            escape = false;
+            switch (c) {
+                case 'n': token.append('\n'); break;
+                case 't': token.append('\t'); break;
+                case 'r': token.append('\r'); break;
+                case 'b': token.append('\b'); break;
+                case 'f': token.append('\f'); break;
+                case 'u':
+                    unicodeDigits = 0;
+                    unicodeValue = 0;
+                    break;
+                default:
+                    // Covers \" \\ \/ and is lenient about unknown escapes
+                    token.append(c);
+            }
+            return;
+        }
+        if (c == '\\') {
+            escape = true;
+        } else if (c == '"') {
+            inString = false;
+            String value = token.toString();
+            token.setLength(0);
+            Frame frame = stack.peek();
+            if (frame.object && frame.expect == Expect.KEY_OR_END) {
+                frame.key = value;
+                frame.expect = Expect.COLON;
+            } else {
+                onValue(value, true);
+            }
+        } else {
+            token.append(c);
+        }
+    }
+
+    private static boolean isLiteralChar(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || c == '-' || c == '+' || c == '.' || c == 'E';
+    }
+
+    private void expectValue() {
+        Frame frame = stack.peek();
+        if (frame.expect != Expect.VALUE && frame.expect != Expect.VALUE_OR_END) {
+            throw syntaxError("Unexpected value");
+        }
+    }
+
+    private void startContainer(boolean object) {
+        Frame parent = stack.peek();
+        Kind kind;
+        if (parent == null) {
+            kind = Kind.ROOT;
+        } else if (!object) {
+            kind = childArrayKind(parent);
+        } else if (parent.kind == Kind.GOALS) {
+            kind = Kind.GOAL;
+        } else if (parent.kind == Kind.SUBGOALS) {
+            kind = Kind.SUBGOAL;
+        } else {
+            kind = Kind.SKIP;
+        }
+
+        Frame frame = new Frame(kind, object);
+        if (parent != null) {
+            // Nested containers build on the goal and subgoal of the enclosing element
+            frame.goal = parent.goal;
+            frame.subGoal = parent.subGoal;
+        }
+        if (kind == Kind.GOAL) {
+            frame.goal = new Goal(null);
+        } else if (kind == Kind.SUBGOAL) {
+            frame.subGoal = new SubGoal(null);
+        }
+        stack.push(frame);
+    }
+
+    private static Kind childArrayKind(Frame parent) {
+        if (parent.kind == Kind.ROOT && "goals".equals(parent.key)) {
+            return Kind.GOALS;
+        }
+        if (parent.kind == Kind.GOAL && "subgoals".equals(parent.key)) {
+            return Kind.SUBGOALS;
+        }
+        if (parent.kind == Kind.SUBGOAL && "actions".equals(parent.key)) {
+            return Kind.ACTIONS;
+        }
+        return Kind.SKIP;
+    }
+
+    private void endContainer(boolean object) {
+        Frame frame = stack.peek();
+        if (frame.object != object) {
+            throw syntaxError("Mismatched '" + (object ? '}' : ']') + "'");
+        }
+        // Trailing commas are tolerated since models occasionally emit them
+        boolean atValueBoundary = frame.expect == Expect.COMMA_OR_END
+                || frame.expect == Expect.KEY_OR_END
+                || frame.expect == Expect.VALUE_OR_END;
+        if (!atValueBoundary) {
+            throw syntaxError("Unexpected '" + (object ? '}' : ']') + "'");
+        }
+        stack.pop();
+
+        switch (frame.kind) {
+            case GOAL:
+                frame.goal.setDescription(frame.description != null ? frame.description : frame.name);
+                agent.addGoal(frame.goal);
+                listener.onGoal(frame.goal);
+                break;
+            case SUBGOAL:
+                String description = frame.description;
+                if (frame.name != null && !frame.name.trim().isEmpty()) {
+                    description = frame.name + ": " + description;
+                }
+                frame.subGoal.setDescription(description);
+                frame.goal.addSubgoal(frame.subGoal);
+                listener.onSubGoal(frame.goal, frame.subGoal);
+                break;
+            case ROOT:
+                done = true;
+                return;
+            default:
+                break;
+        }
+        stack.peek().expect = Expect.COMMA_OR_END;
+    }
+
+    private void onValue(String value, boolean isString) {
+        Frame frame = stack.peek();
+        if (frame.expect != Expect.VALUE && frame.expect != Expect.VALUE_OR_END) {
+            throw syntaxError("Unexpected value");
+        }
+        frame.expect = Expect.COMMA_OR_END;
+        if (!isString) {
+            return;
+        }
+
+        switch (frame.kind) {
+            case ROOT:
+                if ("objective".equals(frame.key)) {
+                    responseObjective = value;
+                } else if ("agentName".equals(frame.key)) {
+                    agentName = value;
+                }
+                break;
+            case GOAL:
+            case SUBGOAL:
+                if ("name".equals(frame.key)) {
+                    frame.name = value;
+                } else if ("description".equals(frame.key)) {
+                    frame.description = value;
+                }
+                break;
+            case ACTIONS:
+                Action action = new Action(value);
+                frame.subGoal.addAction(action);
+                listener.onAction(frame.subGoal, action);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private JsonSyntaxException syntaxError(String message) {
+        return new JsonSyntaxException(message + " at position " + position);
+    }
+}
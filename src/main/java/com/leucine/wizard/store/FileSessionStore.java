@@ -0,0 +1,800 @@
+package com.leucine.wizard.store;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.leucine.config.AIConfig;
+import com.leucine.model.Agent;
+import com.leucine.utils.TaskExecutors;
+import com.leucine.wizard.model.WizardSession;
+import com.leucine.wizard.model.WizardState;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.SoftReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Session store that persists wizard sessions in a local directory, so sessions survive a
+ * restart or redeploy.
+ *
+ * <p>Every {@link #put(WizardSession)} and {@link #remove(String)} appends one JSON record
+ * to {@code sessions.log}. On startup the log is replayed line by line and the last record
+ * for each session wins. Once the log holds more than twice as many records as there are
+ * sessions, it is compacted in the background: a snapshot with one record per session is
+ * written to a temporary file and atomically renamed over the log. The sessions are
+ * captured under the store's lock, but serialized and written without it, so requests are
+ * not blocked while the snapshot is written; records appended in the meantime are copied
+ * to the new log before it replaces the old one.</p>
+ *
+ * <p>In-progress sessions are kept in memory together with their agents. When a session is
+ * completed, its agent is written once to {@code agents/<sessionId>.json}, and the log
+ * records only the session itself. The agent is read from disk only when the session is
+ * requested, so recovery never loads completed agents. The session rebuilt from it is held
+ * softly and returned again by later reads, so polling a completed session does not read
+ * the file each time.</p>
+ *
+ * <p>The store applies the same bounds as {@link InMemorySessionStore}: an idle time-to-live
+ * that does not apply while an objective is being decomposed, a maximum age measured from
+ * creation, and caps on the number of sessions and on the weight of the agents held in
+ * memory, enforced by a background reaper that evicts the least recently updated sessions
+ * first. Completed sessions count as one character of weight, since their agents are on
+ * disk. Expired and evicted sessions are removed from the log like any other removal.</p>
+ *
+ * <p>A session recorded while its objective was being decomposed has no decomposition
+ * running after a restart, so recovery moves it to ERROR and the objective can be
+ * submitted again.</p>
+ */
+public class FileSessionStore implements SessionStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileSessionStore.class);
+    private static final String LOG_FILE = "sessions.log";
+    private static final String AGENT_DIRECTORY = "agents";
+    private static final int MIN_COMPACTION_RECORDS = 1000;
+    private static final String INTERRUPTED_MESSAGE = "Objective processing was interrupted by a restart";
+
+    private final Gson gson = new Gson();
+    private final Path directory;
+    private final Path logFile;
+    private final Path agentDirectory;
+    private final Duration idleTtl;
+    private final Duration maxAge;
+    private final int maxEntries;
+    private final long maxWeight;
+    private final Map<String, WizardSession> live = new ConcurrentHashMap<>();
+    private final Map<String, CompletedSession> completed = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService reaper;
+    private final AtomicBoolean sweepScheduled = new AtomicBoolean();
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+    private BufferedWriter writer;
+    private long logRecords;
+    // Records appended while a compaction writes its snapshot, or null when none is running
+    private List<String> pendingRecords;
+    private volatile long weight;
+
+    private final AtomicLong agentReads = new AtomicLong();
+    private final AtomicLong compactions = new AtomicLong();
+    private final AtomicLong idleExpirations = new AtomicLong();
+    private final AtomicLong ageExpirations = new AtomicLong();
+    private final AtomicLong sizeEvictions = new AtomicLong();
+    private final AtomicLong sweeps = new AtomicLong();
+
+    private FileSessionStore(Builder builder) {
+        this.directory = builder.directory;
+        this.logFile = directory.resolve(LOG_FILE);
+        this.agentDirectory = directory.resolve(AGENT_DIRECTORY);
+        this.idleTtl = builder.idleTtl;
+        this.maxAge = builder.maxAge;
+        this.maxEntries = builder.maxEntries;
+        this.maxWeight = builder.maxWeight;
+        try {
+            Files.createDirectories(agentDirectory);
+            recover();
+            // Rewrite the log on startup, which also drops a record torn by a crash
+            compact();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open session store in " + directory, e);
+        }
+        this.reaper = Executors.newSingleThreadScheduledExecutor(
+            TaskExecutors.daemonThreadFactory("wizard-session-reaper"));
+        // Sessions that expired while the application was down go right away
+        requestSweep();
+        long interval = builder.reapInterval.toMillis();
+        reaper.scheduleWithFixedDelay(this::sweep, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens a store in the given directory, bounded by the same settings as
+     * {@link InMemorySessionStore#fromSettings()}.
+     *
+     * @param directory The directory holding the session log and agent files
+     * @return The store
+     */
+    public static FileSessionStore fromSettings(Path directory) {
+        return new Builder(directory)
+            .withIdleTtl(Duration.ofMinutes(AIConfig.getLongSetting("WIZARD_SESSION_IDLE_TTL_MINUTES", 30)))
+            .withMaxAge(Duration.ofHours(AIConfig.getLongSetting("WIZARD_SESSION_MAX_AGE_HOURS", 24)))
+            .withMaxEntries(AIConfig.getIntSetting("WIZARD_SESSION_MAX_ENTRIES", 10_000))
+            .withMaxWeight(AIConfig.getLongSetting("WIZARD_SESSION_MAX_WEIGHT_CHARS", 200_000_000L))
+            .withReapInterval(Duration.ofSeconds(AIConfig.getLongSetting("WIZARD_SESSION_REAP_INTERVAL_SECONDS", 60)))
+            .build();
+    }
+
+    @Override
+    public void put(WizardSession session) {
+        String sessionId = session.getSessionId();
+        // State and agent come from one snapshot, so a record never pairs them wrongly
+        WizardSession.Snapshot snapshot = session.getSnapshot();
+        boolean isCompleted = snapshot.getState() == WizardState.COMPLETED && snapshot.getAgent() != null;
+        if (isCompleted) {
+            writeAgentOnce(sessionId, snapshot.getAgent());
+        }
+
+        synchronized (this) {
+            // Serialize under the lock so concurrent puts of one session are logged in order
+            JsonObject record = toRecord(session, snapshot);
+            if (isCompleted) {
+                record.addProperty("agentFile", true);
+            } else if (snapshot.getAgent() != null) {
+                record.add("agent", gson.toJsonTree(snapshot.getAgent()));
+            }
+            append(record);
+            if (isCompleted) {
+                live.remove(sessionId);
+                CompletedSession entry = new CompletedSession(record, session.getCreatedAt(), snapshot.getLastUpdatedAt());
+                entry.restored = new SoftReference<>(session);
+                completed.put(sessionId, entry);
+            } else {
+                completed.remove(sessionId);
+                live.put(sessionId, session);
+            }
+        }
+        if (size() > maxEntries) {
+            requestSweep();
+        }
+        maybeCompact();
+    }
+
+    @Override
+    public WizardSession get(String sessionId) {
+        long now = System.currentTimeMillis();
+        WizardSession session = live.get(sessionId);
+        if (session != null) {
+            return expire(sessionId, session, now) ? null : session;
+        }
+        CompletedSession entry = completed.get(sessionId);
+        if (entry == null || expire(sessionId, entry, now)) {
+            return null;
+        }
+        return restore(sessionId, entry);
+    }
+
+    @Override
+    public boolean remove(String sessionId) {
+        boolean removed;
+        boolean wasCompleted;
+        synchronized (this) {
+            boolean wasLive = live.remove(sessionId) != null;
+            wasCompleted = completed.remove(sessionId) != null;
+            removed = wasLive || wasCompleted;
+            if (removed) {
+                appendRemove(sessionId);
+            }
+        }
+        if (wasCompleted) {
+            deleteAgent(sessionId);
+        }
+        if (removed) {
+            maybeCompact();
+        }
+        return removed;
+    }
+
+    @Override
+    public int size() {
+        return live.size() + completed.size();
+    }
+
+    @Override
+    public void close() {
+        reaper.shutdown();
+        try {
+            // Let a running compaction finish before the log is closed
+            reaper.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            try {
+                writer.close();
+            } catch (IOException e) {
+                LOG.warn("Failed to close session log: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Replays the session log into memory.
+     */
+    private void recover() throws IOException {
+        if (!Files.exists(logFile)) {
+            return;
+        }
+        int skipped = 0;
+        try (BufferedReader reader = Files.newBufferedReader(logFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                try {
+                    apply(JsonParser.parseString(line).getAsJsonObject());
+                } catch (RuntimeException e) {
+                    skipped++;
+                }
+            }
+        }
+        if (skipped > 0) {
+            LOG.warn("Skipped {} unreadable records in {}", skipped, logFile);
+        }
+        // The compaction that follows recovery writes the new state to the log
+        int interrupted = 0;
+        for (WizardSession session : live.values()) {
+            if (session.getState() == WizardState.OBJECTIVE_ENTERED) {
+                session.setError(INTERRUPTED_MESSAGE);
+                interrupted++;
+            }
+        }
+        if (interrupted > 0) {
+            LOG.warn("Moved {} sessions interrupted while decomposing to ERROR", interrupted);
+        }
+    }
+
+    private void apply(JsonObject record) {
+        String sessionId = record.get("sessionId").getAsString();
+        if ("remove".equals(record.get("op").getAsString())) {
+            live.remove(sessionId);
+            completed.remove(sessionId);
+        } else if (record.has("agentFile")) {
+            live.remove(sessionId);
+            completed.put(sessionId, new CompletedSession(record,
+                LocalDateTime.parse(record.get("createdAt").getAsString()),
+                LocalDateTime.parse(record.get("lastUpdatedAt").getAsString())));
+        } else {
+            Agent agent = record.has("agent") ? gson.fromJson(record.get("agent"), Agent.class) : null;
+            completed.remove(sessionId);
+            live.put(sessionId, fromRecord(record, agent));
+        }
+    }
+
+    private JsonObject toRecord(WizardSession session, WizardSession.Snapshot snapshot) {
+        JsonObject record = new JsonObject();
+        record.addProperty("op", "put");
+        record.addProperty("sessionId", session.getSessionId());
+        record.addProperty("state", snapshot.getState().name());
+        record.addProperty("createdAt", session.getCreatedAt().toString());
+        record.addProperty("lastUpdatedAt", snapshot.getLastUpdatedAt().toString());
+        if (snapshot.getErrorMessage() != null) {
+            record.addProperty("errorMessage", snapshot.getErrorMessage());
+        }
+        // Kept so that versions, and the ETags derived from them, never go backwards
+        record.addProperty("version", snapshot.getVersion());
+        return record;
+    }
+
+    private static WizardSession fromRecord(JsonObject record, Agent agent) {
+        return WizardSession.restore(
+            record.get("sessionId").getAsString(),
+            WizardState.valueOf(record.get("state").getAsString()),
+            agent,
+            LocalDateTime.parse(record.get("createdAt").getAsString()),
+            LocalDateTime.parse(record.get("lastUpdatedAt").getAsString()),
+            record.has("errorMessage") ? record.get("errorMessage").getAsString() : null,
+            record.has("version") ? record.get("version").getAsLong() : 0);
+    }
+
+    /**
+     * Returns the session of a completed entry, reading its agent from disk unless the
+     * session rebuilt last time is still held.
+     */
+    private WizardSession restore(String sessionId, CompletedSession entry) {
+        synchronized (entry) {
+            WizardSession session = entry.restored != null ? entry.restored.get() : null;
+            if (session == null) {
+                Agent agent = readAgent(sessionId);
+                if (agent == null) {
+                    return null;
+                }
+                session = fromRecord(entry.record, agent);
+                entry.restored = new SoftReference<>(session);
+            }
+            return session;
+        }
+    }
+
+    /**
+     * Appends a record to the log. Must be called while holding the store's lock.
+     */
+    private void append(JsonObject record) {
+        String line = record.toString();
+        try {
+            writer.write(line);
+            writer.newLine();
+            writer.flush();
+            logRecords++;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to session log " + logFile, e);
+        }
+        if (pendingRecords != null) {
+            pendingRecords.add(line);
+        }
+    }
+
+    private void appendRemove(String sessionId) {
+        JsonObject record = new JsonObject();
+        record.addProperty("op", "remove");
+        record.addProperty("sessionId", sessionId);
+        append(record);
+    }
+
+    private void requestSweep() {
+        if (sweepScheduled.compareAndSet(false, true)) {
+            try {
+                reaper.execute(this::sweep);
+            } catch (RejectedExecutionException e) {
+                // The store is closed
+                LOG.debug("Session sweep not scheduled: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Runs one pass over the store: removes expired sessions and then evicts the least
+     * recently updated sessions until the entry and weight bounds hold.
+     */
+    private void sweep() {
+        sweepScheduled.set(false);
+        try {
+            long now = System.currentTimeMillis();
+            List<Candidate> candidates = new ArrayList<>();
+            long total = 0;
+            for (Map.Entry<String, WizardSession> entry : live.entrySet()) {
+                WizardSession session = entry.getValue();
+                if (expire(entry.getKey(), session, now)) {
+                    continue;
+                }
+                Candidate candidate = new Candidate(entry.getKey(), session, isInProgress(session),
+                    InMemorySessionStore.toMillis(session.getLastUpdatedAt()),
+                    InMemorySessionStore.weigh(session.getAgent()));
+                candidates.add(candidate);
+                total += candidate.weight;
+            }
+            for (Map.Entry<String, CompletedSession> entry : completed.entrySet()) {
+                CompletedSession session = entry.getValue();
+                if (expire(entry.getKey(), session, now)) {
+                    continue;
+                }
+                Candidate candidate = new Candidate(entry.getKey(), session, false,
+                    InMemorySessionStore.toMillis(session.lastUpdatedAt), 1);
+                candidates.add(candidate);
+                total += candidate.weight;
+            }
+
+            int count = candidates.size();
+            if (count > maxEntries || total > maxWeight) {
+                candidates.sort(Comparator
+                    .comparing((Candidate candidate) -> candidate.inProgress)
+                    .thenComparingLong(candidate -> candidate.lastUpdatedMillis));
+                for (Candidate candidate : candidates) {
+                    if (count <= maxEntries && total <= maxWeight) {
+                        break;
+                    }
+                    if (removeEntry(candidate.sessionId, candidate.entry)) {
+                        sizeEvictions.incrementAndGet();
+                    }
+                    count--;
+                    total -= candidate.weight;
+                }
+            }
+            weight = total;
+            sweeps.incrementAndGet();
+        } catch (RuntimeException e) {
+            // Keep the reaper alive; the next sweep starts from scratch
+            LOG.warn("Session sweep failed: {}", e.getMessage());
+        }
+        maybeCompact();
+    }
+
+    /**
+     * Removes the session if it has expired.
+     *
+     * @return true if the session has expired
+     */
+    private boolean expire(String sessionId, WizardSession session, long now) {
+        return expire(sessionId, session, session.getCreatedAt(), session.getLastUpdatedAt(), isInProgress(session), now);
+    }
+
+    private boolean expire(String sessionId, CompletedSession session, long now) {
+        return expire(sessionId, session, session.createdAt, session.lastUpdatedAt, false, now);
+    }
+
+    private boolean expire(String sessionId, Object entry, LocalDateTime createdAt, LocalDateTime lastUpdatedAt,
+                           boolean inProgress, long now) {
+        if (now - InMemorySessionStore.toMillis(createdAt) > maxAge.toMillis()) {
+            if (removeEntry(sessionId, entry)) {
+                ageExpirations.incrementAndGet();
+            }
+            return true;
+        }
+        if (!inProgress && now - InMemorySessionStore.toMillis(lastUpdatedAt) > idleTtl.toMillis()) {
+            if (removeEntry(sessionId, entry)) {
+                idleExpirations.incrementAndGet();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes a session only if it is still mapped to the given live session or completed
+     * entry, and records the removal in the log.
+     */
+    private boolean removeEntry(String sessionId, Object entry) {
+        boolean isCompleted = entry instanceof CompletedSession;
+        synchronized (this) {
+            boolean removed = isCompleted ? completed.remove(sessionId, entry) : live.remove(sessionId, entry);
+            if (!removed) {
+                return false;
+            }
+            appendRemove(sessionId);
+        }
+        if (isCompleted) {
+            deleteAgent(sessionId);
+        }
+        return true;
+    }
+
+    private static boolean isInProgress(WizardSession session) {
+        return session.getState() == WizardState.OBJECTIVE_ENTERED;
+    }
+
+    private void maybeCompact() {
+        boolean due;
+        synchronized (this) {
+            due = logRecords > MIN_COMPACTION_RECORDS && logRecords > 2L * size();
+        }
+        if (due && compactionScheduled.compareAndSet(false, true)) {
+            try {
+                reaper.execute(() -> {
+                    compactionScheduled.set(false);
+                    try {
+                        compact();
+                    } catch (IOException | RuntimeException e) {
+                        // The current log stays valid; compaction is retried after later writes
+                        LOG.warn("Session log compaction failed: {}", e.getMessage());
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // The store is closed, so the log must not be replaced any more
+                LOG.debug("Session log compaction not scheduled: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Rewrites the log with one record per session. Only capturing the sessions and
+     * replacing the log happen under the store's lock; runs on the reaper thread only,
+     * apart from the compaction at startup.
+     */
+    private void compact() throws IOException {
+        List<WizardSession> sessions = new ArrayList<>();
+        List<WizardSession.Snapshot> states = new ArrayList<>();
+        List<JsonObject> completedRecords = new ArrayList<>();
+        synchronized (this) {
+            for (WizardSession session : live.values()) {
+                sessions.add(session);
+                states.add(session.getSnapshot());
+            }
+            for (CompletedSession entry : completed.values()) {
+                completedRecords.add(entry.record);
+            }
+            pendingRecords = new ArrayList<>();
+        }
+
+        Path temp = Files.createTempFile(directory, LOG_FILE, ".tmp");
+        BufferedWriter snapshot = null;
+        try {
+            snapshot = Files.newBufferedWriter(temp, StandardCharsets.UTF_8);
+            long records = 0;
+            for (int i = 0; i < sessions.size(); i++) {
+                WizardSession.Snapshot state = states.get(i);
+                JsonObject record = toRecord(sessions.get(i), state);
+                if (state.getAgent() != null) {
+                    record.add("agent", gson.toJsonTree(state.getAgent()));
+                }
+                snapshot.write(record.toString());
+                snapshot.newLine();
+                records++;
+            }
+            for (JsonObject record : completedRecords) {
+                snapshot.write(record.toString());
+                snapshot.newLine();
+                records++;
+            }
+
+            synchronized (this) {
+                // Records appended since the capture follow the snapshot, so they still win
+                for (String line : pendingRecords) {
+                    snapshot.write(line);
+                    snapshot.newLine();
+                    records++;
+                }
+                snapshot.close();
+                // The old log stays open until the rename succeeds, so a failure loses nothing
+                Files.move(temp, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                if (writer != null) {
+                    writer.close();
+                }
+                writer = Files.newBufferedWriter(logFile, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                logRecords = records;
+                pendingRecords = null;
+            }
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                pendingRecords = null;
+            }
+            closeQuietly(snapshot);
+            deleteQuietly(temp);
+            throw e;
+        }
+        compactions.incrementAndGet();
+    }
+
+    private Path agentFile(String sessionId) {
+        return agentDirectory.resolve(sessionId + ".json");
+    }
+
+    private void writeAgentOnce(String sessionId, Agent agent) {
+        Path file = agentFile(sessionId);
+        if (Files.exists(file)) {
+            return;
+        }
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(agentDirectory, sessionId, ".tmp");
+            Files.writeString(temp, gson.toJson(agent), StandardCharsets.UTF_8);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            deleteQuietly(temp);
+            throw new UncheckedIOException("Failed to write agent for session " + sessionId, e);
+        }
+    }
+
+    private Agent readAgent(String sessionId) {
+        try {
+            Agent agent = gson.fromJson(Files.readString(agentFile(sessionId), StandardCharsets.UTF_8), Agent.class);
+            agentReads.incrementAndGet();
+            return agent;
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Failed to read agent for session {}: {}", sessionId, e.getMessage());
+            return null;
+        }
+    }
+
+    private void deleteAgent(String sessionId) {
+        try {
+            Files.deleteIfExists(agentFile(sessionId));
+        } catch (IOException e) {
+            LOG.warn("Failed to delete agent for session {}: {}", sessionId, e.getMessage());
+        }
+    }
+
+    private static void closeQuietly(BufferedWriter writer) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            LOG.warn("Failed to close session log snapshot: {}", e.getMessage());
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOG.warn("Failed to delete {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Gets the number of completed agents loaded from disk.
+     *
+     * @return The agent read count
+     */
+    public long getAgentReads() {
+        return agentReads.get();
+    }
+
+    /**
+     * Gets the number of log compactions, including the one at startup.
+     *
+     * @return The compaction count
+     */
+    public long getCompactions() {
+        return compactions.get();
+    }
+
+    /**
+     * Gets the number of records in the current log.
+     *
+     * @return The log record count
+     */
+    public synchronized long getLogRecords() {
+        return logRecords;
+    }
+
+    /**
+     * Gets the number of sessions removed after being idle longer than the idle TTL.
+     *
+     * @return The idle expiration count
+     */
+    public long getIdleExpirations() {
+        return idleExpirations.get();
+    }
+
+    /**
+     * Gets the number of sessions removed after reaching the maximum age.
+     *
+     * @return The age expiration count
+     */
+    public long getAgeExpirations() {
+        return ageExpirations.get();
+    }
+
+    /**
+     * Gets the number of sessions evicted to stay within the entry or weight bound.
+     *
+     * @return The size eviction count
+     */
+    public long getSizeEvictions() {
+        return sizeEvictions.get();
+    }
+
+    /**
+     * Gets the number of completed reaper sweeps.
+     *
+     * @return The sweep count
+     */
+    public long getSweeps() {
+        return sweeps.get();
+    }
+
+    /**
+     * Gets the total weight of the sessions as of the last sweep.
+     *
+     * @return The approximate weight in characters
+     */
+    public long getWeight() {
+        return weight;
+    }
+
+    /**
+     * A completed session as recorded in the log, with the session last rebuilt from it.
+     */
+    private static class CompletedSession {
+        final JsonObject record;
+        final LocalDateTime createdAt;
+        final LocalDateTime lastUpdatedAt;
+        // Guarded by this entry
+        SoftReference<WizardSession> restored;
+
+        CompletedSession(JsonObject record, LocalDateTime createdAt, LocalDateTime lastUpdatedAt) {
+            this.record = record;
+            this.createdAt = createdAt;
+            this.lastUpdatedAt = lastUpdatedAt;
+        }
+    }
+
+    private static class Candidate {
+        final String sessionId;
+        final Object entry;
+        final boolean inProgress;
+        final long lastUpdatedMillis;
+        final long weight;
+
+        Candidate(String sessionId, Object entry, boolean inProgress, long lastUpdatedMillis, long weight) {
+            this.sessionId = sessionId;
+            this.entry = entry;
+            this.inProgress = inProgress;
+            this.lastUpdatedMillis = lastUpdatedMillis;
+            this.weight = weight;
+        }
+    }
+
+    public static class Builder {
+        private final Path directory;
+        private Duration idleTtl = Duration.ofMinutes(30);
+        private Duration maxAge = Duration.ofHours(24);
+        private int maxEntries = 10_000;
+        private long maxWeight = 200_000_000L;
+        private Duration reapInterval = Duration.ofSeconds(60);
+
+        /**
+         * Creates a builder for a store in the given directory.
+         *
+         * @param directory The directory holding the session log and agent files
+         */
+        public Builder(Path directory) {
+            this.directory = directory;
+        }
+
+        /**
+         * Sets how long a session may go without updates before it expires.
+         */
+        public Builder withIdleTtl(Duration idleTtl) {
+            this.idleTtl = idleTtl;
+            return this;
+        }
+
+        /**
+         * Sets how long a session may live regardless of activity.
+         */
+        public Builder withMaxAge(Duration maxAge) {
+            this.maxAge = maxAge;
+            return this;
+        }
+
+        public Builder withMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+            return this;
+        }
+
+        /**
+         * Sets the maximum total weight, in characters, of the agents held in memory.
+         */
+        public Builder withMaxWeight(long maxWeight) {
+            this.maxWeight = maxWeight;
+            return this;
+        }
+
+        public Builder withReapInterval(Duration reapInterval) {
+            this.reapInterval = reapInterval;
+            return this;
+        }
+
+        /**
+         * Opens the store and recovers the sessions recorded in its directory.
+         */
+        public FileSessionStore build() {
+            return new FileSessionStore(this);
+        }
+    }
+}
@@ -0,0 +1,481 @@
+package com.leucine.wizard.store;
+
+import com.leucine.config.AIConfig;
+import com.leucine.model.Action;
+import com.leucine.model.Agent;
+import com.leucine.model.CompactAgentTree;
+import com.leucine.model.Goal;
+import com.leucine.model.SubGoal;
+import com.leucine.utils.TaskExecutors;
+import com.leucine.wizard.model.WizardSession;
+import com.leucine.wizard.model.WizardState;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.SoftReference;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded in-memory store for wizard sessions.
+ *
+ * <p>Sessions expire after an idle time-to-live measured from
+ * {@link WizardSession#getLastUpdatedAt()} and after an absolute maximum age measured from
+ * {@link WizardSession#getCreatedAt()}. A session whose objective is still being decomposed
+ * is never expired for being idle, since its last update only happens when Claude finishes.</p>
+ *
+ * <p>The store is also bounded by entry count and by weight, the approximate number of
+ * characters held by each session's agent. When a bound is exceeded, the sessions updated
+ * least recently are evicted first, and in-progress sessions go last.</p>
+ *
+ * <p>A background reaper thread enforces these limits. It walks the map without locking it,
+ * and removes a session only if the session is still mapped to the same instance, so
+ * requests are never blocked by a sweep. Adding a session beyond the entry bound triggers
+ * an early sweep. {@link #get(String)} also checks expiry, so an expired session is never
+ * returned between sweeps.</p>
+ *
+ * <p>A completed session can no longer change, so by default it is kept as a
+ * {@link CompactAgentTree} rather than as a tree of model objects, and {@link #get(String)}
+ * returns a session rebuilt from it, as {@link FileSessionStore} does with completed
+ * agents on disk. The rebuilt session is held softly and returned again by later reads,
+ * so a client polling a finished session does not rebuild the tree each time; the
+ * collector drops it when memory runs short, and completed sessions cannot change
+ * state, so sharing it is safe. Weight is still counted from the agent as it was
+ * stored.</p>
+ */
+public class InMemorySessionStore implements SessionStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(InMemorySessionStore.class);
+
+    private final Map<String, WizardSession> sessions = new ConcurrentHashMap<>();
+    private final Map<String, CompletedSession> completed = new ConcurrentHashMap<>();
+    private final Duration idleTtl;
+    private final Duration maxAge;
+    private final int maxEntries;
+    private final long maxWeight;
+    private final boolean compactCompleted;
+    private final ScheduledExecutorService reaper;
+    private final AtomicBoolean sweepScheduled = new AtomicBoolean();
+    private volatile long weight;
+
+    private final AtomicLong idleExpirations = new AtomicLong();
+    private final AtomicLong ageExpirations = new AtomicLong();
+    private final AtomicLong sizeEvictions = new AtomicLong();
+    private final AtomicLong sweeps = new AtomicLong();
+
+    private InMemorySessionStore(Builder builder) {
+        this.idleTtl = builder.idleTtl;
+        this.maxAge = builder.maxAge;
+        this.maxEntries = builder.maxEntries;
+        this.maxWeight = builder.maxWeight;
+        this.compactCompleted = builder.compactCompleted;
+        this.reaper = Executors.newSingleThreadScheduledExecutor(
+            TaskExecutors.daemonThreadFactory("wizard-session-reaper"));
+        long interval = builder.reapInterval.toMillis();
+        reaper.scheduleWithFixedDelay(this::sweep, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a store from configuration.
+     * Uses the settings {@code WIZARD_SESSION_IDLE_TTL_MINUTES} (default 30),
+     * {@code WIZARD_SESSION_MAX_AGE_HOURS} (default 24),
+     * {@code WIZARD_SESSION_MAX_ENTRIES} (default 10,000),
+     * {@code WIZARD_SESSION_MAX_WEIGHT_CHARS} (default 200,000,000),
+     * {@code WIZARD_SESSION_REAP_INTERVAL_SECONDS} (default 60) and
+     * {@code WIZARD_SESSION_COMPACT_COMPLETED} (default true).
+     *
+     * @return The configured store
+     */
+    public static InMemorySessionStore fromSettings() {
+        return new Builder()
+            .withIdleTtl(Duration.ofMinutes(AIConfig.getLongSetting("WIZARD_SESSION_IDLE_TTL_MINUTES", 30)))
+            .withMaxAge(Duration.ofHours(AIConfig.getLongSetting("WIZARD_SESSION_MAX_AGE_HOURS", 24)))
+            .withMaxEntries(AIConfig.getIntSetting("WIZARD_SESSION_MAX_ENTRIES", 10_000))
+            .withMaxWeight(AIConfig.getLongSetting("WIZARD_SESSION_MAX_WEIGHT_CHARS", 200_000_000L))
+            .withReapInterval(Duration.ofSeconds(AIConfig.getLongSetting("WIZARD_SESSION_REAP_INTERVAL_SECONDS", 60)))
+            .withCompactCompleted(AIConfig.getBooleanSetting("WIZARD_SESSION_COMPACT_COMPLETED", true))
+            .build();
+    }
+
+    /**
+     * Adds or replaces a session.
+     *
+     * @param session The session to store
+     */
+    @Override
+    public void put(WizardSession session) {
+        String sessionId = session.getSessionId();
+        WizardSession.Snapshot snapshot = session.getSnapshot();
+        if (compactCompleted && snapshot.getState() == WizardState.COMPLETED && snapshot.getAgent() != null) {
+            completed.put(sessionId, new CompletedSession(session, snapshot));
+            sessions.remove(sessionId);
+        } else {
+            sessions.put(sessionId, session);
+            completed.remove(sessionId);
+        }
+        if (size() > maxEntries) {
+            requestSweep();
+        }
+    }
+
+    /**
+     * Gets a session by its ID.
+     *
+     * @param sessionId The ID of the session
+     * @return The session, or null if it does not exist or has expired
+     */
+    @Override
+    public WizardSession get(String sessionId) {
+        long now = System.currentTimeMillis();
+        WizardSession session = sessions.get(sessionId);
+        if (session != null) {
+            return expire(sessionId, session, now) ? null : session;
+        }
+        CompletedSession entry = completed.get(sessionId);
+        if (entry == null || expire(sessionId, entry, now)) {
+            return null;
+        }
+        return entry.restore();
+    }
+
+    /**
+     * Removes a session.
+     *
+     * @param sessionId The ID of the session
+     * @return true if a session was removed
+     */
+    @Override
+    public boolean remove(String sessionId) {
+        boolean removed = sessions.remove(sessionId) != null;
+        return completed.remove(sessionId) != null || removed;
+    }
+
+    /**
+     * Gets the number of stored sessions, including expired sessions not yet reaped.
+     *
+     * @return The session count
+     */
+    @Override
+    public int size() {
+        return sessions.size() + completed.size();
+    }
+
+    /**
+     * Stops the background reaper.
+     */
+    @Override
+    public void close() {
+        reaper.shutdownNow();
+    }
+
+    private void requestSweep() {
+        if (sweepScheduled.compareAndSet(false, true)) {
+            try {
+                reaper.execute(this::sweep);
+            } catch (RejectedExecutionException e) {
+                // The store is closed
+                LOG.debug("Session sweep not scheduled: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Runs one pass over the store: removes expired sessions and then evicts the least
+     * recently updated sessions until the entry and weight bounds hold.
+     */
+    private void sweep() {
+        sweepScheduled.set(false);
+        try {
+            long now = System.currentTimeMillis();
+            List<Candidate> candidates = new ArrayList<>();
+            long total = 0;
+            for (Map.Entry<String, WizardSession> entry : sessions.entrySet()) {
+                WizardSession session = entry.getValue();
+                if (expire(entry.getKey(), session, now)) {
+                    continue;
+                }
+                Candidate candidate = new Candidate(entry.getKey(), session, isInProgress(session),
+                    toMillis(session.getLastUpdatedAt()), weigh(session.getAgent()));
+                candidates.add(candidate);
+                total += candidate.weight;
+            }
+            for (Map.Entry<String, CompletedSession> entry : completed.entrySet()) {
+                CompletedSession session = entry.getValue();
+                if (expire(entry.getKey(), session, now)) {
+                    continue;
+                }
+                Candidate candidate = new Candidate(entry.getKey(), session, false,
+                    toMillis(session.lastUpdatedAt), session.weight);
+                candidates.add(candidate);
+                total += candidate.weight;
+            }
+
+            int count = candidates.size();
+            if (count > maxEntries || total > maxWeight) {
+                candidates.sort(Comparator
+                    .comparing((Candidate candidate) -> candidate.inProgress)
+                    .thenComparingLong(candidate -> candidate.lastUpdatedMillis));
+                for (Candidate candidate : candidates) {
+                    if (count <= maxEntries && total <= maxWeight) {
+                        break;
+                    }
+                    if (removeEntry(candidate.sessionId, candidate.entry)) {
+                        sizeEvictions.incrementAndGet();
+                    }
+                    count--;
+                    total -= candidate.weight;
+                }
+            }
+            weight = total;
+            sweeps.incrementAndGet();
+        } catch (RuntimeException e) {
+            // Keep the reaper alive; the next sweep starts from scratch
+            LOG.warn("Session sweep failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Removes the session if it has expired.
+     *
+     * @return true if the session has expired
+     */
+    private boolean expire(String sessionId, WizardSession session, long now) {
+        return expire(sessionId, session, session.getCreatedAt(), session.getLastUpdatedAt(), isInProgress(session), now);
+    }
+
+    private boolean expire(String sessionId, CompletedSession session, long now) {
+        return expire(sessionId, session, session.createdAt, session.lastUpdatedAt, false, now);
+    }
+
+    private boolean expire(String sessionId, Object entry, LocalDateTime createdAt, LocalDateTime lastUpdatedAt,
+                           boolean inProgress, long now) {
+        if (now - toMillis(createdAt) > maxAge.toMillis()) {
+            if (removeEntry(sessionId, entry)) {
+                ageExpirations.incrementAndGet();
+            }
+            return true;
+        }
+        if (!inProgress && now - toMillis(lastUpdatedAt) > idleTtl.toMillis()) {
+            if (removeEntry(sessionId, entry)) {
+                idleExpirations.incrementAndGet();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes a session only if it is still mapped to the given live session or compact entry.
+     */
+    private boolean removeEntry(String sessionId, Object entry) {
+        return entry instanceof CompletedSession ? completed.remove(sessionId, entry) : sessions.remove(sessionId, entry);
+    }
+
+    private static boolean isInProgress(WizardSession session) {
+        return session.getState() == WizardState.OBJECTIVE_ENTERED;
+    }
+
+    static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Estimates the weight of a session as the number of characters held by its agent.
+     *
+     * @param agent The session's agent, or null
+     * @return The approximate weight
+     */
+    static long weigh(Agent agent) {
+        long weight = 1;
+        if (agent == null) {
+            return weight;
+        }
+        weight += length(agent.getName()) + length(agent.getObjective()) + length(agent.getStandardProcedure());
+        if (agent.getGoals() != null) {
+            for (Goal goal : agent.getGoals()) {
+                weight += length(goal.getDescription());
+                if (goal.getSubgoals() == null) {
+                    continue;
+                }
+                for (SubGoal subGoal : goal.getSubgoals()) {
+                    weight += length(subGoal.getDescription());
+                    if (subGoal.getActions() == null) {
+                        continue;
+                    }
+                    for (Action action : subGoal.getActions()) {
+                        weight += length(action.getDescription());
+                    }
+                }
+            }
+        }
+        return weight;
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+
+    private static class Candidate {
+        final String sessionId;
+        final Object entry;
+        final boolean inProgress;
+        final long lastUpdatedMillis;
+        final long weight;
+
+        Candidate(String sessionId, Object entry, boolean inProgress, long lastUpdatedMillis, long weight) {
+            this.sessionId = sessionId;
+            this.entry = entry;
+            this.inProgress = inProgress;
+            this.lastUpdatedMillis = lastUpdatedMillis;
+            this.weight = weight;
+        }
+    }
+
+    /**
+     * A completed session with its agent in compact form.
+     */
+    private static class CompletedSession {
+        final String sessionId;
+        final CompactAgentTree agent;
+        final LocalDateTime createdAt;
+        final LocalDateTime lastUpdatedAt;
+        final String errorMessage;
+        final long version;
+        final long weight;
+        // The last session rebuilt from the compact tree, reused until memory runs short
+        private SoftReference<WizardSession> restored;
+
+        CompletedSession(WizardSession session, WizardSession.Snapshot snapshot) {
+            this.sessionId = session.getSessionId();
+            this.agent = CompactAgentTree.of(snapshot.getAgent());
+            this.createdAt = session.getCreatedAt();
+            this.lastUpdatedAt = snapshot.getLastUpdatedAt();
+            this.errorMessage = snapshot.getErrorMessage();
+            this.version = snapshot.getVersion();
+            this.weight = weigh(snapshot.getAgent());
+        }
+
+        synchronized WizardSession restore() {
+            WizardSession session = restored != null ? restored.get() : null;
+            if (session == null) {
+                session = WizardSession.restore(sessionId, WizardState.COMPLETED, agent.toAgent(), createdAt,
+                    lastUpdatedAt, errorMessage, version);
+                restored = new SoftReference<>(session);
+            }
+            return session;
+        }
+    }
+
+    /**
+     * Gets the number of sessions removed after being idle longer than the idle TTL.
+     *
+     * @return The idle expiration count
+     */
+    public long getIdleExpirations() {
+        return idleExpirations.get();
+    }
+
+    /**
+     * Gets the number of sessions removed after reaching the maximum age.
+     *
+     * @return The age expiration count
+     */
+    public long getAgeExpirations() {
+        return ageExpirations.get();
+    }
+
+    /**
+     * Gets the number of sessions evicted to stay within the entry or weight bound.
+     *
+     * @return The size eviction count
+     */
+    public long getSizeEvictions() {
+        return sizeEvictions.get();
+    }
+
+    /**
+     * Gets the number of completed reaper sweeps.
+     *
+     * @return The sweep count
+     */
+    public long getSweeps() {
+        return sweeps.get();
+    }
+
+    /**
+     * Gets the total weight of the stored sessions as of the last sweep.
+     *
+     * @return The approximate weight in characters
+     */
+    public long getWeight() {
+        return weight;
+    }
+
+    public static class Builder {
+        private Duration idleTtl = Duration.ofMinutes(30);
+        private Duration maxAge = Duration.ofHours(24);
+        private int maxEntries = 10_000;
+        private long maxWeight = 200_000_000L;
+        private Duration reapInterval = Duration.ofSeconds(60);
+        private boolean compactCompleted = true;
+
+        /**
+         * Sets how long a session may go without updates before it expires.
+         */
+        public Builder withIdleTtl(Duration idleTtl) {
+            this.idleTtl = idleTtl;
+            return this;
+        }
+
+        /**
+         * Sets how long a session may live regardless of activity.
+         */
+        public Builder withMaxAge(Duration maxAge) {
+            this.maxAge = maxAge;
+            return this;
+        }
+
+        public Builder withMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+            return this;
+        }
+
+        /**
+         * Sets the maximum total weight, in characters, of the stored sessions.
+         */
+        public Builder withMaxWeight(long maxWeight) {
+            this.maxWeight = maxWeight;
+            return this;
+        }
+
+        public Builder withReapInterval(Duration reapInterval) {
+            this.reapInterval = reapInterval;
+            return this;
+        }
+
+        /**
+         * Sets whether completed sessions are kept in compact form.
+         */
+        public Builder withCompactCompleted(boolean compactCompleted) {
+            this.compactCompleted = compactCompleted;
+            return this;
+        }
+
+        public InMemorySessionStore build() {
+            return new InMemorySessionStore(this);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.leucine.wizard.store;
+
+import com.leucine.config.AIConfig;
+import com.leucine.wizard.model.WizardSession;
+
+import java.nio.file.Paths;
+
+/**
+ * Storage for wizard sessions.
+ * Sessions are mutable, so callers must {@link #put(WizardSession)} a session again after
+ * changing it; persistent implementations only record what has been put.
+ *
+ * <p>The implementation is selected with the {@code WIZARD_SESSION_STORE} setting:
+ * {@code memory} (the default) for {@link InMemorySessionStore} or {@code file} for
+ * {@link FileSessionStore} in the directory given by {@code WIZARD_SESSION_DIR}.</p>
+ */
+public interface SessionStore {
+
+    /**
+     * Adds a session or records its current state.
+     *
+     * @param session The session to store
+     */
+    void put(WizardSession session);
+
+    /**
+     * Gets a session by its ID.
+     *
+     * @param sessionId The ID of the session
+     * @return The session, or null if it does not exist or has expired
+     */
+    WizardSession get(String sessionId);
+
+    /**
+     * Removes a session.
+     *
+     * @param sessionId The ID of the session
+     * @return true if a session was removed
+     */
+    boolean remove(String sessionId);
+
+    /**
+     * Gets the number of stored sessions.
+     *
+     * @return The session count
+     */
+    int size();
+
+    /**
+     * Releases the store's background threads and files.
+     */
+    void close();
+
+    /**
+     * Creates the session store selected by configuration.
+     *
+     * @return The configured store
+     */
+    static SessionStore fromSettings() {
+        String type = AIConfig.getSetting("WIZARD_SESSION_STORE", "memory");
+        switch (type.toLowerCase()) {
+            case "memory":
+                return InMemorySessionStore.fromSettings();
+            case "file":
+                String directory = AIConfig.getSetting("WIZARD_SESSION_DIR", null);
+                if (directory == null) {
+                    throw new IllegalStateException("WIZARD_SESSION_DIR is required when WIZARD_SESSION_STORE=file");
+                }
+                return FileSessionStore.fromSettings(Paths.get(directory));
+            default:
+                throw new IllegalStateException("Unknown WIZARD_SESSION_STORE: " + type);
+        }
+    }
+}